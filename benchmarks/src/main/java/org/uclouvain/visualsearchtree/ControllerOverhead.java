@@ -0,0 +1,139 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cost of the zoom handlers during bursts of scroll events, with the {@link ViewController} or with a Timeline per
+ * event as AnimationFactory.zoomOnSCroll did before. This needs a display so it is not a JMH benchmark.
+ *
+ * java -cp target/benchmarks.jar org.uclouvain.visualsearchtree.ControllerOverhead [controller|timeline] [size] [frames] [events per frame]
+ */
+public class ControllerOverhead {
+
+    private static String mode = "controller";
+    private static int size = 100_000;
+    private static int frames = 60;
+    private static int eventsPerFrame = 4;
+    // frames after the last events, so that the animations end
+    private static final int SETTLE = 30;
+
+    public static void main(String[] args) {
+        if (args.length > 0) mode = args[0];
+        if (args.length > 1) size = Integer.parseInt(args[1]);
+        if (args.length > 2) frames = Integer.parseInt(args[2]);
+        if (args.length > 3) eventsPerFrame = Integer.parseInt(args[3]);
+        // the launcher does not extend Application, so that JavaFX can be on the class path
+        Application.launch(App.class);
+    }
+
+    public static class App extends Application {
+
+        @Override
+        public void start(Stage stage) {
+            Group group = TreeVisual.getGroup(TreeShapes.of("random", size));
+            StackPane pane = new StackPane(group);
+            switch (mode) {
+                case "controller" -> AnimationFactory.zoomOnSCroll(pane, group);
+                case "timeline" -> zoomWithTimelines(pane, group);
+                default -> throw new IllegalArgumentException("unknown mode " + mode);
+            }
+            stage.setScene(new Scene(pane, 1200, 800));
+            stage.show();
+
+            int[] changes = {0};
+            for (DoubleProperty property : List.of(group.scaleXProperty(), group.scaleYProperty(),
+                    group.translateXProperty(), group.translateYProperty())) {
+                property.addListener((observable, oldValue, newValue) -> changes[0]++);
+            }
+            long[] handlers = new long[frames];
+            long[] pulses = new long[frames + SETTLE];
+            new AnimationTimer() {
+                private int frame = -1;
+                private long last;
+
+                @Override
+                public void handle(long now) {
+                    if (frame >= 0) {
+                        pulses[frame] = now - last;
+                    }
+                    last = now;
+                    if (++frame < frames) {
+                        // as many zooms in as out, the scale must end where it started
+                        double deltaY = frame % 20 < 10 ? 40 : -40;
+                        long t = System.nanoTime();
+                        for (int i = 0; i < eventsPerFrame; i++) {
+                            pane.fireEvent(scroll(deltaY));
+                        }
+                        handlers[frame] = System.nanoTime() - t;
+                    } else if (frame == frames + SETTLE) {
+                        stop();
+                        System.out.printf("%s, %d nodes, %d frames of %d scroll events%n", mode, size, frames, eventsPerFrame);
+                        report("handlers", handlers);
+                        report("pulse", pulses);
+                        System.out.printf("%d property changes, scale %.3g at the end%n", changes[0], group.getScaleX());
+                        Platform.exit();
+                    }
+                }
+            }.start();
+        }
+    }
+
+    private static ScrollEvent scroll(double deltaY) {
+        return new ScrollEvent(ScrollEvent.SCROLL, 600, 400, 600, 400, false, false, false, false, false, false,
+                0, deltaY, 0, deltaY, ScrollEvent.HorizontalTextScrollUnits.NONE, 0,
+                ScrollEvent.VerticalTextScrollUnits.NONE, 0, 0, null);
+    }
+
+    /**
+     * The handler of AnimationFactory.zoomOnSCroll before the controller: a Timeline per event, starting from the
+     * scale of the node at the time of the event
+     */
+    private static void zoomWithTimelines(Node source, Parent parent) {
+        source.setOnScroll((ScrollEvent event) -> {
+            if (event.getDeltaY() != 0) {
+                event.consume();
+                double factor = event.getDeltaY() < 0 ? 1 / ViewController.ZOOM_FACTOR : ViewController.ZOOM_FACTOR;
+                double oldScale = parent.getScaleX();
+                double scale = oldScale * factor;
+                double f = (scale / oldScale) - 1;
+
+                // determine offset that we will have to move the group
+                Bounds bounds = parent.localToScene(parent.getBoundsInLocal());
+                double dx = (event.getSceneX() - (bounds.getWidth() / 2 + bounds.getMinX()));
+                double dy = (event.getSceneY() - (bounds.getHeight() / 2 + bounds.getMinY()));
+
+                new Timeline(
+                        new KeyFrame(Duration.millis(150), new KeyValue(parent.translateXProperty(), parent.getTranslateX() - f * dx)),
+                        new KeyFrame(Duration.millis(150), new KeyValue(parent.translateYProperty(), parent.getTranslateY() - f * dy)),
+                        new KeyFrame(Duration.millis(150), new KeyValue(parent.scaleXProperty(), scale)),
+                        new KeyFrame(Duration.millis(150), new KeyValue(parent.scaleYProperty(), scale))
+                ).play();
+            }
+        });
+    }
+
+    private static void report(String name, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-8s total %.1f ms, median %.2f ms, p95 %.2f ms, max %.2f ms%n", name, Arrays.stream(times).sum() / 1e6,
+                sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 95 / 100] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
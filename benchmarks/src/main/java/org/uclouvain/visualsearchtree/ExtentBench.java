@@ -0,0 +1,61 @@
+package org.uclouvain.visualsearchtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fitting sibling extents, with the array extents used by the layout and the original list extents
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtentBench {
+
+    @Param({"2", "16"})
+    public int siblings;
+
+    @Param({"10", "1000"})
+    public int depth;
+
+    private Tree.ArrayExtent[] arrayExtents;
+    private List<Tree.Extent> listExtents;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        arrayExtents = new Tree.ArrayExtent[siblings];
+        listExtents = new ArrayList<>(siblings);
+        for (int k = 0; k < siblings; k++) {
+            int n = 1 + random.nextInt(depth);
+            double[] lefts = new double[n];
+            double[] rights = new double[n];
+            Tree.Extent extent = new Tree.Extent();
+            for (int level = 0; level < n; level++) {
+                double left = -random.nextInt(level + 1);
+                double right = random.nextInt(level + 1);
+                lefts[n - 1 - level] = left;
+                rights[n - 1 - level] = right;
+                extent.add(left, right);
+            }
+            arrayExtents[k] = new Tree.ArrayExtent(lefts, rights, n, 0);
+            listExtents.add(extent);
+        }
+    }
+
+    @Benchmark
+    public double[] arrayFitList() {
+        return Tree.ArrayExtent.fitList(arrayExtents);
+    }
+
+    @Benchmark
+    public List<Double> listFitList() {
+        return Tree.Extent.fitList(listExtents);
+    }
+}
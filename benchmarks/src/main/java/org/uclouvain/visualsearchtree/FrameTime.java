@@ -0,0 +1,91 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.util.Arrays;
+
+/**
+ * Frame time of the canvas renderer while panning and zooming, this needs a display so it is not a JMH benchmark.
+ *
+ * java -cp target/benchmarks.jar org.uclouvain.visualsearchtree.FrameTime [shape] [size] [frames] [level of detail] [tiled]
+ */
+public class FrameTime {
+
+    private static String shape = "random";
+    private static int size = 1_000_000;
+    private static int frames = 200;
+    private static double levelOfDetail = 3;
+    private static boolean tiled = false;
+
+    public static void main(String[] args) {
+        if (args.length > 0) shape = args[0];
+        if (args.length > 1) size = Integer.parseInt(args[1]);
+        if (args.length > 2) frames = Integer.parseInt(args[2]);
+        if (args.length > 3) levelOfDetail = Double.parseDouble(args[3]);
+        if (args.length > 4) tiled = Boolean.parseBoolean(args[4]);
+        // the launcher does not extend Application, so that JavaFX can be on the class path
+        Application.launch(App.class);
+    }
+
+    public static class App extends Application {
+
+        @Override
+        public void start(Stage stage) {
+            Tree.Node<String> tree = TreeShapes.of(shape, size);
+            long start = System.nanoTime();
+            TreePane pane = TreePane.of(tree);
+            pane.setLevelOfDetail(levelOfDetail);
+            pane.setTiled(tiled);
+            System.out.printf("%s tree of %d nodes laid out in %.1f ms%n", shape, pane.size(), (System.nanoTime() - start) / 1e6);
+            AnimationFactory.zoomOnSCroll(pane, pane.getContent());
+            AnimationFactory.moveOnDrag(pane, pane.getContent());
+            stage.setScene(new Scene(pane, 1200, 800));
+            stage.show();
+
+            // the zoom is around the center of the tree, which is moved to the center of the window
+            double centerX = 600 - pane.getContent().getLayoutX() - pane.getContent().getWidth() / 2;
+            pane.getContent().setTranslateY(400 - pane.getContent().getLayoutY() - pane.getContent().getHeight() / 2);
+            long[] redraws = new long[frames];
+            long[] pulses = new long[frames];
+            new AnimationTimer() {
+                private int frame = -1;
+                private long last;
+
+                @Override
+                public void handle(long now) {
+                    if (frame >= 0) {
+                        pulses[frame] = now - last;
+                        // the same work as a pulse after a drag or a zoom step
+                        pane.getContent().setTranslateX(centerX + Math.sin(frame * 0.05) * 200);
+                        // sweeps the zoom from 10^-4 to 10
+                        double scale = Math.pow(10, frame % 50 / 10.0 - 4);
+                        pane.getContent().setScaleX(scale);
+                        pane.getContent().setScaleY(scale);
+                        long t = System.nanoTime();
+                        pane.redraw();
+                        redraws[frame] = System.nanoTime() - t;
+                    }
+                    last = now;
+                    if (++frame == frames) {
+                        stop();
+                        report("redraw", redraws);
+                        report("pulse", pulses);
+                        System.out.printf("%d of %d nodes drawn in the last frame%n", pane.drawnCount(), pane.size());
+                        Platform.exit();
+                    }
+                }
+            }.start();
+        }
+    }
+
+    private static void report(String name, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-6s median %.2f ms, p95 %.2f ms, max %.2f ms%n", name,
+                sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 95 / 100] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,50 @@
+package org.uclouvain.visualsearchtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layout of a whole tree with every layout engine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+public class LayoutBench {
+
+    @Param({"random", "nqueens", "chain", "wide"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Tree.Node<String> tree;
+
+    @Setup
+    public void setup() {
+        tree = TreeShapes.of(shape, size);
+    }
+
+    @Benchmark
+    public Tree.PositionedNode<String> design() {
+        return tree.design();
+    }
+
+    @Benchmark
+    public Tree.PositionedNode<String> walker() {
+        return tree.design(TreeLayout.WALKER);
+    }
+
+    @Benchmark
+    public Tree.PositionedNode<String> parallel() {
+        return tree.design(TreeLayout.PARALLEL);
+    }
+
+    @Benchmark
+    public Tree.PositionedNode<String> memoized() {
+        return tree.design(TreeLayout.MEMOIZED);
+    }
+}
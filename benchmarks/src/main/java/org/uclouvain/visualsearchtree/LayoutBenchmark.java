@@ -0,0 +1,90 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time needed to lay out large trees, and degenerate trees that are too deep for a recursive layout.
+ * A single run of each case is enough to see the orders of magnitude, the JMH benchmarks are in {@link LayoutBench}.
+ * Run with a large enough heap:
+ *
+ * java -Xmx4g -cp target/benchmarks.jar org.uclouvain.visualsearchtree.LayoutBenchmark [depth] [size]
+ */
+public class LayoutBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Tree.Node<String> chain = Tree.chainTree(depth);
+        for (int run = 0; run < 3; run++) {
+            time("kennedy, chain of " + depth, () -> chain.design());
+            time("walker, chain of " + depth, () -> chain.design(TreeLayout.WALKER));
+        }
+
+        Tree.Node<String> random = randomTree(size, new Random(42));
+        for (int run = 0; run < 3; run++) {
+            time("kennedy, random of " + size, () -> random.design());
+            time("parallel, random of " + size, () -> random.design(TreeLayout.PARALLEL));
+            time("walker, random of " + size, () -> random.design(TreeLayout.WALKER));
+        }
+
+        Tree.Node<String> queens = org.uclouvain.visualsearchtree.examples.NQueens.nQueensTree(10);
+        for (int run = 0; run < 3; run++) {
+            time("kennedy, 10-queens", () -> queens.design());
+            time("memoized, 10-queens", () -> queens.design(TreeLayout.MEMOIZED));
+        }
+
+        incremental(size, 1000, new Random(42));
+    }
+
+    /**
+     * Grow a random recursive tree by appending one node at a time, updating the layout after every batch,
+     * and report the cost per appended node as the tree grows
+     */
+    static void incremental(int size, int batch, Random random) {
+        List<Tree.Node<String>> nodes = new ArrayList<>(size);
+        nodes.add(new Tree.Node<>("Node0", new ArrayList<>(), new ArrayList<>(), null));
+        IncrementalLayout<String> layout = new IncrementalLayout<>(nodes.get(0));
+        long start = System.nanoTime();
+        for (int i = 1; i < size; i++) {
+            Tree.Node<String> node = new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null);
+            Tree.Node<String> parent = nodes.get(random.nextInt(i));
+            layout.addChild(parent, node, "x = " + parent.children.size());
+            nodes.add(node);
+            if (i % batch == 0) {
+                layout.update();
+            }
+            if (Integer.bitCount(i) == 1 && i >= 1024) {
+                long now = System.nanoTime();
+                System.out.printf("incremental, %-27s %10.3f us/node%n", "nodes " + (i / 2) + " to " + i, (now - start) / 1e3 / (i / 2));
+                start = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Random recursive tree: every node is attached to a uniformly chosen previous node
+     */
+    static Tree.Node<String> randomTree(int size, Random random) {
+        List<Tree.Node<String>> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Tree.Node<String> node = new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null);
+            if (i > 0) {
+                Tree.Node<String> parent = nodes.get(random.nextInt(i));
+                parent.edgeLabels.add("x = " + parent.children.size());
+                parent.children.add(node);
+            }
+            nodes.add(node);
+        }
+        return nodes.get(0);
+    }
+
+    static void time(String name, Runnable r) {
+        long start = System.nanoTime();
+        r.run();
+        long end = System.nanoTime();
+        System.out.printf("%-40s %10.2f ms%n", name, (end - start) / 1e6);
+    }
+}
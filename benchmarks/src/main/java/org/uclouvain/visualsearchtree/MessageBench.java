@@ -0,0 +1,82 @@
+package org.uclouvain.visualsearchtree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the messages of the CP-Profiler protocol
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBench {
+
+    @Param({"plain", "labelled"})
+    public String node;
+
+    private Message message;
+    private byte[] bytes;
+    private List<Byte> buffer;
+    private ByteBuffer direct;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 10);
+    private final Decoder.Frame frame = new Decoder.Frame();
+
+    @Setup
+    public void setup() throws IOException {
+        message = new Message(null);
+        fill(message);
+        bytes = message.toBytes();
+        buffer = new ArrayList<>(bytes.length);
+        direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    private void fill(Message msg) {
+        msg.setType(Message.MsgType.NODE).setNodeId(42).setNodePid(41).setNodeAlt(1).setNodeChildren(2)
+                .setNoteStatus(Connector.NodeStatus.BRANCH.getNumber());
+        if (node.equals("labelled")) {
+            msg.setNodeLabel("x[3] <= 17").setNodeInfo("some info");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        buffer.clear();
+        Decoder.addToBuffer(buffer, bytes);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return message.toBytes();
+    }
+
+    @Benchmark
+    public int encodeBuffer() {
+        out.clear();
+        return message.encode(out);
+    }
+
+    @Benchmark
+    public Decoder.DecodedMessage decode() {
+        return Decoder.deserialize(buffer, bytes.length);
+    }
+
+    @Benchmark
+    public Decoder.DecodedMessage decodeCopy() {
+        direct.position(0);
+        return Decoder.deserialize(direct, bytes.length);
+    }
+
+    @Benchmark
+    public int decodeFrame() {
+        frame.wrap(direct, 0, bytes.length);
+        return frame.nodeId() + frame.nodePid() + frame.nodeAlt() + frame.nodeChildren() + frame.nodeStatus();
+    }
+}
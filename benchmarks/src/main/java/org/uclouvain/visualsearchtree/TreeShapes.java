@@ -0,0 +1,86 @@
+package org.uclouvain.visualsearchtree;
+
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trees of a given shape and approximate size used by the benchmarks
+ */
+public final class TreeShapes {
+
+    private TreeShapes() {
+    }
+
+    /**
+     * @param shape one of random, nqueens, chain, wide
+     * @param size approximate number of nodes
+     */
+    public static Tree.Node<String> of(String shape, int size) {
+        switch (shape) {
+            case "random":
+                return random(size);
+            case "nqueens":
+                return NQueens.nQueensTree(queens(size));
+            case "chain":
+                return Tree.chainTree(size);
+            case "wide":
+                return wide(size);
+            default:
+                throw new IllegalArgumentException("unknown tree shape " + shape);
+        }
+    }
+
+    /**
+     * Root whose children are trees from {@link Tree#randomTree()}, until the size is reached
+     */
+    private static Tree.Node<String> random(int size) {
+        List<Tree.Node<String>> children = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        int n = 1;
+        while (n < size) {
+            Tree.Node<String> child = Tree.randomTree();
+            n += count(child);
+            labels.add("x = " + children.size());
+            children.add(child);
+        }
+        return new Tree.Node<>("root", children, labels, null);
+    }
+
+    /**
+     * Root with size - 1 leaves
+     */
+    private static Tree.Node<String> wide(int size) {
+        List<Tree.Node<String>> children = new ArrayList<>(size);
+        List<String> labels = new ArrayList<>(size);
+        for (int i = 1; i < size; i++) {
+            children.add(new Tree.Node<>("leaf" + i, List.of(), List.of(), null, Connector.NodeStatus.FAILED));
+            labels.add("x = " + i);
+        }
+        return new Tree.Node<>("root", children, labels, null, Connector.NodeStatus.BRANCH);
+    }
+
+    /**
+     * @return smallest number of queens whose search tree has at least the given size
+     */
+    private static int queens(int size) {
+        int n = 4;
+        while (n < 12 && count(NQueens.nQueensTree(n)) < size) {
+            n++;
+        }
+        return n;
+    }
+
+    public static int count(Tree.Node<String> root) {
+        int n = 0;
+        List<Tree.Node<String>> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Tree.Node<String> node = stack.remove(stack.size() - 1);
+            n++;
+            stack.addAll(node.children);
+        }
+        return n;
+    }
+}
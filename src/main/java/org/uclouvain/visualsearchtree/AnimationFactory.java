@@ -4,12 +4,10 @@ package org.uclouvain.visualsearchtree;
 import javafx.animation.*;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.input.ScrollEvent;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
@@ -90,38 +88,18 @@ public class AnimationFactory {
     public static void autoResize(Scene scene, Parent items) {
         double initWidth = scene.getWidth();
         double initHeight = scene.getHeight();
+        // the changes of size during a resize of the window only move the target of the controller
+        ViewController controller = ViewController.of(items);
 
         // changes in width
-        long threshold = 125;
-        Duration delay = Duration.millis(500);
-        ScaleTransition stX = new ScaleTransition(Duration.ONE, items);
-        TranslateTransition ttX = new TranslateTransition(Duration.ONE, items);
-        stX.setDelay(delay);
-        ttX.setDelay(delay);
-
-        scene.widthProperty().addListener((ObservableValue<? extends Number> obs, Number oldVal, Number newVal) -> {
-            stX.stop();
-            ttX.stop();
-            stX.setToX(scene.getWidth() / initWidth);
-            ttX.setToX((scene.getWidth() - initWidth) / 2);
-            ttX.playFromStart();
-            stX.playFromStart();
-        });
+        scene.widthProperty().addListener((ObservableValue<? extends Number> obs, Number oldVal, Number newVal) ->
+                controller.setTarget((scene.getWidth() - initWidth) / 2, controller.getTargetTranslateY(),
+                        scene.getWidth() / initWidth, controller.getTargetScaleY()));
 
         // changes in height
-        ScaleTransition stY = new ScaleTransition(Duration.ONE, items);
-        TranslateTransition ttY = new TranslateTransition(Duration.ONE, items);
-        stY.setDelay(delay);
-        ttY.setDelay(delay);
-
-        scene.heightProperty().addListener((ObservableValue<? extends Number> obs, Number oldVal, Number newVal) -> {
-            stY.stop();
-            ttY.stop();
-            stY.setToY(scene.getHeight()/ initHeight);
-            ttY.setToY((scene.getHeight() - initHeight) / 2);
-            stY.playFromStart();
-            ttY.playFromStart();
-        });
+        scene.heightProperty().addListener((ObservableValue<? extends Number> obs, Number oldVal, Number newVal) ->
+                controller.setTarget(controller.getTargetTranslateX(), (scene.getHeight() - initHeight) / 2,
+                        controller.getTargetScaleX(), scene.getHeight() / initHeight));
     }
 
     /**
@@ -162,31 +140,23 @@ public class AnimationFactory {
     public static void autoResizePreserveRatio(Scene scene, Parent items) {
         double initWidth = scene.getWidth();
         double initHeight = scene.getHeight();
-        // changes in width
-        long threshold = 125;
-        Duration delay = Duration.millis(500);
-        ScaleTransition st = new ScaleTransition(Duration.ONE, items);
-        TranslateTransition tt = new TranslateTransition(Duration.ONE, items);
-        st.setDelay(delay);
-        tt.setDelay(delay);
+        ViewController controller = ViewController.of(items);
 
         ChangeListener<Number> listener = (observableValue, o, t1) -> {
-            st.stop();
-            st.stop();
             double scaling = Math.min(scene.getWidth() / initWidth, scene.getHeight()/ initHeight);
-            st.setToX(scaling);
-            st.setToY(scaling);
             double translation = Math.min((scene.getWidth() - initWidth) / 2, (scene.getHeight() - initHeight) / 2);
-            tt.setToX(translation);
-            tt.setToY(translation);
-            tt.playFromStart();
-            st.playFromStart();
+            controller.setTarget(translation, translation, scaling, scaling);
         };
         scene.heightProperty().addListener(listener);
         scene.widthProperty().addListener(listener);
     }
 
-    public static void moveOnDrag(Parent parent, Node itemsToMove) { new MoveOnDragParent(parent, itemsToMove);}
+    /**
+     * move the items when the parent is dragged, through the {@link ViewController} of the items
+     */
+    public static void moveOnDrag(Parent parent, Node itemsToMove) {
+        ViewController.of(itemsToMove).moveOnDrag(parent);
+    }
 
     public static void moveOnDrag(Scene scene, Node itemsToMove) {
         new MoveOnDragScene(scene, itemsToMove);
@@ -227,77 +197,22 @@ public class AnimationFactory {
         }
     }
 
-    private static class MoveOnDragParent{
-
-        private final Parent parent;
-        private final Node itemsToMove;
-        private double mouseAnchorX; // used for the position when dragging nodes
-        private double mouseAnchorY;
-        private double canvasTranslateX;
-        private double canvasTranslateY;
-
-        public MoveOnDragParent (Parent parent, Node itemsToMove) {
-            this.parent = parent;
-            this.itemsToMove = itemsToMove;
-            registerDragListener();
-        }
-
-        /**
-         * move all objects within the scene when a drag event occurs
-         */
-        private void registerDragListener() {
-            parent.setOnMousePressed((MouseEvent event) -> { // register the initial position for the dragging
-                mouseAnchorX = event.getSceneX();
-                mouseAnchorY = event.getSceneY();
-                canvasTranslateX = itemsToMove.getTranslateX();
-                canvasTranslateY = itemsToMove.getTranslateY();
-            });
-            parent.setOnMouseDragged((MouseEvent event) -> { // move the objects in the scene
-                if (event.isPrimaryButtonDown()) { // only drag using the primary button
-                    itemsToMove.setTranslateX(canvasTranslateX + (event.getSceneX() - mouseAnchorX) / itemsToMove.getScaleX());
-                    itemsToMove.setTranslateY(canvasTranslateY + (event.getSceneY() - mouseAnchorY) / itemsToMove.getScaleY());
-                    event.consume();
-                }
-            });
-        }
-    }
-
     /**
      * zoom on all elements located in the parent whenever a scroll occurs
      * @param parent container for all nodes that needs to be zoomed on
      */
     public static void zoomOnSCroll(Parent parent) {
-        parent.setOnScroll((ScrollEvent event) -> {
-            if (event.getDeltaY() != 0) {
-                event.consume();
-                double factor = 1.5;
-
-                double x = event.getSceneX();
-                double y = event.getSceneY();
-                if (event.getDeltaY() < 0) {
-                    factor = 1.0 / factor;
-                }
-                double oldScale = parent.getScaleX();
-                double scale = oldScale * factor;
-                double f = (scale / oldScale) - 1;
-
-                // determine offset that we will have to move the group
-                Bounds bounds = parent.localToScene(parent.getBoundsInLocal());
-                double dx = (x - (bounds.getWidth() / 2 + bounds.getMinX()));
-                double dy = (y - (bounds.getHeight() / 2 + bounds.getMinY()));
+        zoomOnSCroll(parent, parent);
+    }
 
-                // timeline that scales and moves the group
-                Timeline timeline = new Timeline();
-                timeline.getKeyFrames().clear();
-                timeline.getKeyFrames().addAll(
-                        new KeyFrame(Duration.millis(150), new KeyValue(parent.translateXProperty(), parent.getTranslateX() - f * dx)),
-                        new KeyFrame(Duration.millis(150), new KeyValue(parent.translateYProperty(), parent.getTranslateY() - f * dy)),
-                        new KeyFrame(Duration.millis(150), new KeyValue(parent.scaleXProperty(), scale)),
-                        new KeyFrame(Duration.millis(150), new KeyValue(parent.scaleYProperty(), scale))
-                );
-                timeline.play();
-            }
-        });
+    /**
+     * zoom on all elements located in the parent whenever a scroll occurs on the source
+     * @param source node receiving the scroll events
+     * @param parent container for all nodes that needs to be zoomed on
+     */
+    public static void zoomOnSCroll(Node source, Parent parent) {
+        // the scroll events of a frame are combined into the target of the controller, eased by a single timer
+        ViewController.of(parent).zoomOnScroll(source);
     }
 
 }
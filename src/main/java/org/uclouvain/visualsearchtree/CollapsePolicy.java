@@ -0,0 +1,98 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Automatically collapses the parts of a search tree that are not worth drawing node by node:
+ * subtrees whose leaves all failed, subtrees with fewer nodes than a minimum size,
+ * and subtrees rooted at or below a maximum depth.
+ * Nodes below the maximum depth are never visited, they do not count in the size of their ancestors
+ * and are not considered as failed.
+ */
+public class CollapsePolicy {
+
+    private boolean collapseFailed = true;
+    private int minSize = 0;
+    private int maxDepth = Integer.MAX_VALUE;
+
+    /**
+     * @param collapseFailed true if the subtrees whose leaves are all FAILED must be collapsed
+     */
+    public CollapsePolicy setCollapseFailed(boolean collapseFailed) {
+        this.collapseFailed = collapseFailed;
+        return this;
+    }
+
+    /**
+     * @param minSize subtrees with fewer nodes are collapsed
+     */
+    public CollapsePolicy setMinSize(int minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * @param maxDepth nodes at this depth are collapsed, the root being at depth 0
+     */
+    public CollapsePolicy setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Collapse the inner nodes of the tree matching the policy, in post-order with an explicit stack.
+     * Nodes that do not match the policy are left as they are.
+     * @return number of collapsed nodes
+     */
+    public <T> int apply(Tree.Node<T> root) {
+        int collapsed = 0;
+        Deque<Frame<T>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(root, 0, maxDepth));
+        Frame<T> done = null;
+        while (!stack.isEmpty()) {
+            Frame<T> frame = stack.peek();
+            if (done != null) {
+                frame.size += done.size;
+                frame.failed &= done.failed;
+                done = null;
+            }
+            if (frame.toVisit.hasNext()) {
+                stack.push(new Frame<>(frame.toVisit.next(), frame.depth + 1, maxDepth));
+            } else {
+                stack.pop();
+                Tree.Node<T> node = frame.node;
+                if (node.children.isEmpty()) {
+                    frame.failed = node.status == Connector.NodeStatus.FAILED;
+                } else {
+                    boolean tooDeep = frame.depth >= maxDepth;
+                    if (tooDeep) {
+                        frame.failed = false;
+                    }
+                    if ((tooDeep || frame.size < minSize || (collapseFailed && frame.failed)) && !node.collapsed) {
+                        node.collapse();
+                        collapsed++;
+                    }
+                }
+                done = frame;
+            }
+        }
+        return collapsed;
+    }
+
+    private static final class Frame<T> {
+        final Tree.Node<T> node;
+        final int depth;
+        final Iterator<Tree.Node<T>> toVisit;
+        int size = 1;
+        boolean failed = true; // all the leaves visited so far failed
+
+        Frame(Tree.Node<T> node, int depth, int maxDepth) {
+            this.node = node;
+            this.depth = depth;
+            this.toVisit = depth < maxDepth ? node.children.iterator() : Collections.emptyIterator();
+        }
+    }
+}
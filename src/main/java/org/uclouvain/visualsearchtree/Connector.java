@@ -5,25 +5,40 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.concurrent.TimeUnit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Connector {
     // ATTRIBUTE
     private Socket clientSocket;
     private DataOutputStream out;
+    // message of the sending methods, only used under the lock of the connector
     private Message msg;
-    private boolean DEBUG;
+    // message of createNode, one per sending thread
+    private final ThreadLocal<Message> nodes = ThreadLocal.withInitial(() -> new Message(this));
+    private final boolean DEBUG;
+    private int threadId = -1;
+    private int restartId;
+    private FrameWriter writer;
+    // frame of the synchronous mode, size prefix included
+    private ByteBuffer frame = ByteBuffer.allocate(256);
 
     //CONSTRUCTOR
     public Connector() {
+        this(false);
+    }
+
+    /**
+     * @param debug print the bytes of each message sent synchronously
+     */
+    public Connector(boolean debug) {
         System.out.println("\n---------------------------------------");
         System.out.println("MiniCP-CPProfiler Connector initialized");
-        this.DEBUG = true;
+        this.DEBUG = debug;
     }
 
     // METHODS
@@ -35,20 +50,51 @@ public class Connector {
         private final int id;
         private NodeStatus(int id) { this.id = id; }
         public int getNumber() { return id; }
+        public static NodeStatus fromNumber(int id) {
+            for (NodeStatus status : values()) {
+                if (status.id == id) return status;
+            }
+            throw new IllegalArgumentException("unknown node status " + id);
+        }
     }
 
     public void connect(int port) throws IOException {
         this.clientSocket = new Socket("localhost", port);
         this.out = new DataOutputStream(clientSocket.getOutputStream());
-        this.msg = new Message(this);
+        this.msg = new Message(this).setThreadId(threadId);
         System.out.println("Connected to 'localhost:'" + port + "\n");
     }
 
+    /**
+     * Connect with messages sent by a background thread in large writes, the sending methods only queue them.
+     * {@link #disconnect()} returns once everything is written.
+     */
+    public void connectAsync(int port) throws IOException {
+        connect(port);
+        this.writer = new FrameWriter(out, FrameWriter.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Id of the thread whose nodes are sent, so that the workers of a parallel search each stream their own tree
+     */
+    public synchronized void setThreadId(int threadId) {
+        this.threadId = threadId;
+        if (msg != null) {
+            msg.setThreadId(threadId);
+        }
+    }
+
     public void disconnect() throws IOException, InterruptedException {
-        msg.setType(Message.MsgType.DONE);
-        sendThroughSocket(msg.toBytes());
-        //testMsg(msg.toBytes());
-        msg.clear();
+        synchronized (this) {
+            msg.setType(Message.MsgType.DONE);
+            send(msg);
+            //testMsg(msg.toBytes());
+            msg.clear();
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
         // 01 -> CLOSE STREAM
         out.close();
         // 02 -> CLOSE SOCKET
@@ -61,9 +107,10 @@ public class Connector {
         start("", rid);
     }
 
-    public void start(String file_name, int rid) throws IOException, InterruptedException {
+    public synchronized void start(String file_name, int rid) throws IOException, InterruptedException {
+        restartId = rid;
         msg = msg.setType(Message.MsgType.START).setLabel(file_name).setRestartId(rid);
-        sendThroughSocket(msg.toBytes());
+        send(msg);
         msg.clear();
     }
 
@@ -71,13 +118,14 @@ public class Connector {
         restart("", rid);
     }
 
-    public void restart(String file_name, int rid) throws IOException, InterruptedException {
+    public synchronized void restart(String file_name, int rid) throws IOException, InterruptedException {
+        restartId = rid;
         msg = msg.setType(Message.MsgType.RESTART).setLabel(file_name).setRestartId(rid);
-        sendThroughSocket(msg.toBytes());
+        send(msg);
         msg.clear();
     }
 
-    private Message createNewNode(int sid, int pid, int alt, int kids, NodeStatus status) {
+    private static Message createNewNode(Message msg, int sid, int pid, int alt, int kids, NodeStatus status) {
         return msg.setType(Message.MsgType.NODE)
                 .setNodeId(sid)
                 .setNodePid(pid)
@@ -86,38 +134,60 @@ public class Connector {
                 .setNoteStatus(status.getNumber());
     }
 
+    /**
+     * Message of a node, to be completed then sent by {@link Message#send()}, from any thread.
+     * Each thread has its own message, reused by its next call, so it must be sent before the next node is created.
+     */
     public Message createNode(int sid, int pid, int alt, int kids, NodeStatus status) {
-        return this.createNewNode(sid, pid, alt, kids, status);
+        Message node = nodes.get();
+        node.clear();
+        synchronized (this) {
+            node.setThreadId(threadId).setRestartId(restartId);
+        }
+        return createNewNode(node, sid, pid, alt, kids, status);
     }
 
-    public void sendNode(int sid, int pid, int alt, int kids, NodeStatus status) throws IOException, InterruptedException {
-        Message msg = createNewNode(sid, pid, alt, kids, status);
-        sendThroughSocket(msg.toBytes());
+    /**
+     * Send a node without label, reusing the message of the connector, from any thread
+     */
+    public synchronized void sendNode(int sid, int pid, int alt, int kids, NodeStatus status) throws IOException, InterruptedException {
+        createNewNode(msg, sid, pid, alt, kids, status);
+        send(msg);
         msg.clear();
     }
 
     public void sendNode(Message msg) throws IOException, InterruptedException {
-        sendThroughSocket(msg.toBytes());
+        send(msg);
         msg.clear();
     }
 
-    private synchronized void sendThroughSocket(byte[] msg) throws IOException, InterruptedException {
-        int msg_size = msg.length;
-        byte[] size_buffer = new byte[4];
-        ByteBuffer.wrap(size_buffer).order(ByteOrder.LITTLE_ENDIAN).putInt(msg_size);
+    private void send(Message msg) throws IOException, InterruptedException {
+        if (writer != null) {
+            writer.send(msg);
+            return;
+        }
+        sendNow(msg);
+    }
+
+    private synchronized void sendNow(Message msg) throws IOException {
+        int size;
+        while (true) {
+            try {
+                size = msg.encode(frame.clear());
+                break;
+            } catch (BufferOverflowException e) {
+                frame = ByteBuffer.allocate(frame.capacity() * 2);
+            }
+        }
 
         if(DEBUG) {
             System.out.print("SENT: ");
-            System.out.print(bytesToString(size_buffer));
-            System.out.println(bytesToString(msg));
+            System.out.print(bytesToString(Arrays.copyOf(frame.array(), 4)));
+            System.out.println(bytesToString(Arrays.copyOfRange(frame.array(), 4, size)));
         }
 
-        // 01 -> SEND MSG SIZE
-        out.write(size_buffer);
-        // 02 -> SEND MSG NOW
-        out.write(msg);
-        //out.flush();
-        TimeUnit.SECONDS.sleep(1);
+        // SEND MSG SIZE AND MSG IN ONE WRITE
+        out.write(frame.array(), 0, size);
     }
 
     // ---------- FOR DEBUG -----------
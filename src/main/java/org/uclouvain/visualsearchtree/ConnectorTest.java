@@ -4,7 +4,7 @@ import java.io.IOException;
 
 public class ConnectorTest {
     public static void main(String[] args) {
-        Connector connector = new Connector();
+        Connector connector = new Connector(true);
         try {
             connector.connect(6666);
             connector.start("premier_test",-1);
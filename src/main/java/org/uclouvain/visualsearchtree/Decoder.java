@@ -2,6 +2,7 @@ package org.uclouvain.visualsearchtree;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,7 +17,10 @@ public class Decoder {
         public String msgTypeName;
         public int msgType;
         public int nodeId;
+        public int nodeRestartId;
+        public int nodeThreadId;
         public int nodePid;
+        public int nodePidThreadId;
         public int nodeAlt;
         public int nodeChildren;
         public int nodeStatus;
@@ -34,15 +38,13 @@ public class Decoder {
         }
     }
 
-    private static DecodedMessage formatData;
-
     public static void addToBuffer(List<Byte> buffer, byte[] incomingBytes) {
         for (byte byteData: incomingBytes) {
             buffer.add(byteData);
         }
     }
     public static DecodedMessage deserialize(List<Byte> buffer, int msgSize) {
-        formatData = new DecodedMessage();
+        DecodedMessage formatData = new DecodedMessage();
         byte[] msgBody = new byte[msgSize];
 
         readBuffer(msgBody, buffer, msgSize);
@@ -53,7 +55,10 @@ public class Decoder {
                 formatData.msgTypeName = "NODE";
                 formatData.msgType = NODE;
                 formatData.nodeId = byteArrayToInt(readBytes(msgBody, 1, 4), "BIG_ENDIAN");
+                formatData.nodeRestartId = byteArrayToInt(readBytes(msgBody, 5, 8), "BIG_ENDIAN");
+                formatData.nodeThreadId = byteArrayToInt(readBytes(msgBody, 9, 12), "BIG_ENDIAN");
                 formatData.nodePid = byteArrayToInt(readBytes(msgBody, 13, 16), "BIG_ENDIAN");
+                formatData.nodePidThreadId = byteArrayToInt(readBytes(msgBody, 21, 24), "BIG_ENDIAN");
                 formatData.nodeAlt = byteArrayToInt(readBytes(msgBody, 25, 28), "BIG_ENDIAN");
                 formatData.nodeChildren = byteArrayToInt(readBytes(msgBody, 29, 32), "BIG_ENDIAN");
                 formatData.nodeStatus = (int) msgBody[33] & 0xFF;
@@ -61,8 +66,14 @@ public class Decoder {
                 if(msgBody.length > 34) {
                     int i = 34;
                     do{
+                        if (i + 5 > msgBody.length)
+                            break;
                         int opt_type = (int) msgBody[i] & 0xFF;
                         int opt_size = byteArrayToInt(readBytes(msgBody, i+1, i+5), "BIG_ENDIAN");
+                        // a corrupted size ends the options, as in Frame
+                        if (opt_size < 0)
+                            break;
+                        opt_size = Math.min(opt_size, msgBody.length - i - 5);
                         String opt_msg = new String(readBytes(msgBody, i+5, i+6+opt_size-2), StandardCharsets.US_ASCII);
                         i = i+6+opt_size-1;
                         if(opt_type == 0) {
@@ -84,11 +95,14 @@ public class Decoder {
             case START:
                 formatData.msgTypeName = "START";
                 formatData.msgType = START;
-                if(msgBody.length > 1) {
+                if(msgBody.length >= 6) {
                     int opt_type = (int) msgBody[1] & 0xFF;
                     int opt_size = byteArrayToInt(readBytes(msgBody, 2, 5), "BIG_ENDIAN");
-                    String opt_msg = new String(readBytes(msgBody, 6, 6+opt_size-1), StandardCharsets.UTF_8);
-                    formatData.nodeInfo = opt_msg.trim();
+                    if (opt_size >= 0) {
+                        opt_size = Math.min(opt_size, msgBody.length - 6);
+                        String opt_msg = new String(readBytes(msgBody, 6, 6+opt_size-1), StandardCharsets.UTF_8);
+                        formatData.nodeInfo = opt_msg.trim();
+                    }
                 }
                 break;
             case RESTART:
@@ -100,6 +114,181 @@ public class Decoder {
         }
         return formatData;
     };
+    /**
+     * View of a message in a buffer, reused from message to message without allocation.
+     * The fixed fields are read in place when asked, the label, nogood and info are only decoded into strings
+     * when asked. A frame is only valid until its bytes are overwritten, {@link #toMessage()} makes a copy.
+     * A frame holds no shared state, each thread uses its own.
+     */
+    public static final class Frame {
+        private ByteBuffer buffer;
+        private int start;
+        private int end;
+        private boolean swap; // the buffer is not big endian
+
+        /**
+         * Look at another message
+         * @param start index of the first byte of the message, after its size prefix
+         * @param size size of the message
+         */
+        public Frame wrap(ByteBuffer buffer, int start, int size) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = start + size;
+            this.swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+            return this;
+        }
+
+        public int msgType() {
+            return buffer.get(start) & 0xFF;
+        }
+
+        public int nodeId() {
+            return getInt(start + 1);
+        }
+
+        public int nodeRestartId() {
+            return getInt(start + 5);
+        }
+
+        /** id of the thread of the solver that sent the node, -1 for a sequential search */
+        public int nodeThreadId() {
+            return getInt(start + 9);
+        }
+
+        public int nodePid() {
+            return getInt(start + 13);
+        }
+
+        /** id of the thread of the solver that sent the parent */
+        public int nodePidThreadId() {
+            return getInt(start + 21);
+        }
+
+        public int nodeAlt() {
+            return getInt(start + 25);
+        }
+
+        public int nodeChildren() {
+            return getInt(start + 29);
+        }
+
+        public int nodeStatus() {
+            return buffer.get(start + 33) & 0xFF;
+        }
+
+        /** label of a NODE message, null if it has none */
+        public String nodeLabel() {
+            return option(0);
+        }
+
+        /** nogood of a NODE message, null if it has none */
+        public String nodeNoGood() {
+            return option(1);
+        }
+
+        /** info of a NODE or START message, null if it has none */
+        public String nodeInfo() {
+            if (msgType() == START) {
+                if (end - start < 6 || getInt(start + 2) < 0) {
+                    return null;
+                }
+                return string(start + 6, Math.min(getInt(start + 2), end - start - 6), StandardCharsets.UTF_8);
+            }
+            return option(2);
+        }
+
+        /**
+         * Copy of the bytes of the message, which can be wrapped by a frame once the buffer is reused
+         */
+        public byte[] toBytes() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return bytes;
+        }
+
+        /**
+         * Copy of the message, which stays valid once the buffer is reused
+         */
+        public DecodedMessage toMessage() {
+            DecodedMessage message = new DecodedMessage();
+            message.msgType = msgType();
+            switch (message.msgType) {
+                case NODE:
+                    message.msgTypeName = "NODE";
+                    message.nodeId = nodeId();
+                    message.nodeRestartId = nodeRestartId();
+                    message.nodeThreadId = nodeThreadId();
+                    message.nodePid = nodePid();
+                    message.nodePidThreadId = nodePidThreadId();
+                    message.nodeAlt = nodeAlt();
+                    message.nodeChildren = nodeChildren();
+                    message.nodeStatus = nodeStatus();
+                    message.nodeLabel = nodeLabel();
+                    message.nodeNoGood = nodeNoGood();
+                    message.nodeInfo = nodeInfo();
+                    break;
+                case DONE:
+                    message.msgTypeName = "DONE";
+                    break;
+                case START:
+                    message.msgTypeName = "START";
+                    message.nodeInfo = nodeInfo();
+                    break;
+                case RESTART:
+                    message.msgTypeName = "RESTART";
+                    break;
+                default:
+                    message.msgType = 0;
+                    System.out.println("ERROR: Invalid Message type");
+            }
+            return message;
+        }
+
+        private int getInt(int index) {
+            int value = buffer.getInt(index);
+            return swap ? Integer.reverseBytes(value) : value;
+        }
+
+        /**
+         * Last optional field of a NODE message with a type, each being its type, size and bytes.
+         * Types other than label and nogood are info. A negative size is corrupted, it ends the options.
+         */
+        private String option(int wanted) {
+            int found = -1;
+            int foundSize = 0;
+            for (int i = start + 34; i + 5 <= end; ) {
+                int type = Math.min(buffer.get(i) & 0xFF, 2);
+                int size = Math.min(getInt(i + 1), end - i - 5);
+                if (size < 0) {
+                    break;
+                }
+                if (type == wanted) {
+                    found = i + 5;
+                    foundSize = size;
+                }
+                i += 5 + size;
+            }
+            return found < 0 ? null : string(found, foundSize, StandardCharsets.US_ASCII);
+        }
+
+        private String string(int index, int size, Charset charset) {
+            byte[] bytes = new byte[size];
+            buffer.get(index, bytes);
+            return new String(bytes, charset).trim();
+        }
+    }
+
+    /**
+     * Decode a message from the bytes of a buffer, from its position, which is moved after the message.
+     * @param msgSize size of the message, without its size prefix
+     */
+    public static DecodedMessage deserialize(ByteBuffer buffer, int msgSize) {
+        DecodedMessage message = new Frame().wrap(buffer, buffer.position(), msgSize).toMessage();
+        buffer.position(buffer.position() + msgSize);
+        return message;
+    }
+
     public static boolean readBuffer(byte[] b, List<Byte> buffer, int len) {
         if(len<=0 && buffer.size() == 0)
             return false;
@@ -123,7 +312,7 @@ public class Decoder {
     }
     public static int byteArrayToInt(byte[] bytes, String endian) {
         final ByteBuffer bb = ByteBuffer.wrap(bytes);
-        if(endian == "BIG_ENDIAN")
+        if(endian.equals("BIG_ENDIAN"))
             bb.order(ByteOrder.BIG_ENDIAN);
         else
             bb.order(ByteOrder.LITTLE_ENDIAN);
@@ -0,0 +1,122 @@
+package org.uclouvain.visualsearchtree;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames written to a stream by a background thread, in large writes.
+ *
+ * Senders encode each message, with its size on 4 bytes little endian, at the end of the front buffer. The writer thread
+ * swaps it with the back buffer, which it writes in a single write while the senders fill the front one.
+ * When the front buffer is full the senders wait for the writer, so that memory stays bounded.
+ * If the writer stops on an error or an interrupt, what is queued is lost and every send from then on throws.
+ */
+final class FrameWriter {
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final OutputStream out;
+    private final Thread thread;
+    private ByteBuffer front;
+    private ByteBuffer back;
+    private boolean closing;
+    private IOException error;
+
+    /**
+     * @param capacity size of each of the two buffers, they grow for a larger message
+     */
+    FrameWriter(OutputStream out, int capacity) {
+        this.out = out;
+        this.front = ByteBuffer.allocate(capacity);
+        this.back = ByteBuffer.allocate(capacity);
+        this.thread = new Thread(this::run, "frame-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a message, waiting while the buffer is full
+     * @throws IOException if the writer stopped, on a failed write or an interrupt, or was closed
+     */
+    synchronized void send(Message message) throws IOException, InterruptedException {
+        while (true) {
+            if (error != null) {
+                throw error;
+            }
+            if (closing) {
+                throw new IOException("Writer closed");
+            }
+            boolean empty = front.position() == 0;
+            try {
+                message.encode(front);
+                if (empty) {
+                    notifyAll(); // the writer waits for a first message
+                }
+                return;
+            } catch (BufferOverflowException e) {
+                if (empty) {
+                    front = ByteBuffer.allocate(front.capacity() * 2);
+                } else {
+                    wait(); // for the writer to take the buffer
+                }
+            }
+        }
+    }
+
+    /**
+     * Write what is queued then stop the writer thread
+     * @throws IOException if the writer stopped before writing everything
+     */
+    void close() throws IOException, InterruptedException {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        thread.join();
+        if (error != null) {
+            throw error;
+        }
+        out.flush();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                synchronized (this) {
+                    while (front.position() == 0 && !closing) {
+                        wait();
+                    }
+                    if (front.position() == 0) {
+                        return; // closing and all written
+                    }
+                    batch = front;
+                    front = back;
+                    back = batch;
+                    notifyAll(); // senders waiting for room
+                }
+                out.write(batch.array(), 0, batch.position());
+                batch.clear();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Writer interrupted, the queued frames are not written"));
+        } catch (RuntimeException | Error e) {
+            fail(new IOException("Writer failed", e));
+            throw e;
+        }
+    }
+
+    /**
+     * Drop what is queued and wake the senders waiting for room, they throw the error as will the next ones
+     */
+    private synchronized void fail(IOException e) {
+        error = e;
+        front.clear();
+        notifyAll();
+    }
+}
@@ -0,0 +1,205 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of {@link Tree.Node#design()} kept up to date while nodes are appended to the tree.
+ * The extent of every subtree and the positions of its children are cached, so that appending nodes
+ * only re-fits the nodes on the path from the modified node to the root.
+ * The positioned tree is updated in place and gives the same positions as a full layout.
+ * The children lists of the nodes that receive new children must be mutable.
+ * Nodes below a collapsed node are not laid out, they are only visited once the node is expanded.
+ */
+public class IncrementalLayout<T> {
+
+    private final Map<Tree.Node<T>, Entry<T>> entries = new IdentityHashMap<>();
+    private final Entry<T> root;
+    private final List<Entry<T>> modified = new ArrayList<>();
+    private List<Tree.PositionedNode<T>> changed = new ArrayList<>();
+
+    private static final class Entry<T> {
+        final Tree.Node<T> node;
+        final Entry<T> parent;
+        final int depth;
+        final List<Entry<T>> children = new ArrayList<>();
+        final Tree.PositionedNode<T> positioned;
+        Tree.ArrayExtent extent;
+        boolean dirty;
+
+        Entry(Tree.Node<T> node, Entry<T> parent) {
+            this.node = node;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.positioned = Tree.PositionedNode.of(node, new ArrayList<>());
+        }
+    }
+
+    public IncrementalLayout(Tree.Node<T> root) {
+        this.root = build(root, null);
+    }
+
+    /**
+     * @return the positioned tree, up to date with the last call to {@link #update()}
+     */
+    public Tree.PositionedNode<T> root() {
+        return root.positioned;
+    }
+
+    /**
+     * Append a child (possibly with its own subtree) to a node of the tree.
+     * The layout is not updated until {@link #update()} is called, so that a batch of nodes is laid out at once.
+     * A node that is not laid out is assumed to be hidden below a collapsed node, the child is then only added to it.
+     * @param parent node of the tree
+     * @param child new child, added after the existing children of parent
+     * @param edgeLabel label of the edge between parent and child
+     */
+    public void addChild(Tree.Node<T> parent, Tree.Node<T> child, T edgeLabel) {
+        parent.children.add(child);
+        if (parent.edgeLabels != null) {
+            parent.edgeLabels.add(edgeLabel);
+        }
+        Entry<T> p = entries.get(parent);
+        if (p != null && !parent.collapsed) {
+            build(child, p);
+            markDirty(p);
+        }
+    }
+
+    /**
+     * Collapse a node of the tree, forgetting the layout of its subtree
+     */
+    public void collapse(Tree.Node<T> node) {
+        Entry<T> e = entries.get(node);
+        if (e == null || node.collapsed) {
+            node.collapse();
+            return;
+        }
+        node.collapse();
+        Deque<Entry<T>> stack = new ArrayDeque<>(e.children);
+        while (!stack.isEmpty()) {
+            Entry<T> hidden = stack.pop();
+            entries.remove(hidden.node);
+            stack.addAll(hidden.children);
+        }
+        e.children.clear();
+        e.positioned.children.clear();
+        e.positioned.collapsed = true;
+        markDirty(e);
+    }
+
+    /**
+     * Expand a collapsed node of the tree, laying out its children
+     */
+    public void expand(Tree.Node<T> node) {
+        Entry<T> e = entries.get(node);
+        if (e == null || !node.collapsed) {
+            node.expand();
+            return;
+        }
+        node.expand();
+        e.positioned.collapsed = false;
+        for (Tree.Node<T> child : node.children) {
+            build(child, e);
+        }
+        markDirty(e);
+    }
+
+    /**
+     * Re-fit the nodes whose subtrees have changed since the last update, deepest first
+     * @return the positioned tree
+     */
+    public Tree.PositionedNode<T> update() {
+        modified.sort(Comparator.comparingInt((Entry<T> e) -> e.depth).reversed());
+        changed = new ArrayList<>(modified.size());
+        for (int i = modified.size() - 1; i >= 0; i--) {
+            changed.add(modified.get(i).positioned);
+        }
+        for (Entry<T> e : modified) {
+            refit(e);
+            e.dirty = false;
+        }
+        modified.clear();
+        return root.positioned;
+    }
+
+    /**
+     * @return the positioned nodes whose children were placed again by the last call to {@link #update()},
+     * parents first, e.g. for {@link LayoutIndex#update}
+     */
+    public List<Tree.PositionedNode<T>> changed() {
+        return changed;
+    }
+
+    public boolean contains(Tree.Node<T> node) {
+        return entries.containsKey(node);
+    }
+
+    private void markDirty(Entry<T> e) {
+        while (e != null && !e.dirty) {
+            e.dirty = true;
+            modified.add(e);
+            e = e.parent;
+        }
+    }
+
+    /**
+     * Create the entries of a new subtree and lay it out, in post-order with an explicit stack
+     */
+    private Entry<T> build(Tree.Node<T> node, Entry<T> parent) {
+        Entry<T> top = attach(node, parent);
+        Deque<Entry<T>> stack = new ArrayDeque<>();
+        Deque<Integer> visited = new ArrayDeque<>();
+        stack.push(top);
+        visited.push(0);
+        while (!stack.isEmpty()) {
+            Entry<T> e = stack.peek();
+            int i = visited.pop();
+            List<Tree.Node<T>> children = e.node.visibleChildren();
+            if (i < children.size()) {
+                visited.push(i + 1);
+                stack.push(attach(children.get(i), e));
+                visited.push(0);
+            } else {
+                stack.pop();
+                refit(e);
+            }
+        }
+        return top;
+    }
+
+    private Entry<T> attach(Tree.Node<T> node, Entry<T> parent) {
+        Entry<T> e = new Entry<>(node, parent);
+        entries.put(node, e);
+        if (parent != null) {
+            parent.children.add(e);
+            parent.positioned.children.add(e.positioned);
+        }
+        return e;
+    }
+
+    /**
+     * Place the children of a node from their cached extents, as in Tree.Node.place
+     */
+    private static <T> void refit(Entry<T> e) {
+        if (e.node.collapsed) {
+            e.extent = Tree.ArrayExtent.summary();
+            return;
+        }
+        int n = e.children.size();
+        Tree.ArrayExtent[] extents = new Tree.ArrayExtent[n];
+        for (int i = 0; i < n; i++) {
+            extents[i] = e.children.get(i).extent;
+        }
+        double[] positions = Tree.ArrayExtent.fitList(extents);
+        for (int i = 0; i < n; i++) {
+            e.children.get(i).positioned.position = positions[i];
+        }
+        e.extent = Tree.ArrayExtent.join(extents, positions);
+    }
+}
@@ -0,0 +1,193 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Images of labels rasterized once and packed in a few large pages, so that drawing a label is a single drawImage.
+ *
+ * A label is rasterized for a string and a font size in whole pixels, the zoom bucket. Pages are filled shelf by shelf,
+ * from top to bottom. When all the pages are used the oldest one is cleared with the labels it held, unless it holds
+ * a label given during the current frame: a canvas only reads the pixels of the images it draws when it is rendered,
+ * so the labels already drawn would show the new ones. When every page holds labels of the frame, no more labels
+ * are rasterized until the next one.
+ * Text is rasterized with java.awt into the pixels of the page, which needs no scene nor snapshot.
+ */
+final class LabelAtlas {
+
+    static final int PAGE_SIZE = 1024;
+    static final int DEFAULT_PAGES = 4;
+    private static final int PADDING = 1;
+
+    /** part of a page holding a label */
+    record Slot(WritableImage page, int x, int y, int width, int height) {
+
+    }
+
+    private record Key(String text, int size) {
+
+    }
+
+    private record Entry(Slot slot, Page page) {
+
+    }
+
+    private final class Page {
+        final WritableImage image = new WritableImage(PAGE_SIZE, PAGE_SIZE);
+        final Deque<Key> keys = new ArrayDeque<>();
+        int shelfY; // top of the current shelf
+        int shelfHeight;
+        int x; // where the next label goes on the current shelf
+        long frame = -1; // last frame in which one of its labels was given
+
+        void clear() {
+            for (Key key : keys) {
+                slots.remove(key);
+            }
+            keys.clear();
+            shelfY = 0;
+            shelfHeight = 0;
+            x = 0;
+            // the pixels are left, every slot is written whole, transparent pixels included
+        }
+    }
+
+    private final Map<Key, Entry> slots = new HashMap<>();
+    private final Deque<Page> pages = new ArrayDeque<>(); // oldest first
+    private final int maxPages;
+    private final Map<Integer, Font> fonts = new HashMap<>();
+    // scratch image the labels are rasterized into, grown when needed
+    private BufferedImage scratch = new BufferedImage(256, 32, BufferedImage.TYPE_INT_ARGB_PRE);
+    private int rasterized;
+    private long frame;
+
+    LabelAtlas(int maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Start a new frame, the pages holding the labels given during the previous one can be reused again
+     */
+    void newFrame() {
+        frame++;
+    }
+
+    /**
+     * The slot of a label if it is already rasterized, null otherwise
+     */
+    Slot peek(String text, int size) {
+        return use(slots.get(new Key(text, size)));
+    }
+
+    /**
+     * The slot of a label, rasterized if needed
+     * @param size font size in pixels, labels wider than a page are cut
+     * @return null if there is no room left for it during this frame
+     */
+    Slot get(String text, int size) {
+        Key key = new Key(text, size);
+        Entry entry = slots.get(key);
+        if (entry != null) {
+            return use(entry);
+        }
+        Font font = fonts.computeIfAbsent(size, s -> new Font(Font.SANS_SERIF, Font.PLAIN, s));
+        Graphics2D g = scratch.createGraphics();
+        FontMetrics metrics = g.getFontMetrics(font);
+        g.dispose();
+        int width = Math.min(PAGE_SIZE, metrics.stringWidth(text) + 2 * PADDING);
+        int height = Math.min(PAGE_SIZE, metrics.getAscent() + metrics.getDescent() + 2 * PADDING);
+        Page page = place(width, height);
+        if (page == null) {
+            return null;
+        }
+        if (width > scratch.getWidth() || height > scratch.getHeight()) {
+            scratch = new BufferedImage(Math.max(width, scratch.getWidth()), Math.max(height, scratch.getHeight()),
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        int[] pixels = ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        g = scratch.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font);
+        g.setColor(Color.BLACK);
+        g.drawString(text, PADDING, PADDING + metrics.getAscent());
+        g.dispose();
+
+        Slot slot = new Slot(page.image, page.x, page.shelfY, width, height);
+        page.image.getPixelWriter().setPixels(slot.x(), slot.y(), width, height, PixelFormat.getIntArgbPreInstance(),
+                pixels, 0, scratch.getWidth());
+        page.x += width;
+        page.keys.add(key);
+        entry = new Entry(slot, page);
+        slots.put(key, entry);
+        rasterized++;
+        return use(entry);
+    }
+
+    private Slot use(Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        entry.page().frame = frame;
+        return entry.slot();
+    }
+
+    /**
+     * Page with room for a label at its current position, starting a new shelf, a new page or reusing the oldest one
+     * not used during this frame
+     * @return null if every page is full and used during this frame
+     */
+    private Page place(int width, int height) {
+        Page page = pages.peekLast();
+        if (page != null && page.x + width > PAGE_SIZE && page.shelfY + page.shelfHeight + height <= PAGE_SIZE) {
+            // next shelf
+            page.shelfY += page.shelfHeight;
+            page.shelfHeight = 0;
+            page.x = 0;
+        }
+        if (page == null || page.x + width > PAGE_SIZE || page.shelfY + height > PAGE_SIZE) {
+            if (pages.size() < maxPages) {
+                page = new Page();
+            } else {
+                page = null;
+                for (Iterator<Page> it = pages.iterator(); it.hasNext() && page == null; ) {
+                    Page oldest = it.next();
+                    if (oldest.frame != frame) {
+                        it.remove();
+                        page = oldest;
+                    }
+                }
+                if (page == null) {
+                    return null;
+                }
+                page.clear();
+            }
+            pages.addLast(page);
+        }
+        page.shelfHeight = Math.max(page.shelfHeight, height);
+        return page;
+    }
+
+    /** number of labels rasterized since the creation of the atlas */
+    int rasterized() {
+        return rasterized;
+    }
+
+    int size() {
+        return slots.size();
+    }
+}
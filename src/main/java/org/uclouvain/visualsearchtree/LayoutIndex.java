@@ -0,0 +1,495 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interval index over the absolute positions of a laid out tree, with one sorted level per depth.
+ *
+ * The layouts never let two nodes of the same depth overlap, so a level listed in pre-order is sorted by position,
+ * and the children of a node are a contiguous range of the next level. Finding the nodes or the edges within
+ * an horizontal interval is then a binary search per visible level, whatever the size of the tree.
+ *
+ * A tree growing under an {@link IncrementalLayout} is followed with {@link #update}, which only goes over
+ * the part of each level that changed instead of indexing the whole tree again.
+ */
+public final class LayoutIndex {
+
+    /** status categories of the leaves counted in each subtree */
+    public static final int SOLVED = 0;
+    public static final int FAILED = 1;
+    public static final int OTHER = 2;
+    private static final byte NOT_LEAF = -1;
+
+    private Level[] levels;
+    private int size;
+    private double minX;
+    private double maxX;
+
+    private static final class Level {
+        double[] x = new double[4];
+        double[] rel = new double[4]; // position relative to the parent
+        int[] parent = new int[4]; // index in the level above
+        int[] childStart = new int[5]; // index in the level below, with a sentinel at the end
+        boolean[] collapsed = new boolean[4];
+        byte[] leaf = new byte[4]; // status category of a leaf, NOT_LEAF otherwise
+        Tree.PositionedNode<?>[] node = new Tree.PositionedNode<?>[4];
+        int[][] leaves; // prefix sums over the level of the leaves in each subtree, per status category
+        int size;
+
+        int add(Tree.PositionedNode<?> positioned, double position, int parentIndex, boolean isCollapsed, int firstChild, byte leafCategory) {
+            if (size == x.length) {
+                int capacity = size * 2;
+                x = Arrays.copyOf(x, capacity);
+                rel = Arrays.copyOf(rel, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                childStart = Arrays.copyOf(childStart, capacity + 1);
+                collapsed = Arrays.copyOf(collapsed, capacity);
+                leaf = Arrays.copyOf(leaf, capacity);
+                node = Arrays.copyOf(node, capacity);
+            }
+            node[size] = positioned;
+            x[size] = position;
+            rel[size] = positioned.position;
+            parent[size] = parentIndex;
+            collapsed[size] = isCollapsed;
+            childStart[size] = firstChild;
+            leaf[size] = leafCategory;
+            return size++;
+        }
+    }
+
+    private record IndexTask(Tree.PositionedNode<?> node, double center, int depth, int parent) {
+
+    }
+
+    /**
+     * Index a positioned tree, with a pre-order walk using an explicit stack
+     */
+    public LayoutIndex(Tree.PositionedNode<?> root) {
+        List<Level> levels = new ArrayList<>();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        Deque<IndexTask> stack = new ArrayDeque<>();
+        stack.push(new IndexTask(root, 0.0, 0, -1));
+        while (!stack.isEmpty()) {
+            IndexTask task = stack.pop();
+            int depth = task.depth();
+            if (depth == levels.size()) {
+                levels.add(new Level());
+            }
+            if (depth + 1 == levels.size()) {
+                levels.add(new Level());
+            }
+            double absolute = task.center() + task.node().position;
+            // the children of this node will be the next ones added one level below
+            List<? extends Tree.PositionedNode<?>> children = task.node().children;
+            int index = levels.get(depth).add(task.node(), absolute, task.parent(), task.node().collapsed, levels.get(depth + 1).size,
+                    leafCategory(task.node()));
+            min = Math.min(min, absolute);
+            max = Math.max(max, absolute);
+            count++;
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new IndexTask(children.get(i), absolute, depth + 1, index));
+            }
+        }
+        if (levels.get(levels.size() - 1).size == 0) {
+            levels.remove(levels.size() - 1);
+        }
+        for (int d = 0; d < levels.size(); d++) {
+            Level level = levels.get(d);
+            level.childStart[level.size] = d + 1 < levels.size() ? levels.get(d + 1).size : 0;
+        }
+        this.levels = levels.toArray(new Level[0]);
+        this.size = count;
+        this.minX = min;
+        this.maxX = max;
+        for (int d = this.levels.length - 1; d >= 0; d--) {
+            countLeaves(d, 0);
+        }
+    }
+
+    private static byte leafCategory(Tree.PositionedNode<?> node) {
+        if (!node.children.isEmpty()) return NOT_LEAF;
+        if (node.status == Connector.NodeStatus.SOLVED) return SOLVED;
+        if (node.status == Connector.NodeStatus.FAILED) return FAILED;
+        return OTHER;
+    }
+
+    /**
+     * The leaves of a subtree are its own plus the sum over its children, a range of the level below,
+     * which must be counted first
+     * @param from first node of the level whose subtree may have changed
+     */
+    private void countLeaves(int depth, int from) {
+        Level level = levels[depth];
+        int[][] below = depth + 1 < levels.length ? levels[depth + 1].leaves : null;
+        if (level.leaves == null || level.leaves[0].length < level.size + 1) {
+            int capacity = Math.max(level.size + 1, level.leaves == null ? 0 : 2 * level.leaves[0].length);
+            level.leaves = level.leaves == null ? new int[3][capacity] : new int[][]{
+                    Arrays.copyOf(level.leaves[0], capacity), Arrays.copyOf(level.leaves[1], capacity), Arrays.copyOf(level.leaves[2], capacity)};
+        }
+        for (int c = 0; c < 3; c++) {
+            int[] prefix = level.leaves[c];
+            for (int i = from; i < level.size; i++) {
+                int subtree = level.leaf[i] == c ? 1 : 0;
+                if (below != null) {
+                    subtree += below[c][level.childStart[i + 1]] - below[c][level.childStart[i]];
+                }
+                prefix[i + 1] = prefix[i] + subtree;
+            }
+        }
+    }
+
+    /**
+     * Follow the changes made to the indexed tree by an {@link IncrementalLayout}: nodes appended below the nodes
+     * whose children were placed again, and the moves of their children.
+     *
+     * Level by level from the root, the children of the nodes from the leftmost one whose children changed onward
+     * are read again from the tree. Left of them, only the subtrees whose relative position changed are moved,
+     * and the leaves are counted again from the first node whose subtree changed. In a depth first search the new
+     * nodes are at the right of every level, so little is read again, but moving a child of the root still moves
+     * the positions of its whole subtree.
+     * The index must not be read by another thread meanwhile.
+     *
+     * @param root root of the indexed tree
+     * @param changed nodes whose children were placed again since the last update, see {@link IncrementalLayout#changed()}
+     * @return the rectangle where the drawing changed, as {min x, min depth, max x, max depth} in layout units,
+     * null if nothing changed, or an empty array if the tree changed otherwise, e.g. a node was collapsed,
+     * and it must be indexed again
+     */
+    public double[] update(Tree.PositionedNode<?> root, Collection<? extends Tree.PositionedNode<?>> changed) {
+        if (levels.length == 0 || levels[0].node[0] != root) {
+            return new double[0];
+        }
+        Set<Tree.PositionedNode<?>> changedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        changedSet.addAll(changed);
+        // checked before anything is modified, so that a failed update leaves the index as it was
+        if (!canUpdate(root, changedSet)) {
+            return new double[0];
+        }
+        List<Level> all = new ArrayList<>(Arrays.asList(levels));
+        int[] countFrom = new int[all.size() + 1];
+        Arrays.fill(countFrom, Integer.MAX_VALUE);
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+        // state of the current level: first node read again, range of moved nodes, nodes whose children changed
+        int tail = Integer.MAX_VALUE;
+        int movedFrom = 0;
+        int movedTo = 0;
+        List<Integer> changedNodes = new ArrayList<>();
+        Level top = all.get(0);
+        if (top.rel[0] != root.position) {
+            top.rel[0] = root.position;
+            include(box, 0, top.x[0]);
+            top.x[0] = root.position;
+            include(box, 0, top.x[0]);
+            movedTo = 1;
+        }
+        if (changedSet.contains(root)) {
+            changedNodes.add(0);
+        }
+        int depth = 0;
+        while (tail != Integer.MAX_VALUE || movedFrom < movedTo || !changedNodes.isEmpty()) {
+            Level level = all.get(depth);
+            for (int i : changedNodes) {
+                level.leaf[i] = leafCategory(level.node[i]);
+                include(box, depth, level.x[i]);
+            }
+            countFrom[depth] = Math.min(tail, changedNodes.isEmpty() ? Integer.MAX_VALUE : changedNodes.get(0));
+            // the children of the nodes from this one onward are read again
+            int from = tail;
+            for (int i : changedNodes) {
+                if (i < from && level.node[i].children.size() != level.childStart[i + 1] - level.childStart[i]) {
+                    from = i;
+                }
+            }
+            if (depth + 1 == all.size()) {
+                if (from >= level.size) {
+                    level.childStart[level.size] = 0;
+                    break;
+                }
+                Level empty = new Level();
+                empty.leaves = new int[3][1];
+                all.add(empty);
+                countFrom = Arrays.copyOf(countFrom, all.size() + 1);
+                countFrom[all.size()] = Integer.MAX_VALUE;
+            }
+            Level next = all.get(depth + 1);
+            List<Integer> nextChanged = new ArrayList<>();
+            int nextTail = Integer.MAX_VALUE;
+            if (from != Integer.MAX_VALUE) {
+                nextTail = level.childStart[from];
+                if (nextTail < next.size) {
+                    include(box, depth + 1, next.x[nextTail]);
+                    include(box, depth + 1, next.x[next.size - 1]);
+                }
+                int boundary = next.childStart[nextTail]; // start of the children of the old node, overwritten by add
+                next.size = nextTail;
+                for (int q = from; q < level.size; q++) {
+                    level.childStart[q] = next.size;
+                    for (Tree.PositionedNode<?> child : level.node[q].children) {
+                        int c = next.add(child, level.x[q] + child.position, q, child.collapsed, 0, leafCategory(child));
+                        if (changedSet.contains(child)) {
+                            nextChanged.add(c);
+                        }
+                    }
+                }
+                level.childStart[level.size] = next.size;
+                if (nextTail < next.size) {
+                    include(box, depth + 1, next.x[nextTail]);
+                    include(box, depth + 1, next.x[next.size - 1]);
+                    next.childStart[nextTail] = boundary;
+                }
+            }
+            // children of the nodes left of the ones read again, which may have moved
+            int nextMovedFrom = Integer.MAX_VALUE;
+            int nextMovedTo = Integer.MIN_VALUE;
+            if (movedFrom < Math.min(movedTo, from)) {
+                nextMovedFrom = level.childStart[movedFrom];
+                nextMovedTo = level.childStart[Math.min(movedTo, from)];
+            }
+            for (int i : changedNodes) {
+                if (i >= from) {
+                    continue;
+                }
+                List<? extends Tree.PositionedNode<?>> children = level.node[i].children;
+                int start = level.childStart[i];
+                for (int k = 0; k < children.size(); k++) {
+                    Tree.PositionedNode<?> child = children.get(k);
+                    if (child.position != next.rel[start + k]) {
+                        next.rel[start + k] = child.position;
+                        nextMovedFrom = Math.min(nextMovedFrom, start + k);
+                        nextMovedTo = Math.max(nextMovedTo, start + k + 1);
+                    }
+                    if (changedSet.contains(child)) {
+                        nextChanged.add(start + k);
+                    }
+                }
+            }
+            nextMovedTo = Math.min(nextMovedTo, nextTail);
+            if (nextMovedFrom < nextMovedTo) {
+                include(box, depth + 1, next.x[nextMovedFrom]);
+                include(box, depth + 1, next.x[nextMovedTo - 1]);
+                for (int j = nextMovedFrom; j < nextMovedTo; j++) {
+                    next.x[j] = level.x[next.parent[j]] + next.rel[j];
+                }
+                include(box, depth + 1, next.x[nextMovedFrom]);
+                include(box, depth + 1, next.x[nextMovedTo - 1]);
+            }
+            Collections.sort(nextChanged);
+            tail = nextTail;
+            movedFrom = nextMovedFrom;
+            movedTo = nextMovedTo;
+            changedNodes = nextChanged;
+            depth++;
+        }
+
+        if (all.get(all.size() - 1).size == 0) {
+            all.remove(all.size() - 1);
+        }
+        levels = all.toArray(new Level[0]);
+        for (int d = levels.length - 1; d >= 0; d--) {
+            if (countFrom[d] != Integer.MAX_VALUE) {
+                countLeaves(d, countFrom[d]);
+            }
+        }
+        size = 0;
+        minX = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        for (Level level : levels) {
+            size += level.size;
+            // a level is sorted by position
+            minX = Math.min(minX, level.x[0]);
+            maxX = Math.max(maxX, level.x[level.size - 1]);
+        }
+        return box[0] == Double.POSITIVE_INFINITY ? null : box;
+    }
+
+    /**
+     * The index can follow the changed nodes if their children were only appended and they were not collapsed
+     * or expanded. The changed nodes are found from the root down, each changed node below the root having
+     * a changed parent. Changed nodes that are not found were appended since the last update.
+     */
+    private boolean canUpdate(Tree.PositionedNode<?> root, Set<Tree.PositionedNode<?>> changed) {
+        if (!changed.isEmpty() && !changed.contains(root)) {
+            return false;
+        }
+        Deque<int[]> stack = new ArrayDeque<>(); // depth and index of the changed nodes
+        stack.push(new int[]{0, 0});
+        while (!stack.isEmpty() && !changed.isEmpty()) {
+            int[] task = stack.pop();
+            Level level = levels[task[0]];
+            int i = task[1];
+            Tree.PositionedNode<?> node = level.node[i];
+            if (node.collapsed != level.collapsed[i]) {
+                return false;
+            }
+            int start = level.childStart[i];
+            int count = level.childStart[i + 1] - start;
+            List<? extends Tree.PositionedNode<?>> children = node.children;
+            if (children.size() < count) {
+                return false;
+            }
+            for (int k = 0; k < count; k++) {
+                Tree.PositionedNode<?> child = children.get(k);
+                if (child != levels[task[0] + 1].node[start + k]) {
+                    return false;
+                }
+                if (changed.contains(child)) {
+                    stack.push(new int[]{task[0] + 1, start + k});
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void include(double[] box, int depth, double x) {
+        box[0] = Math.min(box[0], x);
+        box[1] = Math.min(box[1], depth);
+        box[2] = Math.max(box[2], x);
+        box[3] = Math.max(box[3], depth);
+    }
+
+    /** number of nodes */
+    public int size() {
+        return size;
+    }
+
+    /** number of levels, the height of the tree plus one */
+    public int depth() {
+        return levels.length;
+    }
+
+    public int size(int depth) {
+        return levels[depth].size;
+    }
+
+    public double minX() {
+        return minX;
+    }
+
+    public double maxX() {
+        return maxX;
+    }
+
+    /** absolute position of the i-th node of a level */
+    public double x(int depth, int i) {
+        return levels[depth].x[i];
+    }
+
+    /** index of the parent in the level above, -1 for the root */
+    public int parent(int depth, int i) {
+        return levels[depth].parent[i];
+    }
+
+    /** index in the level below of the first child of the i-th node */
+    public int childStart(int depth, int i) {
+        return levels[depth].childStart[i];
+    }
+
+    /** index in the level below after the last child of the i-th node */
+    public int childEnd(int depth, int i) {
+        return levels[depth].childStart[i + 1];
+    }
+
+    public boolean collapsed(int depth, int i) {
+        return levels[depth].collapsed[i];
+    }
+
+    /** the i-th node of a level */
+    public Tree.PositionedNode<?> node(int depth, int i) {
+        return levels[depth].node[i];
+    }
+
+    /**
+     * Index of the node of the level closest to x, -1 if the level is empty
+     */
+    public int nearest(int depth, double x) {
+        Level level = levels[depth];
+        int i = from(depth, x);
+        if (i == level.size || (i > 0 && x - level.x[i - 1] < level.x[i] - x)) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Number of leaves of a status category within the subtrees of the nodes from index from to index to of a level
+     */
+    public int leaves(int depth, int from, int to, int category) {
+        int[] prefix = levels[depth].leaves[category];
+        return prefix[to] - prefix[from];
+    }
+
+    /**
+     * Index of the first node of the level whose position is at least x
+     */
+    public int from(int depth, double x) {
+        Level level = levels[depth];
+        int lo = 0;
+        int hi = level.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (level.x[mid] < x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Index after the last node of the level whose position is at most x
+     */
+    public int to(int depth, double x) {
+        Level level = levels[depth];
+        int lo = 0;
+        int hi = level.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (level.x[mid] <= x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Index of the first node of the level whose edge to its parent reaches x, going right.
+     * The positions of the nodes and of their parents are both sorted, so is the rightmost end of the edges.
+     */
+    public int edgesFrom(int depth, double x) {
+        Level level = levels[depth];
+        double[] above = levels[depth - 1].x;
+        int lo = 0;
+        int hi = level.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Math.max(level.x[mid], above[level.parent[mid]]) < x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Index after the last node of the level whose edge to its parent reaches x, going left
+     */
+    public int edgesTo(int depth, double x) {
+        Level level = levels[depth];
+        double[] above = levels[depth - 1].x;
+        int lo = 0;
+        int hi = level.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Math.min(level.x[mid], above[level.parent[mid]]) <= x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
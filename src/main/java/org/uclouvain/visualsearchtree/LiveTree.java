@@ -0,0 +1,230 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Live view of a search tree received by a {@link VisualTreeServer}.
+ *
+ * Decoded messages are queued by the server thread and applied to the tree once per animation pulse,
+ * at most a given number per pulse and within a time budget, so that the JavaFX thread never gets flooded.
+ * The layout is updated incrementally every pulse, and the index of the drawn tree with it, in place
+ * (see {@link TreePane#update}). The index is only updated when the time since the last update is large compared
+ * to what the update cost, as moving a large subtree moves the positions of all its nodes.
+ *
+ * Nodes are identified by the id of the solver thread that sent them and their id. A RESTART message starts
+ * a new tree, as START does, the tree of the previous restart is not kept.
+ */
+public class LiveTree implements Consumer<Decoder.DecodedMessage> {
+
+    public static final int DEFAULT_MAX_PER_FRAME = 50_000;
+    public static final long DEFAULT_FRAME_BUDGET = 8_000_000; // nanoseconds
+    // indexing the tree takes at most this fraction of the time
+    private static final int REFRESH_RATIO = 4;
+
+    private final TreePane pane;
+    private final ConcurrentLinkedQueue<Decoder.DecodedMessage> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AnimationTimer timer;
+    private final Map<Long, Tree.Node<String>> nodes = new HashMap<>();
+    // index of the nodes in the stats, by order of arrival
+    private final Map<Long, Integer> arrival = new HashMap<>();
+    // nodes received before their parent, by key of the parent
+    private final Map<Long, List<Decoder.DecodedMessage>> orphans = new HashMap<>();
+    private final SubtreeStats stats = new SubtreeStats();
+    // nodes whose children were placed again since the last update of the pane
+    private final Set<Tree.PositionedNode<?>> changedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private IncrementalLayout<String> layout;
+    private int maxPerFrame = DEFAULT_MAX_PER_FRAME;
+    private long frameBudget = DEFAULT_FRAME_BUDGET;
+    private boolean changed;
+    private long lastRefresh;
+    private long refreshCost;
+
+    public LiveTree(TreePane pane) {
+        this.pane = pane;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse(now);
+            }
+        };
+    }
+
+    public LiveTree setMaxPerFrame(int maxPerFrame) {
+        this.maxPerFrame = maxPerFrame;
+        return this;
+    }
+
+    public LiveTree setFrameBudget(long nanoseconds) {
+        this.frameBudget = nanoseconds;
+        return this;
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * Queue a decoded message, from any thread
+     */
+    @Override
+    public void accept(Decoder.DecodedMessage message) {
+        inbox.add(message);
+        backlog.incrementAndGet();
+    }
+
+    /**
+     * Handler of the frames of a {@link SessionServer} session, queuing a copy of each message, from any thread
+     */
+    public Consumer<Decoder.Frame> frames() {
+        return frame -> accept(frame.toMessage());
+    }
+
+    /**
+     * @return number of messages received but not applied yet
+     */
+    public int backlog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return number of nodes in the tree
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Counters of the subtrees, up to date with the nodes applied so far.
+     * The nodes are identified by their order of arrival, see {@link #statsId(int, int)}.
+     */
+    public SubtreeStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return id of a node in the stats, {@link SubtreeStats#NONE} if it was not applied
+     */
+    public int statsId(int threadId, int nodeId) {
+        return arrival.getOrDefault(key(threadId, nodeId), SubtreeStats.NONE);
+    }
+
+    private static long key(int threadId, int nodeId) {
+        return (long) threadId << 32 | nodeId & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Apply the queued messages within the limits of a frame, then update the layout and the drawn tree
+     * @param now time of the pulse, in nanoseconds
+     */
+    void pulse(long now) {
+        applyQueued();
+        if (layout == null || !changed) {
+            return;
+        }
+        Tree.PositionedNode<String> root = layout.update();
+        changedNodes.addAll(layout.changed());
+        if (now - lastRefresh >= REFRESH_RATIO * refreshCost) {
+            long t = System.nanoTime();
+            pane.update(root, changedNodes);
+            changedNodes.clear();
+            refreshCost = System.nanoTime() - t;
+            lastRefresh = now;
+            changed = false;
+        }
+    }
+
+    /**
+     * Apply the queued messages, at most the maximum per frame and within the frame budget
+     */
+    void applyQueued() {
+        long start = System.nanoTime();
+        int applied = 0;
+        Decoder.DecodedMessage message;
+        while (applied < maxPerFrame && System.nanoTime() - start < frameBudget && (message = inbox.poll()) != null) {
+            backlog.decrementAndGet();
+            apply(message);
+            applied++;
+        }
+    }
+
+    private void apply(Decoder.DecodedMessage message) {
+        if (message.msgType == Message.MsgType.START.getNumber() || message.msgType == Message.MsgType.RESTART.getNumber()) {
+            nodes.clear();
+            arrival.clear();
+            orphans.clear();
+            stats.clear();
+            changedNodes.clear();
+            layout = null;
+        } else if (message.msgType == Message.MsgType.NODE.getNumber()) {
+            addNode(message);
+        } else if (message.msgType == Message.MsgType.DONE.getNumber()) {
+            refreshCost = 0; // show the final tree right away
+        }
+    }
+
+    /**
+     * Add the node of a message, then the nodes that were waiting for it, without recursion
+     */
+    private void addNode(Decoder.DecodedMessage first) {
+        Deque<Decoder.DecodedMessage> ready = new ArrayDeque<>();
+        ready.push(first);
+        while (!ready.isEmpty()) {
+            Decoder.DecodedMessage message = ready.pop();
+            long id = key(message.nodeThreadId, message.nodeId);
+            if (nodes.containsKey(id)) {
+                continue; // sent twice
+            }
+            long pid = key(message.nodePidThreadId, message.nodePid);
+            Tree.Node<String> parent = nodes.get(pid);
+            if (parent == null && (layout != null || message.nodePid != -1)) {
+                orphans.computeIfAbsent(pid, p -> new ArrayList<>()).add(message);
+                continue;
+            }
+            Tree.Node<String> node = new Tree.Node<>(message.nodeLabel == null ? String.valueOf(message.nodeId) : message.nodeLabel,
+                    new ArrayList<>(), null, null, status(message.nodeStatus));
+            node.setInfo(message.nodeInfo);
+            nodes.put(id, node);
+            int index = arrival.size();
+            stats.add(index, parent == null ? SubtreeStats.NONE : arrival.get(pid), node.getStatus());
+            arrival.put(id, index);
+            if (parent == null) {
+                layout = new IncrementalLayout<>(node);
+            } else {
+                layout.addChild(parent, node, null);
+            }
+            changed = true;
+            List<Decoder.DecodedMessage> waiting = orphans.remove(id);
+            if (waiting != null) {
+                for (int i = waiting.size() - 1; i >= 0; i--) {
+                    ready.push(waiting.get(i));
+                }
+            }
+        }
+    }
+
+    private static Connector.NodeStatus status(int number) {
+        try {
+            return Connector.NodeStatus.fromNumber(number);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
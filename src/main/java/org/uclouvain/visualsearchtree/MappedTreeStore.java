@@ -0,0 +1,327 @@
+package org.uclouvain.visualsearchtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Node store kept in a memory-mapped file rather than on the heap, for trees larger than the heap.
+ * Every node is a fixed-width record at the offset given by its id, so the ids of the NODE messages
+ * (nodeId, nodePid) index the file directly. The file is mapped by chunks on demand, the mapping of a chunk
+ * growing with the ids written in it, and paging is left to the operating system.
+ * Only the fixed-width fields are stored, labels are not kept.
+ * Nodes received before their parent are written in their record too, and chained from the record of the parent
+ * until it arrives, so that nothing is kept on the heap whatever the order of the messages.
+ */
+public class MappedTreeStore implements NodeStore, Closeable {
+
+    // header: magic, size, orphans
+    private static final int MAGIC = 0x56535431; // "VST1"
+    private static final int HEADER = 64;
+
+    // record fields
+    private static final int PARENT = 0;
+    private static final int FIRST_CHILD = 4;
+    private static final int LAST_CHILD = 8;
+    private static final int NEXT_SIBLING = 12;
+    private static final int DEPTH = 16;
+    private static final int ALT = 20;
+    private static final int KIDS = 24;
+    private static final int STATUS = 28;
+    private static final int FLAGS = 29;
+    private static final int POSITION = 32;
+    private static final int RECORD = 40;
+
+    // flags of a record, a node waiting for its parent uses NEXT_SIBLING to chain the other nodes waiting for it,
+    // and a record having nodes waiting for it keeps the first one in FIRST_CHILD
+    private static final byte PRESENT = 1;
+    private static final byte WAITING = 2;
+    private static final byte WAITED_FOR = 4;
+
+    private static final int CHUNK_RECORDS = 1 << 20; // 40 MB per chunk
+    private static final int CHUNK_BYTES = CHUNK_RECORDS * RECORD;
+    private static final int MIN_MAPPING = 4096 * RECORD; // first mapping of a chunk, doubled as it fills up
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private int size;
+    private int orphans;
+
+    /**
+     * Open the store in the given file, creating it if needed.
+     * The nodes of an existing store are kept.
+     */
+    public MappedTreeStore(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean exists = channel.size() >= HEADER;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (exists) {
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a tree store: " + file);
+            }
+            size = header.getInt(4);
+            orphans = header.getInt(8);
+        } else {
+            header.putInt(0, MAGIC);
+            header.putInt(4, 0);
+            header.putInt(8, 0);
+        }
+    }
+
+    private MappedByteBuffer chunk(int id) {
+        int c = id / CHUNK_RECORDS;
+        int end = offset(id, RECORD);
+        if (c < chunks.length && chunks[c] != null && chunks[c].capacity() >= end) {
+            return chunks[c];
+        }
+        return map(c, end);
+    }
+
+    /**
+     * Map a chunk on at least the given number of bytes, doubling its previous mapping
+     */
+    private MappedByteBuffer map(int c, int bytes) {
+        if (c >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, c + 1);
+        }
+        int length = chunks[c] == null ? MIN_MAPPING : chunks[c].capacity();
+        while (length < bytes) {
+            length *= 2;
+        }
+        length = Math.min(length, CHUNK_BYTES);
+        try {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + (long) c * CHUNK_BYTES, length);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunks[c] = chunk;
+            return chunk;
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot map the tree store", e);
+        }
+    }
+
+    private static int offset(int id, int field) {
+        return (id % CHUNK_RECORDS) * RECORD + field;
+    }
+
+    private int getInt(int id, int field) {
+        return chunk(id).getInt(offset(id, field));
+    }
+
+    private void putInt(int id, int field, int value) {
+        chunk(id).putInt(offset(id, field), value);
+    }
+
+    /**
+     * Add a node as described by a NODE message. A node whose parent is not in the store yet
+     * is kept aside in its record and added with its parent, the nodes waiting for it are then added too,
+     * without recursion. Siblings are kept ordered by alternative.
+     * @param id node id
+     * @param pid id of the parent, NONE for the root
+     * @param alt index of the node among its siblings
+     * @param kids number of children announced for the node
+     * @param status status number of the node
+     */
+    public void addNode(int id, int pid, int alt, int kids, int status) {
+        if ((flags(id) & (PRESENT | WAITING)) != 0) {
+            return; // sent twice
+        }
+        if (pid != NONE && !contains(pid)) {
+            wait(id, pid, alt, kids, status);
+            return;
+        }
+        int ready = waiting(id);
+        write(id, pid, alt, kids, status);
+        // nodes whose parent was just added, chained by NEXT_SIBLING
+        while (ready != NONE) {
+            int node = ready;
+            ready = getInt(node, NEXT_SIBLING);
+            for (int w = waiting(node), next; w != NONE; w = next) {
+                next = getInt(w, NEXT_SIBLING);
+                putInt(w, NEXT_SIBLING, ready);
+                ready = w;
+            }
+            write(node, parent(node), alt(node), kids(node), status(node));
+            setOrphans(orphans - 1);
+        }
+    }
+
+    private byte flags(int id) {
+        return chunk(id).get(offset(id, FLAGS));
+    }
+
+    /**
+     * Write a node in its record without adding it, first of the nodes waiting for its parent
+     */
+    private void wait(int id, int pid, int alt, int kids, int status) {
+        MappedByteBuffer chunk = chunk(id);
+        int o = offset(id, 0);
+        chunk.putInt(o + PARENT, pid);
+        chunk.putInt(o + NEXT_SIBLING, waiting(pid));
+        chunk.putInt(o + ALT, alt);
+        chunk.putInt(o + KIDS, kids);
+        chunk.put(o + STATUS, (byte) status);
+        chunk.put(o + FLAGS, (byte) ((flags(id) & WAITED_FOR) | WAITING));
+        putInt(pid, FIRST_CHILD, id);
+        chunk(pid).put(offset(pid, FLAGS), (byte) (flags(pid) | WAITED_FOR));
+        setOrphans(orphans + 1);
+    }
+
+    /**
+     * @return first of the nodes waiting for the given one, chained by NEXT_SIBLING, or NONE
+     */
+    private int waiting(int id) {
+        return (flags(id) & WAITED_FOR) == 0 ? NONE : getInt(id, FIRST_CHILD);
+    }
+
+    private void setOrphans(int orphans) {
+        this.orphans = orphans;
+        header.putInt(8, orphans);
+    }
+
+    /**
+     * @return number of nodes received whose parent is not in the store yet
+     */
+    public int orphans() {
+        return orphans;
+    }
+
+    private void write(int id, int pid, int alt, int kids, int status) {
+        MappedByteBuffer chunk = chunk(id);
+        int o = offset(id, 0);
+        chunk.putInt(o + PARENT, pid);
+        chunk.putInt(o + FIRST_CHILD, NONE);
+        chunk.putInt(o + LAST_CHILD, NONE);
+        chunk.putInt(o + NEXT_SIBLING, NONE);
+        chunk.putInt(o + ALT, alt);
+        chunk.putInt(o + KIDS, kids);
+        chunk.put(o + STATUS, (byte) status);
+        chunk.put(o + FLAGS, PRESENT);
+        chunk.putDouble(o + POSITION, 0);
+        if (pid == NONE) {
+            chunk.putInt(o + DEPTH, 0);
+        } else {
+            chunk.putInt(o + DEPTH, depth(pid) + 1);
+            link(pid, id, alt);
+        }
+        if (id >= size) {
+            size = id + 1;
+            header.putInt(4, size);
+        }
+    }
+
+    public void addNode(Decoder.DecodedMessage msg) {
+        addNode(msg.nodeId, msg.nodePid, msg.nodeAlt, msg.nodeChildren, msg.nodeStatus);
+    }
+
+    /**
+     * Insert the child among the children of pid, by increasing alternative
+     */
+    private void link(int pid, int id, int alt) {
+        int last = getInt(pid, LAST_CHILD);
+        if (last == NONE) {
+            putInt(pid, FIRST_CHILD, id);
+            putInt(pid, LAST_CHILD, id);
+        } else if (alt(last) <= alt) {
+            putInt(last, NEXT_SIBLING, id);
+            putInt(pid, LAST_CHILD, id);
+        } else {
+            int prev = NONE;
+            int c = getInt(pid, FIRST_CHILD);
+            while (alt(c) <= alt) {
+                prev = c;
+                c = nextSibling(c);
+            }
+            putInt(id, NEXT_SIBLING, c);
+            if (prev == NONE) {
+                putInt(pid, FIRST_CHILD, id);
+            } else {
+                putInt(prev, NEXT_SIBLING, id);
+            }
+        }
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < size && flags(id) == PRESENT;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int parent(int id) {
+        return getInt(id, PARENT);
+    }
+
+    @Override
+    public int firstChild(int id) {
+        return getInt(id, FIRST_CHILD);
+    }
+
+    @Override
+    public int nextSibling(int id) {
+        return getInt(id, NEXT_SIBLING);
+    }
+
+    @Override
+    public int depth(int id) {
+        return getInt(id, DEPTH);
+    }
+
+    public int alt(int id) {
+        return getInt(id, ALT);
+    }
+
+    /**
+     * @return number of children announced by the NODE message of the node
+     */
+    public int kids(int id) {
+        return getInt(id, KIDS);
+    }
+
+    @Override
+    public int status(int id) {
+        byte status = chunk(id).get(offset(id, STATUS));
+        return status == (byte) NONE ? NONE : status & 0xFF;
+    }
+
+    @Override
+    public double position(int id) {
+        return chunk(id).getDouble(offset(id, POSITION));
+    }
+
+    @Override
+    public void setPosition(int id, double position) {
+        chunk(id).putDouble(offset(id, POSITION), position);
+    }
+
+    /**
+     * Write the modified pages to the file
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * Close the file. The mappings stay valid until they are garbage collected, they must not be used anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        chunks = new MappedByteBuffer[0];
+        channel.close();
+    }
+}
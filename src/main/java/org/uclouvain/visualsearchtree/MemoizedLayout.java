@@ -0,0 +1,151 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of {@link Tree.Node#design()} that lays out every distinct subtree shape only once.
+ * Subtrees are hash-consed on their shape (the shapes of their children, and whether they are collapsed)
+ * in a bounded LRU table, which gives each shape an id, its extent and the positions of its children.
+ * A shape evicted then seen again gets a new id, ids are never reused, so that a shape identified by the ids
+ * of its children always has the same layout.
+ * Identical shapes are laid out with identical operations, so the positions are exactly those of design().
+ */
+public class MemoizedLayout implements TreeLayout {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int LEAF = 0;
+
+    private final int capacity;
+
+    public MemoizedLayout() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of shapes kept in the table
+     */
+    public MemoizedLayout(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Shape of a subtree, identified by the ids of the shapes of its children
+     */
+    private static final class Shape {
+        final boolean collapsed;
+        final int[] children;
+        final int hash;
+
+        Shape(boolean collapsed, int[] children) {
+            this.collapsed = collapsed;
+            this.children = children;
+            this.hash = 31 * Arrays.hashCode(children) + (collapsed ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Shape s && hash == s.hash && collapsed == s.collapsed && Arrays.equals(children, s.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Layout of a shape: its id, positions of the children and extent of the subtree
+     */
+    private record Placement(int id, double[] positions, Tree.ArrayExtent extent) {
+
+    }
+
+    private static final class Frame<T> {
+        final Tree.Node<T> node;
+        final Iterator<Tree.Node<T>> toVisit;
+        final List<Tree.PositionedNode<T>> subtrees;
+        final Tree.ArrayExtent[] extents;
+        final int[] shapes;
+
+        Frame(Tree.Node<T> node) {
+            List<Tree.Node<T>> children = node.visibleChildren();
+            this.node = node;
+            this.toVisit = children.iterator();
+            this.subtrees = new ArrayList<>(children.size());
+            this.extents = new Tree.ArrayExtent[children.size()];
+            this.shapes = new int[children.size()];
+        }
+    }
+
+    private record Result<T>(Tree.PositionedNode<T> node, Tree.ArrayExtent extent, int shape) {
+
+    }
+
+    @Override
+    public <T> Tree.PositionedNode<T> layout(Tree.Node<T> root) {
+        Map<Shape, Placement> shapes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Shape, Placement> eldest) {
+                return size() > capacity;
+            }
+        };
+        int nextId = LEAF + 1;
+
+        Placement leaf = place(LEAF, false, new Tree.ArrayExtent[0]);
+
+        Deque<Frame<T>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(root));
+        Result<T> res = null;
+        while (!stack.isEmpty()) {
+            Frame<T> frame = stack.peek();
+            if (res != null) {
+                int i = frame.subtrees.size();
+                frame.extents[i] = res.extent();
+                frame.shapes[i] = res.shape();
+                frame.subtrees.add(res.node());
+                res = null;
+            }
+            if (frame.toVisit.hasNext()) {
+                stack.push(new Frame<>(frame.toVisit.next()));
+            } else {
+                stack.pop();
+                if (frame.shapes.length == 0 && !frame.node.collapsed) {
+                    // leaves are by far the most common shape, they share a single extent
+                    res = new Result<>(Tree.PositionedNode.of(frame.node, frame.subtrees), leaf.extent(), LEAF);
+                    continue;
+                }
+                Shape shape = new Shape(frame.node.collapsed, frame.shapes);
+                Placement placement = shapes.get(shape);
+                if (placement == null) {
+                    placement = place(nextId++, frame.node.collapsed, frame.extents);
+                    shapes.put(shape, placement);
+                }
+                double[] positions = placement.positions();
+                for (int i = 0; i < positions.length; i++) {
+                    frame.subtrees.get(i).position += positions[i];
+                }
+                res = new Result<>(Tree.PositionedNode.of(frame.node, frame.subtrees), placement.extent(), placement.id());
+            }
+        }
+        return res.node();
+    }
+
+    /**
+     * Same computation as Tree.Node.place
+     */
+    private static Placement place(int id, boolean collapsed, Tree.ArrayExtent[] extents) {
+        if (collapsed) {
+            return new Placement(id, new double[0], Tree.ArrayExtent.summary());
+        }
+        double[] positions = Tree.ArrayExtent.fitList(extents);
+        return new Placement(id, positions, Tree.ArrayExtent.join(extents, positions));
+    }
+}
@@ -3,15 +3,21 @@ package org.uclouvain.visualsearchtree;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public final class Message {
 
     // ATTRIBUTE
     private int msgType;
     private int restartId;
+    private int threadId = -1;
     private int nodeId;
     private int nodePid;
     private int nodeAlt;
@@ -23,6 +29,9 @@ public final class Message {
     private String restartLabel;
 
     private Connector connector_;
+    // reused to encode the strings, allocated by the first one
+    private CharsetEncoder encoder;
+    private CharBuffer chars;
 
     // ENUMERATION
     public enum MsgType {
@@ -80,6 +89,14 @@ public final class Message {
         return this;
     }
 
+    /**
+     * Id of the thread of the solver sending the nodes, -1 for a sequential search
+     */
+    public Message setThreadId(int id) {
+        this.threadId = id;
+        return this;
+    }
+
     public Message setNodePid(int pid) {
         this.nodePid = pid;
         return this;
@@ -130,107 +147,68 @@ public final class Message {
     }
 
     // PUBLIC METHODS
+    /**
+     * Bytes of the message, without its size prefix
+     */
     public byte[] toBytes() throws IOException {
-        System.out.println("\n" + this.toString() + "\n");
-        if (this.msgType == MsgType.DONE.getNumber()) {
-            return this.convertToBytes(MsgType.DONE.getNumber(), 1);
-        } else if (this.msgType == MsgType.START.getNumber()) {
-            // CREATE OUTPUT STREAM
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-            // LET PREPARE REQUIRED ARGS
-            byte[] msg_type = this.convertToBytes(MsgType.START.getNumber(), 1);
-            outputStream.write(msg_type);
-
-            // OPTIONAL PARAMETERS
-            if (restartLabel != "-") {
-                byte[] msg_info = this.convertToBytes(OptionalArgs.INFO.getNumber(), 1);
-
-                // CONFIG FZN FILE TITLE(CPP SIDE)
-                String reformat_data = "{\"name\": \"" + this.restartLabel + "\"}";
-                byte[] msg_data = reformat_data.getBytes(StandardCharsets.UTF_8);
-
-                // INFO DATA SIZE
-                byte[] size_data = this.convertToBytes(msg_data.length, 4, "BIG_ENDIAN");
-
-                // GROUPED DATA
-                outputStream.write(msg_info);
-                outputStream.write(size_data);
-                outputStream.write(msg_data);
-            }
-            return outputStream.toByteArray();
-        } else if (this.msgType == MsgType.RESTART.getNumber()) {
-            byte[] msg_type = this.convertToBytes(MsgType.RESTART.getNumber(), 1);
-            return msg_type;
-        } else if (this.msgType == MsgType.NODE.getNumber()) {
-            // CREATE OUTPUT STREAM
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-            // LET PREPARE REQUIRED ARGS
-            byte[] msg_type = this.convertToBytes(MsgType.NODE.getNumber(), 1);
-            // Id-[12bytes]
-            byte[] node_id = this.convertToBytes(this.nodeId, 4, "BIG_ENDIAN");
-            byte[] node_restart_id = this.convertToBytes(restartId, 4, "BIG_ENDIAN");
-            byte[] node_thread_id = this.convertToBytes(-1, 4, "BIG_ENDIAN");
-            // Pid-[12bytes]
-            byte[] parent_id = this.convertToBytes(this.nodePid, 4, "BIG_ENDIAN");
-            byte[] parent_restart_id = this.convertToBytes(restartId, 4, "BIG_ENDIAN");
-            byte[] parent_thread_id = this.convertToBytes(-1, 4, "BIG_ENDIAN");
-            // Alt-&-kids-[4bytes]
-            byte[] msg_alt = this.convertToBytes(this.nodeAlt, 4, "BIG_ENDIAN");
-            byte[] msg_kid = this.convertToBytes(this.nodeChildren, 4, "BIG_ENDIAN");
-            // Status-[1bytes]
-            byte[] msg_status = this.convertToBytes(nodeStatus, 1);
-
-            // WRITE REQUIRED ARGS
-            outputStream.write(msg_type);
-            outputStream.write(node_id);
-            outputStream.write(node_restart_id);
-            outputStream.write(node_thread_id);
-            outputStream.write(parent_id);
-            outputStream.write(parent_restart_id);
-            outputStream.write(parent_thread_id);
-            outputStream.write(msg_alt);
-            outputStream.write(msg_kid);
-            outputStream.write(msg_status);
-
-            // LET PREPARE OPTIONAL ARGS
-            if (nodeLabel != "-") {
-                byte[] msg_label = this.convertToBytes(OptionalArgs.LABEL.getNumber(), 1);
-                byte[] msg_data1 = nodeLabel.getBytes(StandardCharsets.UTF_8);
-                byte[] size_data1 = this.convertToBytes(msg_data1.length, 4, "BIG_ENDIAN");
-                outputStream.write(msg_label);
-                outputStream.write(size_data1);
-                outputStream.write(msg_data1);
-            }
-            if (nodeNoGood != "-") {
-                byte[] msg_nogood = this.convertToBytes(OptionalArgs.NOGOOD.getNumber(), 1);
-                byte[] msg_data2 = nodeLabel.getBytes(StandardCharsets.UTF_8);
-                byte[] size_data2 = this.convertToBytes(msg_data2.length, 4, "BIG_ENDIAN");
-                outputStream.write(msg_nogood);
-                outputStream.write(size_data2);
-                outputStream.write(msg_data2);
-            }
-            if (nodeInfo != "-") {
-                byte[] msg_info = this.convertToBytes(OptionalArgs.INFO.getNumber(), 1);
-
-                // CONFIG FZN FILE TITLE(CPP SIDE)
-                String reformat_data = "{\"name\": \"" + this.nodeInfo + "\"}";
-                byte[] msg_data3 = reformat_data.getBytes(StandardCharsets.UTF_8);
-
-                // INFO DATA SIZE
-                byte[] size_data3 = this.convertToBytes(msg_data3.length, 4, "BIG_ENDIAN");
+        ByteBuffer buffer = ByteBuffer.allocate(maxFrameSize());
+        int size = encode(buffer);
+        return Arrays.copyOfRange(buffer.array(), 4, size);
+    }
 
-                outputStream.write(msg_info);
-                outputStream.write(size_data3);
-                outputStream.write(msg_data3);
+    /**
+     * Write the message at the position of a buffer, with its size on 4 bytes little endian before it,
+     * as expected by CP-Profiler. Numbers are written in place and strings through a reused encoder,
+     * so that nothing is allocated once the encoder has seen strings as long.
+     * @return number of bytes written, size prefix included
+     * @throws BufferOverflowException if the message does not fit, the position of the buffer is then unchanged
+     */
+    public int encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            buffer.putInt(0); // size, once known
+            if (this.msgType == MsgType.START.getNumber()) {
+                buffer.put((byte) MsgType.START.getNumber());
+                if (isSet(restartLabel)) {
+                    putInfo(buffer, restartLabel);
+                }
+            } else if (this.msgType == MsgType.RESTART.getNumber()) {
+                buffer.put((byte) MsgType.RESTART.getNumber());
+            } else if (this.msgType == MsgType.NODE.getNumber()) {
+                buffer.put((byte) MsgType.NODE.getNumber());
+                // Id-[12bytes]
+                buffer.putInt(nodeId).putInt(restartId).putInt(threadId);
+                // Pid-[12bytes]
+                buffer.putInt(nodePid).putInt(restartId).putInt(threadId);
+                // Alt-&-kids-[8bytes]
+                buffer.putInt(nodeAlt).putInt(nodeChildren);
+                // Status-[1bytes]
+                buffer.put((byte) nodeStatus);
+                if (isSet(nodeLabel)) {
+                    buffer.put((byte) OptionalArgs.LABEL.getNumber());
+                    putString(buffer, null, nodeLabel, null);
+                }
+                if (isSet(nodeNoGood)) {
+                    buffer.put((byte) OptionalArgs.NOGOOD.getNumber());
+                    putString(buffer, null, nodeNoGood, null);
+                }
+                if (isSet(nodeInfo)) {
+                    putInfo(buffer, nodeInfo);
+                }
+            } else {
+                // DONE, OR DEFAULT STATE, END GRAPH BUILD
+                buffer.put((byte) MsgType.DONE.getNumber());
             }
-
-            //SEND FINAL RESULT
-            return outputStream.toByteArray();
-        } else {
-            // DEFAULT STATE, END GRAPH BUILD
-            return this.convertToBytes(MsgType.DONE.getNumber(), 1);
+            int size = buffer.position() - start;
+            buffer.putInt(start, Integer.reverseBytes(size - 4));
+            return size;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        } finally {
+            buffer.order(order);
         }
     }
 
@@ -260,22 +238,66 @@ public final class Message {
                 "\t'nodeNoGood': " + nodeNoGood + ",\n" +
                 "\t'nodeInfo': " + nodeInfo + ",\n" +
                 "\t'restartId': " + restartId + ",\n" +
+                "\t'threadId': " + threadId + ",\n" +
                 "\t'restartLabel': " + restartLabel + "\n}";
     }
 
     //PRIVATE METHODS
-    private byte[] convertToBytes(int data, int byte_size) {
-        byte[] msg_bytes_tab = new byte[byte_size];
-        for (int i = 0; i < byte_size; i++) {
-            msg_bytes_tab[i] = (byte) ((data >>> (i * 8) & 0xff));
+    private static boolean isSet(String data) {
+        return data != null && !data.equals("-");
+    }
+
+    /**
+     * Info field, the data being given as the name of a JSON object, e.g. the title of the FZN file (CPP side)
+     */
+    private void putInfo(ByteBuffer buffer, String data) {
+        buffer.put((byte) OptionalArgs.INFO.getNumber());
+        putString(buffer, "{\"name\": \"", data, "\"}");
+    }
+
+    /**
+     * Size on 4 bytes then the UTF-8 bytes of the concatenation of the parts, null ones being skipped
+     */
+    private void putString(ByteBuffer buffer, String prefix, String data, String suffix) {
+        int sizeIndex = buffer.position();
+        buffer.putInt(0);
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        int length = data.length() + (prefix == null ? 0 : prefix.length()) + (suffix == null ? 0 : suffix.length());
+        if (chars == null || chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars == null ? 64 : 2 * chars.capacity()));
         }
-        return msg_bytes_tab;
+        chars.clear();
+        if (prefix != null) {
+            chars.put(prefix);
+        }
+        chars.put(data);
+        if (suffix != null) {
+            chars.put(suffix);
+        }
+        chars.flip();
+        encoder.reset();
+        if (encoder.encode(chars, buffer, true).isOverflow() || encoder.flush(buffer).isOverflow()) {
+            throw new BufferOverflowException();
+        }
+        buffer.putInt(sizeIndex, buffer.position() - sizeIndex - 4);
     }
 
-    private byte[] convertToBytes(int data, int byte_size, String BIG_ENDIAN) {
-        byte[] msg_bytes_tab = new byte[byte_size];
-        ByteBuffer.wrap(msg_bytes_tab).order(ByteOrder.BIG_ENDIAN).putInt(data);
-        return msg_bytes_tab;
+    /**
+     * Upper bound of the size of the frame, size prefix included
+     */
+    private int maxFrameSize() {
+        int length = 0;
+        for (String data : new String[]{nodeLabel, nodeNoGood, nodeInfo, restartLabel}) {
+            if (isSet(data)) {
+                length += data.length() + 16; // with the JSON around info
+            }
+        }
+        // at most 3 bytes per UTF-16 char
+        return 4 + 34 + 4 * 5 + 3 * length;
     }
 
     private byte[] intToBytes_(final int i) {
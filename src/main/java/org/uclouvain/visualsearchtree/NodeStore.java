@@ -0,0 +1,108 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tree whose nodes are identified by int ids and whose structure is read through fixed-width fields,
+ * so that it can be laid out without node objects.
+ */
+public interface NodeStore {
+
+    int NONE = -1;
+
+    /**
+     * @return number of node ids, every id is smaller than this number
+     */
+    int size();
+
+    int parent(int id);
+
+    int firstChild(int id);
+
+    int nextSibling(int id);
+
+    int depth(int id);
+
+    /**
+     * @return status number of the node, see {@link Connector.NodeStatus#getNumber()}, NONE if unknown
+     */
+    int status(int id);
+
+    /**
+     * @return position relative to the parent, as computed by the last call to {@link #layout(int)}
+     */
+    double position(int id);
+
+    void setPosition(int id, double position);
+
+    default int childCount(int id) {
+        int n = 0;
+        for (int c = firstChild(id); c != NONE; c = nextSibling(c)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return position of the node relative to the root
+     */
+    default double absolutePosition(int id) {
+        double x = 0;
+        for (int n = id; n != NONE; n = parent(n)) {
+            x += position(n);
+        }
+        return x;
+    }
+
+    /**
+     * Lay out the tree below the root with the algorithm of {@link Tree.Node#design()},
+     * in post-order with an explicit stack, storing the positions relative to the parents.
+     * Only the extents of the children of the nodes on the stack are kept in memory.
+     * @param root id of the root of the laid out tree
+     */
+    default void layout(int root) {
+        int[] stack = new int[16];
+        int[] cursor = new int[16]; // next child to visit for every node on the stack
+        List<List<Tree.ArrayExtent>> childExtents = new ArrayList<>(); // extents of the children laid out so far, per stack level
+        int top = 0;
+        stack[top] = root;
+        cursor[top] = firstChild(root);
+        childExtents.add(new ArrayList<>());
+        top++;
+        Tree.ArrayExtent[] none = new Tree.ArrayExtent[0];
+        while (top > 0) {
+            int id = stack[top - 1];
+            int child = cursor[top - 1];
+            if (child != NONE) {
+                cursor[top - 1] = nextSibling(child);
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                    cursor = Arrays.copyOf(cursor, top * 2);
+                }
+                if (top == childExtents.size()) {
+                    childExtents.add(new ArrayList<>());
+                }
+                stack[top] = child;
+                cursor[top] = firstChild(child);
+                top++;
+            } else {
+                top--;
+                List<Tree.ArrayExtent> done = childExtents.get(top);
+                Tree.ArrayExtent[] extents = done.toArray(none);
+                done.clear();
+                double[] positions = Tree.ArrayExtent.fitList(extents);
+                int i = 0;
+                for (int c = firstChild(id); c != NONE; c = nextSibling(c)) {
+                    setPosition(c, positions[i++]);
+                }
+                Tree.ArrayExtent extent = Tree.ArrayExtent.join(extents, positions);
+                if (top > 0) {
+                    childExtents.get(top - 1).add(extent);
+                }
+            }
+        }
+        setPosition(root, 0);
+    }
+}
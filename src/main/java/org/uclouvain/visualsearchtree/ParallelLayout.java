@@ -0,0 +1,197 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Layout of {@link Tree.Node#design()} where large sibling subtrees are laid out in parallel on a {@link ForkJoinPool}.
+ * Subtrees smaller than the threshold are laid out sequentially, and every node is placed with the same
+ * operations as the sequential layout, so both produce exactly the same positions.
+ */
+public class ParallelLayout implements TreeLayout {
+
+    public static final int DEFAULT_THRESHOLD = 1 << 14;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelLayout() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param pool pool running the layout tasks
+     * @param threshold subtrees with fewer nodes are laid out sequentially
+     */
+    public ParallelLayout(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public <T> Tree.PositionedNode<T> layout(Tree.Node<T> root) {
+        Set<Tree.Node<T>> large = largeSubtrees(root, threshold);
+        return pool.invoke(new DesignTask<>(root, large)).left();
+    }
+
+    /**
+     * Find the subtrees having at least threshold nodes, in post-order with an explicit stack
+     */
+    private static <T> Set<Tree.Node<T>> largeSubtrees(Tree.Node<T> root, int threshold) {
+        Set<Tree.Node<T>> large = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<SizeFrame<T>> stack = new ArrayDeque<>();
+        stack.push(new SizeFrame<>(root));
+        int size = 0;
+        while (!stack.isEmpty()) {
+            SizeFrame<T> frame = stack.peek();
+            frame.size += size;
+            size = 0;
+            if (frame.toVisit.hasNext()) {
+                stack.push(new SizeFrame<>(frame.toVisit.next()));
+            } else {
+                stack.pop();
+                if (frame.size >= threshold) {
+                    large.add(frame.node);
+                }
+                size = frame.size;
+            }
+        }
+        return large;
+    }
+
+    private static final class SizeFrame<T> {
+        final Tree.Node<T> node;
+        final Iterator<Tree.Node<T>> toVisit;
+        int size = 1;
+
+        SizeFrame(Tree.Node<T> node) {
+            this.node = node;
+            this.toVisit = node.visibleChildren().iterator();
+        }
+    }
+
+    /**
+     * Lays out a large subtree. The task follows the path of nodes having a single large child without forking,
+     * so that the nesting of tasks only grows with the number of nodes having several large children.
+     */
+    private static final class DesignTask<T> extends RecursiveTask<Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Tree.Node<T> node;
+        private final Set<Tree.Node<T>> large;
+
+        DesignTask(Tree.Node<T> node, Set<Tree.Node<T>> large) {
+            this.node = node;
+            this.large = large;
+        }
+
+        @Override
+        protected Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> compute() {
+            if (!large.contains(node)) {
+                return node.design_();
+            }
+            List<Tree.Node<T>> spine = new ArrayList<>();
+            Tree.Node<T> current = node;
+            Tree.Node<T> next = singleLargeChild(current);
+            while (next != null) {
+                spine.add(current);
+                current = next;
+                next = singleLargeChild(current);
+            }
+
+            Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> res = designChildren(current);
+            for (int i = spine.size() - 1; i >= 0; i--) {
+                res = designAround(spine.get(i), res);
+            }
+            return res;
+        }
+
+        /**
+         * @return the only large child of the node, or null if it has zero or several large children
+         */
+        private Tree.Node<T> singleLargeChild(Tree.Node<T> n) {
+            Tree.Node<T> found = null;
+            for (Tree.Node<T> child : n.visibleChildren()) {
+                if (large.contains(child)) {
+                    if (found != null) {
+                        return null;
+                    }
+                    found = child;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Lay out a node whose large children, if any, are laid out in parallel.
+         * All of them but the last are forked, the current thread lays out the small children then the last large one
+         * while the forked ones run, then joins them, most recently forked first.
+         */
+        private Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> designChildren(Tree.Node<T> n) {
+            List<Tree.Node<T>> children = n.visibleChildren();
+            int nChildren = children.size();
+            int last = -1; // index of the last large child
+            for (int i = 0; i < nChildren; i++) {
+                if (large.contains(children.get(i))) {
+                    last = i;
+                }
+            }
+            @SuppressWarnings("unchecked")
+            DesignTask<T>[] forked = (DesignTask<T>[]) new DesignTask<?>[nChildren];
+            for (int i = 0; i < last; i++) {
+                if (large.contains(children.get(i))) {
+                    forked[i] = new DesignTask<>(children.get(i), large);
+                    forked[i].fork();
+                }
+            }
+
+            List<Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent>> results = new ArrayList<>(Collections.nCopies(nChildren, null));
+            for (int i = 0; i < nChildren; i++) {
+                if (!large.contains(children.get(i))) {
+                    results.set(i, children.get(i).design_());
+                }
+            }
+            if (last >= 0) {
+                results.set(last, new DesignTask<>(children.get(last), large).compute());
+            }
+            for (int i = last - 1; i >= 0; i--) {
+                if (forked[i] != null) {
+                    results.set(i, forked[i].join());
+                }
+            }
+
+            List<Tree.PositionedNode<T>> subtrees = new ArrayList<>(nChildren);
+            Tree.ArrayExtent[] extents = new Tree.ArrayExtent[nChildren];
+            for (Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> res : results) {
+                extents[subtrees.size()] = res.right();
+                subtrees.add(res.left());
+            }
+            return Tree.Node.place(n, subtrees, extents);
+        }
+
+        /**
+         * Lay out a node whose single large child has already been laid out
+         */
+        private Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> designAround(Tree.Node<T> n, Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> largeChild) {
+            List<Tree.Node<T>> children = n.visibleChildren();
+            int nChildren = children.size();
+            List<Tree.PositionedNode<T>> subtrees = new ArrayList<>(nChildren);
+            Tree.ArrayExtent[] extents = new Tree.ArrayExtent[nChildren];
+            for (Tree.Node<T> child : children) {
+                Tree.Pair<Tree.PositionedNode<T>, Tree.ArrayExtent> res = large.contains(child) ? largeChild : child.design_();
+                extents[subtrees.size()] = res.right();
+                subtrees.add(res.left());
+            }
+            return Tree.Node.place(n, subtrees, extents);
+        }
+    }
+}
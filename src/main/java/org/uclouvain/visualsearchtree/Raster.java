@@ -0,0 +1,215 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Software rasterizer of a tree into an array of ARGB pixels, without JavaFX, so that it can run on any thread.
+ * Draws the same shapes as the canvas of {@link TreePane}, without anti-aliasing.
+ */
+final class Raster implements TreeRenderer.Target {
+
+    static final int WHITE = 0xFFFFFFFF;
+    static final int TRANSPARENT = 0;
+    private static final int EDGE_COLOR = 0xFF000000;
+    private static final int NODE_COLOR = 0xFFFF0000;
+    private static final int SUMMARY_COLOR = 0xFF808080;
+    // same colors as the outlines of the canvas, by status category of the leaves
+    private static final int[] OUTLINE_COLORS = {0xFF008000, 0xFFFF0000, 0xFF000000};
+
+    final int width;
+    final int height;
+    final int[] pixels;
+    private final double originX;
+    private final double originY;
+    private final double scale;
+    private final int lineWidth;
+
+    // nodes and outlines are drawn after all the edges
+    private double[] nodes = new double[48]; // x, y, 1 if collapsed
+    private int nodeCount;
+    private final List<double[]> outlines = new ArrayList<>();
+    private final List<int[]> outlineInfo = new ArrayList<>(); // count, category
+
+    /**
+     * @param originX, originY drawing coordinates of the top left corner
+     * @param scale size of a drawing unit in pixels
+     */
+    Raster(int width, int height, double originX, double originY, double scale) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.originX = originX;
+        this.originY = originY;
+        this.scale = scale;
+        this.lineWidth = Math.max(1, (int) Math.round(scale));
+    }
+
+    void fill(int argb) {
+        Arrays.fill(pixels, argb);
+    }
+
+    @Override
+    public void edge(double x1, double y1, double x2, double y2) {
+        line(px(x1), py(y1), px(x2), py(y2));
+    }
+
+    @Override
+    public void node(int depth, int i, double x, double y, boolean collapsed) {
+        if (3 * nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        nodes[3 * nodeCount] = x;
+        nodes[3 * nodeCount + 1] = y;
+        nodes[3 * nodeCount + 2] = collapsed ? 1 : 0;
+        nodeCount++;
+    }
+
+    @Override
+    public void outline(double[] points, int count, int category) {
+        outlines.add(points);
+        outlineInfo.add(new int[]{count, category});
+    }
+
+    /**
+     * Draw a node right away, when the caller already gave all the edges
+     */
+    void dot(double x, double y) {
+        disc(px(x), py(y), RADIUS * scale);
+    }
+
+    /**
+     * Draw the summaries, the outlines and the nodes kept until all the edges were drawn
+     */
+    void finish() {
+        double halfWidth = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE;
+        double[] triangle = new double[6];
+        for (int n = 0; n < nodeCount; n++) {
+            if (nodes[3 * n + 2] != 0) {
+                double x = nodes[3 * n];
+                double y = nodes[3 * n + 1];
+                triangle[0] = y;
+                triangle[1] = x;
+                triangle[2] = x;
+                triangle[3] = y + Y_SCALE;
+                triangle[4] = x - halfWidth;
+                triangle[5] = x + halfWidth;
+                polygon(triangle, 2, SUMMARY_COLOR);
+            }
+        }
+        for (int o = 0; o < outlines.size(); o++) {
+            int[] info = outlineInfo.get(o);
+            polygon(outlines.get(o), info[0], OUTLINE_COLORS[info[1]]);
+        }
+        double r = RADIUS * scale;
+        for (int n = 0; n < nodeCount; n++) {
+            disc(px(nodes[3 * n]), py(nodes[3 * n + 1]), r);
+        }
+        nodeCount = 0;
+        outlines.clear();
+        outlineInfo.clear();
+    }
+
+    private double px(double x) {
+        return (x - originX) * scale;
+    }
+
+    private double py(double y) {
+        return (y - originY) * scale;
+    }
+
+    /**
+     * Line clipped to the raster (Liang-Barsky) then stepped one pixel at a time
+     */
+    private void line(double x1, double y1, double x2, double y2) {
+        double margin = lineWidth;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double t0 = 0;
+        double t1 = 1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 + margin, width + margin - x1, y1 + margin, height + margin - y1};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) return;
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    if (t > t1) return;
+                    t0 = Math.max(t0, t);
+                } else {
+                    if (t < t0) return;
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+        double sx = x1 + t0 * dx;
+        double sy = y1 + t0 * dy;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) * (t1 - t0));
+        double ix = steps == 0 ? 0 : dx * (t1 - t0) / steps;
+        double iy = steps == 0 ? 0 : dy * (t1 - t0) / steps;
+        int half = lineWidth / 2;
+        for (int s = 0; s <= steps; s++) {
+            int x = (int) Math.floor(sx + s * ix) - half;
+            int y = (int) Math.floor(sy + s * iy) - half;
+            for (int row = Math.max(0, y); row < Math.min(height, y + lineWidth); row++) {
+                for (int col = Math.max(0, x); col < Math.min(width, x + lineWidth); col++) {
+                    pixels[row * width + col] = EDGE_COLOR;
+                }
+            }
+        }
+    }
+
+    private void disc(double cx, double cy, double r) {
+        if (r < 0.5) {
+            span((int) Math.floor(cy), cx, cx, NODE_COLOR);
+            return;
+        }
+        for (int row = Math.max(0, (int) Math.floor(cy - r)); row <= Math.min(height - 1, (int) Math.floor(cy + r)); row++) {
+            double dy = row + 0.5 - cy;
+            double dx = Math.sqrt(Math.max(0, r * r - dy * dy));
+            span(row, cx - dx, cx + dx, NODE_COLOR);
+        }
+    }
+
+    /**
+     * Fill a polygon made of a left and a right contour, both going down
+     * @param points y, left and right of each point in drawing coordinates, from top to bottom
+     */
+    private void polygon(double[] points, int count, int color) {
+        for (int k = 0; k < count; k++) {
+            span((int) Math.floor(py(points[3 * k])), px(points[3 * k + 1]), px(points[3 * k + 2]), color);
+        }
+        for (int k = 0; k + 1 < count; k++) {
+            double y0 = py(points[3 * k]);
+            double y1 = py(points[3 * k + 3]);
+            double l0 = px(points[3 * k + 1]), l1 = px(points[3 * k + 4]);
+            double r0 = px(points[3 * k + 2]), r1 = px(points[3 * k + 5]);
+            int first = Math.max(0, (int) Math.ceil(y0 - 0.5));
+            int last = Math.min(height - 1, (int) Math.ceil(y1 - 0.5) - 1);
+            for (int row = first; row <= last; row++) {
+                double t = (row + 0.5 - y0) / (y1 - y0);
+                span(row, l0 + t * (l1 - l0), r0 + t * (r1 - r0), color);
+            }
+        }
+    }
+
+    /**
+     * Fill the pixels of a row between two positions, at least one pixel wide
+     */
+    private void span(int row, double left, double right, int color) {
+        if (row < 0 || row >= height) {
+            return;
+        }
+        int from = (int) Math.floor(left);
+        int to = Math.max(from, (int) Math.ceil(right) - 1);
+        from = Math.max(0, from);
+        to = Math.min(width - 1, to);
+        if (from <= to) {
+            Arrays.fill(pixels, row * width + from, row * width + to + 1, color);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.uclouvain.visualsearchtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Server for several solvers streaming at once, e.g. the workers of a parallel or portfolio search,
+ * each connection sending the messages of {@link VisualTreeServer}.
+ *
+ * Connections are accepted on one thread and spread over a few reactor threads, each with its own selector,
+ * that read and decode the messages of their connections as soon as they are complete.
+ * Messages are merged into sessions, one per restart and thread ids of the nodes: the handler of a session is created
+ * the first time one of its nodes arrives. Other messages (START, RESTART, DONE) have no such ids.
+ * A RESTART goes to the session of the next node of its connection, the one of the new restart, before that node,
+ * so that the trees of the previous restarts are kept. START and DONE go to the sessions that their connection
+ * fed so far. A START arriving before the first node of its connection is kept and given to each session that
+ * the connection creates, before its first node. A connection that sends no node feeds no session,
+ * its messages are dropped.
+ *
+ * Handlers get a {@link Decoder.Frame} only valid during the call, and are called from the reactor of the connection.
+ * A session fed by several connections is called from several threads, its handler must then be thread safe,
+ * as is the one of {@link LiveTree#frames()}, e.g. {@code session -> new LiveTree(pane).frames()}.
+ * A connection whose messages cannot be read or whose handler throws is closed, the others go on.
+ */
+public class SessionServer implements Closeable {
+
+    /** identifies the tree of a solver thread, restarts included */
+    public record Session(int restartId, int threadId) {
+
+    }
+
+    private final ServerSocketChannel server;
+    private final Function<Session, Consumer<Decoder.Frame>> factory;
+    private final Map<Session, Consumer<Decoder.Frame>> sessions = new ConcurrentHashMap<>();
+    private final List<Reactor> reactors = new ArrayList<>();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Listen on a port, connections are served once {@link #start()} is called
+     * @param port 0 for any free port, see {@link #getPort()}
+     * @param reactors number of threads reading the connections, e.g. the number of processors
+     * @param factory handler of a new session
+     */
+    public SessionServer(int port, int reactors, Function<Session, Consumer<Decoder.Frame>> factory) throws IOException {
+        this.factory = factory;
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        for (int i = 0; i < reactors; i++) {
+            this.reactors.add(new Reactor(i));
+        }
+        this.acceptor = new Thread(this::accept, "session-server-accept");
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * Listen on a port with one reactor per processor
+     */
+    public SessionServer(int port, Function<Session, Consumer<Decoder.Frame>> factory) throws IOException {
+        this(port, Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    public SessionServer start() {
+        for (Reactor reactor : reactors) {
+            reactor.thread.start();
+        }
+        acceptor.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** sessions seen so far */
+    public Set<Session> getSessions() {
+        return Collections.unmodifiableSet(sessions.keySet());
+    }
+
+    /** number of connections open */
+    public int connections() {
+        int count = 0;
+        for (Reactor reactor : reactors) {
+            count += reactor.connections;
+        }
+        return count;
+    }
+
+    /**
+     * Stop accepting and close all the connections
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (Reactor reactor : reactors) {
+            reactor.selector.wakeup();
+        }
+    }
+
+    private void accept() {
+        int next = 0;
+        try {
+            while (!closed) {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                Reactor reactor = reactors.get(next);
+                next = (next + 1) % reactors.size();
+                reactor.pending.add(channel);
+                reactor.selector.wakeup();
+            }
+        } catch (ClosedChannelException e) {
+            // closed
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Thread serving a share of the connections
+     */
+    private final class Reactor {
+        final Selector selector;
+        final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        final Decoder.Frame frame = new Decoder.Frame();
+        volatile int connections;
+
+        Reactor(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this::run, "session-server-" + index);
+            thread.setDaemon(true);
+        }
+
+        void run() {
+            try (selector) {
+                while (!closed) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                        connections++;
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Connection connection = (Connection) key.attachment();
+                        boolean open;
+                        try {
+                            open = connection.read(frame);
+                        } catch (IOException | RuntimeException e) {
+                            System.out.println(e);
+                            open = false;
+                        }
+                        if (!open) {
+                            key.cancel();
+                            connections--;
+                            try {
+                                connection.channel.close();
+                            } catch (IOException e) {
+                                System.out.println(e);
+                            }
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        }
+    }
+
+    /**
+     * Bytes received on a connection and the sessions it fed
+     */
+    private final class Connection implements Consumer<Decoder.Frame> {
+        final SocketChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(VisualTreeServer.BUFFER_SIZE);
+        final List<Consumer<Decoder.Frame>> fed = new ArrayList<>();
+        // messages before the first node, given to each session created by the connection
+        final List<byte[]> preamble = new ArrayList<>();
+        // for the session of the next node
+        byte[] restart;
+        final Decoder.Frame replay = new Decoder.Frame();
+        boolean nodeSeen;
+        boolean created; // by the last lookup of a session
+        // session of the last node, looked up again only when the ids change
+        int restartId;
+        int threadId;
+        Consumer<Decoder.Frame> last;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Decode what arrived
+         * @return false when the connection is over, after a DONE message or a disconnection
+         * @throws ProtocolException if a message size is invalid, nothing more can be read from the connection
+         */
+        boolean read(Decoder.Frame frame) throws IOException {
+            int read = channel.read(buffer);
+            buffer.flip();
+            boolean done = VisualTreeServer.decode(buffer, frame, this);
+            if (done || read < 0) {
+                return false;
+            }
+            buffer = buffer.remaining() == buffer.capacity() ? VisualTreeServer.grow(buffer) : buffer.compact();
+            return true;
+        }
+
+        @Override
+        public void accept(Decoder.Frame frame) {
+            if (frame.msgType() == Message.MsgType.RESTART.getNumber()) {
+                restart = frame.toBytes();
+                return;
+            }
+            if (frame.msgType() != Message.MsgType.NODE.getNumber()) {
+                if (!nodeSeen) {
+                    preamble.add(frame.toBytes());
+                }
+                for (Consumer<Decoder.Frame> session : fed) {
+                    session.accept(frame);
+                }
+                return;
+            }
+            nodeSeen = true;
+            int r = frame.nodeRestartId();
+            int t = frame.nodeThreadId();
+            if (last == null || r != restartId || t != threadId) {
+                restartId = r;
+                threadId = t;
+                created = false;
+                last = sessions.computeIfAbsent(new Session(r, t), this::create);
+                if (!fed.contains(last)) {
+                    fed.add(last);
+                }
+                if (created) {
+                    for (byte[] bytes : preamble) {
+                        last.accept(replay.wrap(ByteBuffer.wrap(bytes), 0, bytes.length));
+                    }
+                }
+            }
+            if (restart != null) {
+                last.accept(replay.wrap(ByteBuffer.wrap(restart), 0, restart.length));
+                restart = null;
+            }
+            last.accept(frame);
+        }
+
+        private Consumer<Decoder.Frame> create(Session session) {
+            created = true;
+            return factory.apply(session);
+        }
+    }
+}
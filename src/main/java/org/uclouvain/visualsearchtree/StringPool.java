@@ -0,0 +1,44 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned strings referenced by an int id, so that equal labels are stored only once
+ */
+public class StringPool {
+
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * @return id of the string, NONE for null
+     */
+    public int intern(String s) {
+        if (s == null) {
+            return NONE;
+        }
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.add(s);
+            ids.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return string with the given id, null for NONE
+     */
+    public String get(int id) {
+        return id == NONE ? null : strings.get(id);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+}
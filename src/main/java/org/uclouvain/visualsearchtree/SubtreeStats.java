@@ -0,0 +1,113 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counters of every subtree of a search tree received node by node: number of nodes, of solutions and of failures,
+ * and depth of the deepest node.
+ *
+ * Nodes are identified by the ids of the protocol and must arrive after their parent. Adding a node updates the
+ * counters of its ancestors, in O(depth), after which reading the counters of any subtree is constant time.
+ */
+public class SubtreeStats {
+
+    public static final int NONE = -1;
+
+    private final Map<Integer, Integer> indexOf = new HashMap<>();
+    private int[] parent = new int[16];
+    private int[] depth = new int[16];
+    private int[] size = new int[16];
+    private int[] solutions = new int[16];
+    private int[] failures = new int[16];
+    private int[] maxDepth = new int[16];
+    private int count;
+
+    /**
+     * Add a node below an already added one
+     * @param parentId id of the parent, {@link #NONE} for a root
+     * @throws IllegalArgumentException if the id was already added or the parent was not
+     */
+    public void add(int id, int parentId, Connector.NodeStatus status) {
+        Integer p = parentId == NONE ? Integer.valueOf(NONE) : indexOf.get(parentId);
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown parent " + parentId + " of node " + id);
+        }
+        if (indexOf.putIfAbsent(id, count) != null) {
+            throw new IllegalArgumentException("Node " + id + " already added");
+        }
+        if (count == parent.length) {
+            int capacity = count * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            size = Arrays.copyOf(size, capacity);
+            solutions = Arrays.copyOf(solutions, capacity);
+            failures = Arrays.copyOf(failures, capacity);
+            maxDepth = Arrays.copyOf(maxDepth, capacity);
+        }
+        int i = count++;
+        int d = p == NONE ? 0 : depth[p] + 1;
+        int solved = status == Connector.NodeStatus.SOLVED ? 1 : 0;
+        int failed = status == Connector.NodeStatus.FAILED ? 1 : 0;
+        parent[i] = p;
+        depth[i] = d;
+        size[i] = 1;
+        solutions[i] = solved;
+        failures[i] = failed;
+        maxDepth[i] = d;
+        for (int a = p; a != NONE; a = parent[a]) {
+            size[a]++;
+            solutions[a] += solved;
+            failures[a] += failed;
+            maxDepth[a] = Math.max(maxDepth[a], d);
+        }
+    }
+
+    public boolean contains(int id) {
+        return indexOf.containsKey(id);
+    }
+
+    /** number of nodes added */
+    public int count() {
+        return count;
+    }
+
+    /** number of nodes in the subtree of a node, itself included */
+    public int size(int id) {
+        return size[index(id)];
+    }
+
+    /** number of SOLVED nodes in the subtree of a node */
+    public int solutions(int id) {
+        return solutions[index(id)];
+    }
+
+    /** number of FAILED nodes in the subtree of a node */
+    public int failures(int id) {
+        return failures[index(id)];
+    }
+
+    /** depth of a node, 0 for a root */
+    public int depth(int id) {
+        return depth[index(id)];
+    }
+
+    /** depth of the deepest node in the subtree of a node, the height of the subtree being maxDepth - depth */
+    public int maxDepth(int id) {
+        return maxDepth[index(id)];
+    }
+
+    public void clear() {
+        indexOf.clear();
+        count = 0;
+    }
+
+    private int index(int id) {
+        Integer i = indexOf.get(id);
+        if (i == null) {
+            throw new IllegalArgumentException("Unknown node " + id);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,224 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.application.Platform;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Tiles of the drawing of a tree, rasterized on a background pool and kept in a least recently used cache.
+ *
+ * A tile is a square of {@link #TILE_SIZE} pixels at a zoom level, a power of two scale. Tiles are only asked for
+ * and read on the JavaFX thread, the pool rasterizes them with {@link Raster} and the finished ones are handed back
+ * in a single runLater, after which the owner is told to draw again.
+ * Tiles stay valid until the part of the layout under them changes.
+ * The index may be changed in place through {@link #modify}, which waits for the tiles being rasterized from it.
+ */
+final class TileCache {
+
+    static final int TILE_SIZE = 256;
+    static final int DEFAULT_CAPACITY = 256;
+
+    record Key(int zoom, int x, int y) {
+
+    }
+
+    private record Done(Key key, long stamp, WritableImage image) {
+
+    }
+
+    private final Map<Key, WritableImage> tiles;
+    // tiles being rasterized, with the stamp of their request, a result is only kept if its request still stands
+    private final Map<Key, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+    private final ConcurrentLinkedQueue<Done> done = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    // read by the rasterizers, written by a change of the index in place
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ThreadPoolExecutor pool;
+    private final Executor fxThread;
+    private final Runnable onTiles;
+    private volatile TreeRenderer renderer;
+    private volatile double levelOfDetail;
+
+    /**
+     * @param capacity maximum number of tiles kept
+     * @param onTiles called on the JavaFX thread when new tiles are available
+     */
+    TileCache(int capacity, Runnable onTiles) {
+        this(capacity, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), Platform::runLater, onTiles);
+    }
+
+    /**
+     * @param threads number of rasterizers
+     * @param fxThread runs the hand back of the finished tiles, on the thread asking for and reading them
+     */
+    TileCache(int capacity, int threads, Executor fxThread, Runnable onTiles) {
+        this.tiles = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, WritableImage> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.fxThread = fxThread;
+        this.onTiles = onTiles;
+        // last in first out, the tiles of the current viewport are asked for last
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingDeque<>() {
+            @Override
+            public boolean offer(Runnable runnable) {
+                return offerFirst(runnable);
+            }
+        }, runnable -> {
+            Thread thread = new Thread(runnable, "tile-rasterizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void setTree(LayoutIndex index, double levelOfDetail) {
+        this.renderer = new TreeRenderer(index);
+        this.levelOfDetail = levelOfDetail;
+        invalidate();
+    }
+
+    /**
+     * Scale of a zoom level
+     */
+    static double scale(int zoom) {
+        return Math.scalb(1.0, zoom);
+    }
+
+    /**
+     * Zoom level whose tiles are the closest to a scale
+     */
+    static int zoom(double scale) {
+        return (int) Math.round(Math.log(scale) / Math.log(2));
+    }
+
+    /**
+     * The tile if it is ready, otherwise it is asked for and null is returned
+     */
+    WritableImage get(Key key) {
+        WritableImage image = tiles.get(key);
+        if (image == null && renderer != null && !pending.containsKey(key)) {
+            long stamp = stamps.incrementAndGet();
+            pending.put(key, stamp);
+            TreeRenderer current = renderer;
+            double lod = levelOfDetail;
+            pool.execute(() -> rasterize(key, stamp, current, lod));
+        }
+        return image;
+    }
+
+    /**
+     * The tile if it is ready, without asking for it
+     */
+    WritableImage peek(Key key) {
+        return tiles.get(key);
+    }
+
+    private void rasterize(Key key, long stamp, TreeRenderer renderer, double levelOfDetail) {
+        if (!Long.valueOf(stamp).equals(pending.get(key))) {
+            return; // invalidated while waiting
+        }
+        boolean rasterized = false;
+        try {
+            double scale = scale(key.zoom());
+            double span = TILE_SIZE / scale;
+            Raster raster = new Raster(TILE_SIZE, TILE_SIZE, key.x() * span, key.y() * span, scale);
+            raster.fill(Raster.TRANSPARENT);
+            indexLock.readLock().lock();
+            try {
+                renderer.render(key.x() * span, key.y() * span, (key.x() + 1) * span, (key.y() + 1) * span,
+                        scale, scale, levelOfDetail, raster);
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            raster.finish();
+            WritableImage image = new WritableImage(TILE_SIZE, TILE_SIZE);
+            image.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbInstance(), raster.pixels, 0, TILE_SIZE);
+            done.add(new Done(key, stamp, image));
+            rasterized = true;
+        } finally {
+            if (!rasterized) {
+                pending.remove(key, stamp); // so that the tile is asked for again instead of staying blank
+            }
+        }
+        if (delivering.compareAndSet(false, true)) {
+            fxThread.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        delivering.set(false);
+        Done tile;
+        boolean any = false;
+        while ((tile = done.poll()) != null) {
+            if (pending.remove(tile.key(), tile.stamp())) {
+                tiles.put(tile.key(), tile.image());
+                any = true;
+            }
+        }
+        if (any) {
+            onTiles.run();
+        }
+    }
+
+    /**
+     * Change the index of the tree in place, once no tile is being rasterized from it.
+     * The tiles over the change must then be forgotten with {@link #invalidate(double, double, double, double)}.
+     */
+    <R> R modify(Supplier<R> change) {
+        indexLock.writeLock().lock();
+        try {
+            return change.get();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget every tile, e.g. when the whole layout changed
+     */
+    void invalidate() {
+        tiles.clear();
+        pending.clear();
+        pool.getQueue().clear();
+    }
+
+    /**
+     * Forget the tiles of every zoom level over a rectangle in drawing coordinates
+     */
+    void invalidate(double minX, double minY, double maxX, double maxY) {
+        tiles.keySet().removeIf(key -> intersects(key, minX, minY, maxX, maxY));
+        pending.keySet().removeIf(key -> intersects(key, minX, minY, maxX, maxY));
+    }
+
+    private static boolean intersects(Key key, double minX, double minY, double maxX, double maxY) {
+        double span = TILE_SIZE / scale(key.zoom());
+        return key.x() * span <= maxX && (key.x() + 1) * span >= minX
+                && key.y() * span <= maxY && (key.y() + 1) * span >= minY;
+    }
+
+    int size() {
+        return tiles.size();
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+        invalidate();
+    }
+}
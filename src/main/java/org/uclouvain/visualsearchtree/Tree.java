@@ -16,7 +16,7 @@ public class Tree {
         Node<String> root = new Node<>("root", List.of(left,right),null,null);
         //Node<String> root = new Node<>("root", List.of(),null,null);
         */
-        Node<String> root = randomTree(0);
+        Node<String> root = randomTree();
 
         PositionedNode<String> proot = root.design();
 
@@ -27,26 +27,50 @@ public class Tree {
 
     static Random rand = new Random(1);
 
+    /**
+     * Generate a random binary tree, nodes deeper than 3 being leaves with probability 1/2.
+     * The tree is built in pre-order with an explicit stack, drawing the random numbers
+     * in the same order as the recursive definition.
+     */
     public static Tree.Node<String> randomTree() {
-        return randomTree(0);
-    }
+        Tree.Node<String> root = null;
+        Deque<Pair<Tree.Node<String>, Integer>> stack = new ArrayDeque<>(); // (parent, depth) of the nodes to generate
+        stack.push(new Pair<>(null, 0));
+        while (!stack.isEmpty()) {
+            Pair<Tree.Node<String>, Integer> task = stack.pop();
+            int depth = task.right();
 
-    private static Tree.Node<String> randomTree(int depth) {
+            int nChildren = 2;
 
-        int nChildren = 2;
+            if ((rand.nextInt(100) < 50 && depth > 3)) {
+                nChildren = 0;
+            }
 
-        if ((rand.nextInt(100) < 50 && depth > 3)) {
-            nChildren = 0;
+            Tree.Node<String> node = new Tree.Node<String>("Node" + depth, new LinkedList<>(), new LinkedList<>(), null);
+            Tree.Node<String> parent = task.left();
+            if (parent == null) {
+                root = node;
+            } else {
+                parent.edgeLabels.add("x = " + parent.children.size());
+                parent.children.add(node);
+            }
+            for (int i = 0; i < nChildren; i++) {
+                stack.push(new Pair<>(node, depth + 1));
+            }
         }
+        return root;
+    }
 
-        List<Tree.Node<String>> children = new LinkedList<>();
-        List<String> labels = new LinkedList<>();
-
-        for (int i = 0; i < nChildren; i++) {
-            children.add(randomTree(depth + 1));
-            labels.add("x = " + i);
+    /**
+     * Generate a degenerate tree where every node has a single child
+     * @param depth number of nodes of the tree
+     */
+    public static Tree.Node<String> chainTree(int depth) {
+        Tree.Node<String> node = new Tree.Node<String>("Node" + (depth - 1), List.of(), List.of(), null);
+        for (int d = depth - 2; d >= 0; d--) {
+            node = new Tree.Node<String>("Node" + d, List.of(node), List.of("x = 0"), null);
         }
-        return new Tree.Node<String>("Node" + depth, children, labels, null);
+        return node;
     }
 
     static record Pair<L, R>(L left, R right) {
@@ -63,6 +87,9 @@ public class Tree {
         List<Node<T>> children;
         List<T> edgeLabels;
         NodeAction onClick;
+        Connector.NodeStatus status;
+        String info;
+        boolean collapsed;
 
         public Node(T label, List<Node<T>> children, List<T> edgeLabels, NodeAction onClick) {
             this.label = label;
@@ -71,40 +98,130 @@ public class Tree {
             this.onClick = onClick;
         }
 
+        public Node(T label, List<Node<T>> children, List<T> edgeLabels, NodeAction onClick, Connector.NodeStatus status) {
+            this(label, children, edgeLabels, onClick);
+            this.status = status;
+        }
+
+        public Connector.NodeStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(Connector.NodeStatus status) {
+            this.status = status;
+        }
+
+        /**
+         * @return free text about the node, e.g. the nodeInfo sent by the solver, shown when hovering it
+         */
+        public String getInfo() {
+            return info;
+        }
+
+        public void setInfo(String info) {
+            this.info = info;
+        }
+
+        public boolean isCollapsed() {
+            return collapsed;
+        }
+
+        /**
+         * Hide the subtree below this node. It is laid out and drawn as a single summary shape,
+         * its children are not visited by the layout until the node is expanded again.
+         */
+        public void collapse() {
+            collapsed = true;
+        }
+
+        public void expand() {
+            collapsed = false;
+        }
+
+        /**
+         * @return the children taken into account by the layout: none if the node is collapsed
+         */
+        List<Node<T>> visibleChildren() {
+            return collapsed ? List.of() : children;
+        }
+
         public PositionedNode<T> design() {
-            Pair<PositionedNode<T>, Extent> res = design_();
+            Pair<PositionedNode<T>, ArrayExtent> res = design_();
             return res.left();
         }
 
-        private Pair<PositionedNode<T>, Extent> design_() {
-            List<PositionedNode<T>> subtrees = new LinkedList<>();
-            List<Extent> subtreeExtents = new LinkedList<>();
-            for (Node<T> child : children) {
-                Pair<PositionedNode<T>, Extent> res = child.design_();
-                subtrees.add(res.left());
-                subtreeExtents.add(res.right());
+        public PositionedNode<T> design(TreeLayout layout) {
+            return layout.layout(this);
+        }
+
+        /**
+         * Lay out the subtree in post-order with an explicit stack, so that the depth of the tree
+         * is not limited by the size of the call stack
+         */
+        Pair<PositionedNode<T>, ArrayExtent> design_() {
+            Deque<DesignFrame<T>> stack = new ArrayDeque<>();
+            stack.push(new DesignFrame<>(this));
+            Pair<PositionedNode<T>, ArrayExtent> res = null;
+            while (!stack.isEmpty()) {
+                DesignFrame<T> frame = stack.peek();
+                if (res != null) {
+                    frame.add(res);
+                    res = null;
+                }
+                if (frame.toVisit.hasNext()) {
+                    stack.push(new DesignFrame<>(frame.toVisit.next()));
+                } else {
+                    stack.pop();
+                    res = place(frame.node, frame.subtrees, frame.subtreeExtents);
+                }
             }
-            List<Double> positions = Extent.fitList(subtreeExtents);
+            return res;
+        }
 
-            List<PositionedNode<T>> subtreesMoved = new LinkedList<>();
-            List<Extent> extentsMoved = new LinkedList<>();
+        /**
+         * Place the subtrees of a node next to each other and position the node on top of them
+         * @param subtrees laid out subtrees of the node, moved in place
+         * @param subtreeExtents extents of the subtrees
+         * @return the positioned node and its extent
+         */
+        static <T> Pair<PositionedNode<T>, ArrayExtent> place(Node<T> node, List<PositionedNode<T>> subtrees, ArrayExtent[] subtreeExtents) {
+            if (node.collapsed) {
+                return new Pair<>(PositionedNode.of(node, subtrees), ArrayExtent.summary());
+            }
+            double[] positions = ArrayExtent.fitList(subtreeExtents);
 
-            Iterator<PositionedNode<T>> childIte = subtrees.iterator();
-            Iterator<Extent> extentIte = subtreeExtents.iterator();
-            Iterator<Double> posIte = positions.iterator();
+            // the subtrees are freshly built, move them in place instead of copying them
+            for (int i = 0; i < positions.length; i++) {
+                subtrees.get(i).position += positions[i];
+            }
 
-            while (childIte.hasNext() && posIte.hasNext() && extentIte.hasNext()) {
+            ArrayExtent resExtent = ArrayExtent.join(subtreeExtents, positions);
 
-                double pos = posIte.next();
-                subtreesMoved.add(childIte.next().moveTree(pos));
-                extentsMoved.add(extentIte.next().move(pos));
-            }
+            PositionedNode<T> resTree = PositionedNode.of(node, subtrees);
+            return new Pair<>(resTree, resExtent);
+        }
+    }
 
-            Extent resExtent = Extent.merge(extentsMoved);
-            resExtent.addFirst(0, 0);
+    /**
+     * Node being laid out by {@link Node#design_()}, waiting for its subtrees
+     */
+    private static final class DesignFrame<T> {
+        final Node<T> node;
+        final Iterator<Node<T>> toVisit;
+        final List<PositionedNode<T>> subtrees;
+        final ArrayExtent[] subtreeExtents;
+
+        DesignFrame(Node<T> node) {
+            List<Node<T>> children = node.visibleChildren();
+            this.node = node;
+            this.toVisit = children.iterator();
+            this.subtrees = new ArrayList<>(children.size());
+            this.subtreeExtents = new ArrayExtent[children.size()];
+        }
 
-            PositionedNode<T> resTree = new PositionedNode<T>(label, subtreesMoved, edgeLabels, onClick, 0);
-            return new Pair(resTree, resExtent);
+        void add(Pair<PositionedNode<T>, ArrayExtent> subtree) {
+            subtreeExtents[subtrees.size()] = subtree.right();
+            subtrees.add(subtree.left());
         }
     }
 
@@ -115,6 +232,12 @@ public class Tree {
         public List<PositionedNode<T>> children;
         public List<T> edgeLabels;
         public NodeAction onClick;
+        public Connector.NodeStatus status;
+        public String info;
+        /**
+         * true if the subtree below the node is hidden, the node has no children and is drawn with a summary shape
+         */
+        public boolean collapsed;
 
         public PositionedNode(T label, List<PositionedNode<T>> children, List<T> edgeLabels, NodeAction onClick, double position) {
             this.label = label;
@@ -124,8 +247,23 @@ public class Tree {
             this.position = position;
         }
 
+        /**
+         * @return a node at position 0 with the data of the given node
+         */
+        static <T> PositionedNode<T> of(Node<T> node, List<PositionedNode<T>> children) {
+            PositionedNode<T> res = new PositionedNode<T>(node.label, children, node.edgeLabels, node.onClick, 0);
+            res.status = node.status;
+            res.info = node.info;
+            res.collapsed = node.collapsed;
+            return res;
+        }
+
         public PositionedNode moveTree(double x) {
-            return new PositionedNode(label, children, edgeLabels, onClick, position + x);
+            PositionedNode res = new PositionedNode(label, children, edgeLabels, onClick, position + x);
+            res.status = status;
+            res.info = info;
+            res.collapsed = collapsed;
+            return res;
         }
 
         @Override
@@ -263,6 +401,255 @@ public class Tree {
         }
 
     }
+
+    /**
+     * Same contract as {@link Extent} but backed by two flat primitive arrays.
+     * Levels are stored deepest first, so putting a parent on top of a single subtree
+     * is an append, and a move only records an offset instead of copying the contour.
+     * Arrays may be shared between extents, an extent only ever reads its first {@code size} slots.
+     */
+    static final class ArrayExtent {
+
+        /**
+         * half of the width of the shape drawn below a collapsed node
+         */
+        static final double SUMMARY_HALF_WIDTH = 0.5;
+
+        static final ArrayExtent EMPTY = new ArrayExtent(new double[0], new double[0], 0, 0);
+
+        final double[] lefts;
+        final double[] rights;
+        final int size;
+        final double offset;
+
+        ArrayExtent(double[] lefts, double[] rights, int size, double offset) {
+            this.lefts = lefts;
+            this.rights = rights;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        public ArrayExtent(double left, double right) {
+            this(new double[]{left}, new double[]{right}, 1, 0);
+        }
+
+        /**
+         * Extent of a collapsed node: the node itself and, one level below, the base of the summary shape
+         */
+        static ArrayExtent summary() {
+            return new ArrayExtent(new double[]{-SUMMARY_HALF_WIDTH, 0}, new double[]{SUMMARY_HALF_WIDTH, 0}, 2, 0);
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param level depth relative to the root of the subtree, 0 being the root
+         * @return leftmost position of the contour at this level
+         */
+        public double left(int level) {
+            return lefts[size - 1 - level] + offset;
+        }
+
+        /**
+         * @param level depth relative to the root of the subtree, 0 being the root
+         * @return rightmost position of the contour at this level
+         */
+        public double right(int level) {
+            return rights[size - 1 - level] + offset;
+        }
+
+        public ArrayExtent move(double x) {
+            if (offset == 0) {
+                return new ArrayExtent(lefts, rights, size, x);
+            }
+            // apply the pending move first so that successive moves are summed in the same order as Extent.move
+            double[] l = new double[size];
+            double[] r = new double[size];
+            for (int i = 0; i < size; i++) {
+                l[i] = lefts[i] + offset;
+                r[i] = rights[i] + offset;
+            }
+            return new ArrayExtent(l, r, size, x);
+        }
+
+        public ArrayExtent merge(ArrayExtent other) {
+            int n = Math.max(size, other.size);
+            double[] l = new double[n];
+            double[] r = new double[n];
+            for (int i = 0; i < n; i++) {
+                l[n - 1 - i] = i < size ? left(i) : other.left(i);
+                r[n - 1 - i] = i < other.size ? other.right(i) : right(i);
+            }
+            return new ArrayExtent(l, r, n, 0);
+        }
+
+        /**
+         * Merge all the extents in a single pass, equivalent to folding {@link #merge(ArrayExtent)} from the left
+         */
+        public static ArrayExtent merge(ArrayExtent[] extents) {
+            int n = maxSize(extents);
+            double[] l = new double[n];
+            double[] r = new double[n];
+            int filled = 0;
+            for (ArrayExtent e : extents) {
+                for (int i = 0; i < e.size; i++) {
+                    if (i >= filled) {
+                        l[n - 1 - i] = e.left(i);
+                    }
+                    r[n - 1 - i] = e.right(i);
+                }
+                filled = Math.max(filled, e.size);
+            }
+            return new ArrayExtent(l, r, n, 0);
+        }
+
+        public double fit(ArrayExtent other) {
+            int n = Math.min(size, other.size);
+            double minDist = 0.0;
+            for (int i = 0; i < n; i++) {
+                minDist = Math.max(minDist, right(i) - other.left(i) + 1);
+            }
+            return minDist;
+        }
+
+        public static double[] fitListLeft(ArrayExtent[] extents) {
+            double[] res = new double[extents.length];
+            // levels of the accumulated contour that a later extent can still be fitted against
+            int[] needed = new int[extents.length];
+            for (int k = extents.length - 2; k >= 0; k--) {
+                needed[k] = Math.max(needed[k + 1], extents[k + 1].size);
+            }
+            int depth = extents.length == 0 ? 0 : needed[0];
+            // accumulated contour, indexed by level
+            double[] accLeft = new double[depth];
+            double[] accRight = new double[depth];
+            int accSize = 0;
+            for (int k = 0; k < extents.length; k++) {
+                ArrayExtent e = extents[k];
+                int common = Math.min(accSize, e.size);
+                double x = 0.0;
+                for (int i = 0; i < common; i++) {
+                    x = Math.max(x, accRight[i] - e.left(i) + 1);
+                }
+                res[k] = x;
+                int kept = Math.min(e.size, needed[k]);
+                for (int i = 0; i < kept; i++) {
+                    if (i >= accSize) {
+                        accLeft[i] = e.left(i) + x;
+                    }
+                    accRight[i] = e.right(i) + x;
+                }
+                accSize = Math.max(accSize, kept);
+            }
+            return res;
+        }
+
+        public static double[] fitListRight(ArrayExtent[] extents) {
+            double[] res = new double[extents.length];
+            int[] needed = new int[extents.length];
+            for (int k = 1; k < extents.length; k++) {
+                needed[k] = Math.max(needed[k - 1], extents[k - 1].size);
+            }
+            int depth = extents.length == 0 ? 0 : needed[extents.length - 1];
+            double[] accLeft = new double[depth];
+            double[] accRight = new double[depth];
+            int accSize = 0;
+            for (int k = extents.length - 1; k >= 0; k--) {
+                ArrayExtent e = extents[k];
+                int common = Math.min(accSize, e.size);
+                double minDist = 0.0;
+                for (int i = 0; i < common; i++) {
+                    minDist = Math.max(minDist, e.right(i) - accLeft[i] + 1);
+                }
+                double x = -minDist;
+                res[k] = x;
+                int kept = Math.min(e.size, needed[k]);
+                for (int i = 0; i < kept; i++) {
+                    accLeft[i] = e.left(i) + x;
+                    if (i >= accSize) {
+                        accRight[i] = e.right(i) + x;
+                    }
+                }
+                accSize = Math.max(accSize, kept);
+            }
+            return res;
+        }
+
+        public static double[] fitList(ArrayExtent[] extents) {
+            if (extents.length == 1) {
+                return new double[]{0.0}; // (0.0 + -0.0) / 2
+            }
+            double[] left = fitListLeft(extents);
+            double[] right = fitListRight(extents);
+            double[] res = new double[extents.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = (left[i] + right[i]) / 2;
+            }
+            return res;
+        }
+
+        /**
+         * Extent of a node whose subtrees have the given extents and are placed at the given positions.
+         * Equivalent to merging the moved extents and adding the level (0, 0) on top.
+         */
+        public static ArrayExtent join(ArrayExtent[] extents, double[] positions) {
+            if (extents.length == 0) {
+                return new ArrayExtent(0, 0);
+            }
+            if (extents.length == 1 && positions[0] == 0 && extents[0].offset == 0) {
+                return extents[0].addRoot();
+            }
+            int n = maxSize(extents) + 1;
+            double[] l = new double[n];
+            double[] r = new double[n];
+            int filled = 0;
+            for (int k = 0; k < extents.length; k++) {
+                ArrayExtent e = extents[k];
+                double x = positions[k];
+                for (int i = 0; i < e.size; i++) {
+                    if (i >= filled) {
+                        l[n - 2 - i] = e.left(i) + x;
+                    }
+                    r[n - 2 - i] = e.right(i) + x;
+                }
+                filled = Math.max(filled, e.size);
+            }
+            l[n - 1] = 0;
+            r[n - 1] = 0;
+            return new ArrayExtent(l, r, n, 0);
+        }
+
+        /**
+         * Append the level (0, 0) above the root, reusing the arrays when there is room left.
+         * Every extent sharing the arrays agrees on that slot since it always holds the root level.
+         */
+        private ArrayExtent addRoot() {
+            double[] l = lefts;
+            double[] r = rights;
+            if (size == l.length) {
+                int capacity = Math.max(4, size * 2);
+                l = Arrays.copyOf(lefts, capacity);
+                r = Arrays.copyOf(rights, capacity);
+            }
+            l[size] = 0;
+            r[size] = 0;
+            return new ArrayExtent(l, r, size + 1, 0);
+        }
+
+        private static int maxSize(ArrayExtent[] extents) {
+            int n = 0;
+            for (ArrayExtent e : extents) {
+                n = Math.max(n, e.size);
+            }
+            return n;
+        }
+    }
 }
 
 
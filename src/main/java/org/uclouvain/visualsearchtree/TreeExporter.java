@@ -0,0 +1,268 @@
+package org.uclouvain.visualsearchtree;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Export of laid out trees to SVG and PNG without JavaFX, e.g. on servers without display.
+ * The drawing is the same as {@link TreeVisual#getGroup}.
+ *
+ * SVG is streamed while walking the tree, a few times, without keeping anything per node.
+ * PNG is rasterized in software by {@link Raster} then encoded with ImageIO.
+ */
+public final class TreeExporter {
+
+    /** largest side of the PNG images when not given */
+    public static final int DEFAULT_SIZE = 4096;
+    // path elements are split so that no attribute gets too long for the readers
+    private static final int SEGMENTS_PER_PATH = 10_000;
+
+    private TreeExporter() {
+    }
+
+    /**
+     * Called for each node with drawing coordinates, the ones of the parent being NaN for the root
+     */
+    private interface Visitor {
+        void visit(double x, double y, double parentX, double parentY, boolean collapsed) throws IOException;
+    }
+
+    /**
+     * Pre-order walk with an explicit stack of primitive arrays
+     */
+    private static void walk(Tree.PositionedNode<?> root, Visitor visitor) throws IOException {
+        Tree.PositionedNode<?>[] nodes = new Tree.PositionedNode<?>[64];
+        double[] centers = new double[64]; // absolute position of the parent
+        int[] depths = new int[64];
+        int top = 0;
+        nodes[top] = root;
+        centers[top] = Double.NaN;
+        depths[top++] = 0;
+        while (top > 0) {
+            top--;
+            Tree.PositionedNode<?> node = nodes[top];
+            double center = centers[top];
+            int depth = depths[top];
+            nodes[top] = null;
+            double absolute = (Double.isNaN(center) ? 0 : center) + node.position;
+            visitor.visit(X_OFFSET + absolute * X_SCALE, Y_OFFSET + depth * Y_SCALE,
+                    Double.isNaN(center) ? Double.NaN : X_OFFSET + center * X_SCALE, Y_OFFSET + (depth - 1) * Y_SCALE,
+                    node.collapsed);
+            int n = node.children.size();
+            if (top + n > nodes.length) {
+                int capacity = Math.max(nodes.length * 2, top + n);
+                nodes = Arrays.copyOf(nodes, capacity);
+                centers = Arrays.copyOf(centers, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                nodes[top] = node.children.get(i);
+                centers[top] = absolute;
+                depths[top++] = depth + 1;
+            }
+        }
+    }
+
+    /**
+     * Walk of a laid out store by increasing id, the parents having smaller ids than their children
+     */
+    private static void walk(TreeStore store, Visitor visitor) throws IOException {
+        double[] x = store.absolutePositions();
+        for (int id = 0; id < store.size(); id++) {
+            int parent = store.parent(id);
+            int depth = store.depth(id);
+            visitor.visit(X_OFFSET + x[id] * X_SCALE, Y_OFFSET + depth * Y_SCALE,
+                    parent == NodeStore.NONE ? Double.NaN : X_OFFSET + x[parent] * X_SCALE, Y_OFFSET + (depth - 1) * Y_SCALE,
+                    false);
+        }
+    }
+
+    /**
+     * Bounds of the drawing gathered by a first walk
+     */
+    private static final class Bounds implements Visitor {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        boolean collapsed;
+
+        @Override
+        public void visit(double x, double y, double parentX, double parentY, boolean collapsed) {
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            this.collapsed |= collapsed;
+        }
+
+        double[] box() {
+            double margin = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE + RADIUS;
+            return new double[]{minX - margin, Y_OFFSET - RADIUS, maxX + margin, maxY + (collapsed ? Y_SCALE : 0) + RADIUS};
+        }
+    }
+
+    private interface Source {
+        void walk(Visitor visitor) throws IOException;
+    }
+
+    public static void svg(Tree.PositionedNode<String> root, OutputStream out) throws IOException {
+        svg(visitor -> walk(root, visitor), out);
+    }
+
+    /**
+     * @param store tree store laid out by {@link TreeStore#layout()}
+     */
+    public static void svg(TreeStore store, OutputStream out) throws IOException {
+        svg(visitor -> walk(store, visitor), out);
+    }
+
+    private static void svg(Source source, OutputStream out) throws IOException {
+        Bounds bounds = new Bounds();
+        source.walk(bounds);
+        double[] box = bounds.box();
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        w.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" viewBox=\"");
+        number(w, box[0]).write(' ');
+        number(w, box[1]).write(' ');
+        number(w, box[2] - box[0]).write(' ');
+        number(w, box[3] - box[1]).write("\" width=\"");
+        number(w, box[2] - box[0]).write("\" height=\"");
+        number(w, box[3] - box[1]).write("\">\n");
+        w.write("<defs><circle id=\"n\" r=\"");
+        number(w, RADIUS).write("\" fill=\"red\"/></defs>\n");
+
+        // edges, then summaries, then nodes, as in TreeVisual.drawTree
+        int[] segments = {0};
+        source.walk((x, y, parentX, parentY, collapsed) -> {
+            if (Double.isNaN(parentX)) {
+                return;
+            }
+            if (segments[0] % SEGMENTS_PER_PATH == 0) {
+                if (segments[0] > 0) w.write("\"/>\n");
+                w.write("<path stroke=\"black\" stroke-width=\"1\" fill=\"none\" d=\"");
+            }
+            w.write('M');
+            number(w, parentX).write(' ');
+            number(w, parentY).write('L');
+            number(w, x).write(' ');
+            number(w, y).write(' ');
+            segments[0]++;
+        });
+        if (segments[0] > 0) w.write("\"/>\n");
+
+        if (bounds.collapsed) {
+            double halfWidth = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE;
+            w.write("<g fill=\"gray\">\n");
+            source.walk((x, y, parentX, parentY, collapsed) -> {
+                if (collapsed) {
+                    w.write("<path d=\"M");
+                    number(w, x).write(' ');
+                    number(w, y).write('l');
+                    number(w, -halfWidth).write(' ');
+                    number(w, Y_SCALE).write('h');
+                    number(w, 2 * halfWidth).write("z\"/>\n");
+                }
+            });
+            w.write("</g>\n");
+        }
+
+        w.write("<g>\n");
+        source.walk((x, y, parentX, parentY, collapsed) -> {
+            w.write("<use xlink:href=\"#n\" x=\"");
+            number(w, x).write("\" y=\"");
+            number(w, y).write("\"/>\n");
+        });
+        w.write("</g>\n</svg>\n");
+        w.flush();
+    }
+
+    /**
+     * Write a number with at most two decimals, without going through a string
+     */
+    private static Writer number(Writer w, double value) throws IOException {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            w.write('-');
+            hundredths = -hundredths;
+        }
+        long units = hundredths / 100;
+        int decimals = (int) (hundredths % 100);
+        w.write(Long.toString(units));
+        if (decimals != 0) {
+            w.write('.');
+            w.write('0' + decimals / 10);
+            if (decimals % 10 != 0) {
+                w.write('0' + decimals % 10);
+            }
+        }
+        return w;
+    }
+
+    public static void png(Tree.PositionedNode<String> root, OutputStream out) throws IOException {
+        ImageIO.write(image(root, DEFAULT_SIZE, 1), "png", out);
+    }
+
+    public static void png(TreeStore store, OutputStream out) throws IOException {
+        ImageIO.write(image(store, DEFAULT_SIZE), "png", out);
+    }
+
+    /**
+     * Rasterize a tree on a white background, scaled down to fit the size if needed
+     * @param levelOfDetail width in pixels under which nodes are drawn as an outline, see {@link TreePane#setLevelOfDetail}
+     */
+    public static BufferedImage image(Tree.PositionedNode<String> root, int maxSize, double levelOfDetail) {
+        LayoutIndex index = new LayoutIndex(root);
+        double[] box = TreeRenderer.bounds(index);
+        Raster raster = raster(box, maxSize);
+        double scale = Math.min(1, maxSize / Math.max(box[2] - box[0], box[3] - box[1]));
+        new TreeRenderer(index).render(box[0], box[1], box[2], box[3], scale, scale, levelOfDetail, raster);
+        raster.finish();
+        return image(raster);
+    }
+
+    /**
+     * Rasterize every node of a laid out store on a white background, scaled down to fit the size if needed
+     */
+    public static BufferedImage image(TreeStore store, int maxSize) {
+        Bounds bounds = new Bounds();
+        try {
+            walk(store, bounds);
+            double[] box = bounds.box();
+            Raster raster = raster(box, maxSize);
+            walk(store, (x, y, parentX, parentY, collapsed) -> {
+                if (!Double.isNaN(parentX)) {
+                    raster.edge(parentX, parentY, x, y);
+                }
+            });
+            // nodes are drawn right away, there is no summary in a store
+            walk(store, (x, y, parentX, parentY, collapsed) -> raster.dot(x, y));
+            return image(raster);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // the visitors do not write anything
+        }
+    }
+
+    private static Raster raster(double[] box, int maxSize) {
+        double scale = Math.min(1, maxSize / Math.max(box[2] - box[0], box[3] - box[1]));
+        int width = Math.max(1, (int) Math.ceil((box[2] - box[0]) * scale));
+        int height = Math.max(1, (int) Math.ceil((box[3] - box[1]) * scale));
+        Raster raster = new Raster(width, height, box[0], box[1], scale);
+        raster.fill(Raster.WHITE);
+        return raster;
+    }
+
+    private static BufferedImage image(Raster raster) {
+        BufferedImage image = new BufferedImage(raster.width, raster.height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, raster.width, raster.height, raster.pixels, 0, raster.width);
+        return image;
+    }
+}
@@ -0,0 +1,36 @@
+package org.uclouvain.visualsearchtree;
+
+/**
+ * Computes the positions of the nodes of a tree.
+ * The resulting positions are relative to the parent node, the root being at 0,
+ * which is what {@link TreeVisual} expects.
+ */
+public interface TreeLayout {
+
+    /**
+     * Kennedy's functional algorithm, see {@link Tree.Node#design()}
+     */
+    TreeLayout KENNEDY = new TreeLayout() {
+        @Override
+        public <T> Tree.PositionedNode<T> layout(Tree.Node<T> root) {
+            return root.design();
+        }
+    };
+
+    /**
+     * Walker's algorithm in the linear time variant of Buchheim, Jünger and Leipert, see {@link WalkerLayout}
+     */
+    TreeLayout WALKER = new WalkerLayout();
+
+    /**
+     * Kennedy's algorithm with large subtrees laid out in parallel on the common pool, see {@link ParallelLayout}
+     */
+    TreeLayout PARALLEL = new ParallelLayout();
+
+    /**
+     * Kennedy's algorithm laying out every distinct subtree shape once, see {@link MemoizedLayout}
+     */
+    TreeLayout MEMOIZED = new MemoizedLayout();
+
+    <T> Tree.PositionedNode<T> layout(Tree.Node<T> root);
+}
@@ -1,6 +1,550 @@
 package org.uclouvain.visualsearchtree;
 
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.Cursor;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Draws a positioned tree on a single canvas instead of creating one circle and one line per node.
+ *
+ * The canvas always has the size of the pane. The zoom and the translation are held by an invisible content region
+ * covering the drawing, which is what {@link AnimationFactory#zoomOnSCroll} and {@link AnimationFactory#moveOnDrag}
+ * act on: any change of its transforms redraws the canvas on the next pulse.
+ *
+ * Clicks and hovering are handled once for the whole pane: the node under the mouse is found with a binary search
+ * in the level under it, its {@link Tree.NodeAction} is run on click and its label and info are shown in a tooltip.
+ *
+ * Labels of the nodes and of the edges are drawn once zoomed in enough for them to be readable, from images kept in
+ * a {@link LabelAtlas}. A label overlapping the previous one or the next node of its level is left out.
+ */
 public class TreePane extends Pane {
+
+    private final Canvas canvas = new Canvas();
+    private final Region content = new Region();
+
+    // colors of the outlines, by status category of the leaves
+    private static final Color[] OUTLINE_COLORS = {Color.GREEN, Color.RED, Color.BLACK};
+    // distance in pixels from the center of a node under which it is under the mouse, if more than its radius
+    private static final double HIT_PIXELS = 4;
+    // font size of the labels in drawing units, within a range in pixels
+    private static final double LABEL_SIZE = 4;
+    private static final double MIN_LABEL_PIXELS = 8;
+    private static final double MAX_LABEL_PIXELS = 14;
+    // labels rasterized by a redraw at most, the others are drawn by the next ones
+    private static final int LABELS_PER_FRAME = 128;
+
+    private LayoutIndex index;
+    private TreeRenderer renderer;
+    private TileCache tiles; // null unless tiled
+    private double levelOfDetail = 3;
+    private int drawn; // nodes and outlines drawn by the last redraw
+    // coordinates gathered while walking the levels, drawn after the edges
+    private double[] circleBuffer = new double[256];
+    private int[] circleNodes = new int[256]; // depth and index of the nodes of the circles
+    private double[] summaryBuffer = new double[16];
+    private int circles;
+    private int summaries;
+    private final List<Outline> outlines = new ArrayList<>();
+    private Tooltip tooltip; // created on the first hover
+    private boolean showLabels = true;
+    private LabelAtlas atlas; // created on the first label
+    private boolean labelsPending;
+    private int labelBudget; // labels that can still be rasterized by the current redraw
+    private Tree.PositionedNode<?> hovered;
+
+    public TreePane() {
+        canvas.setManaged(false);
+        content.setManaged(false);
+        content.setPickOnBounds(true);
+        getChildren().addAll(canvas, content);
+        InvalidationListener redraw = o -> requestLayout();
+        content.translateXProperty().addListener(redraw);
+        content.translateYProperty().addListener(redraw);
+        content.scaleXProperty().addListener(redraw);
+        content.scaleYProperty().addListener(redraw);
+        content.layoutXProperty().addListener(redraw);
+        content.layoutYProperty().addListener(redraw);
+        addEventHandler(MouseEvent.MOUSE_CLICKED, this::click);
+        addEventHandler(MouseEvent.MOUSE_MOVED, this::hover);
+        addEventHandler(MouseEvent.MOUSE_EXITED, event -> hover(null, event));
+    }
+
+    public TreePane(Tree.PositionedNode<String> root) {
+        this();
+        setTree(root);
+    }
+
+    public static TreePane of(Tree.Node<String> node) {
+        return of(node, TreeLayout.KENNEDY);
+    }
+
+    public static TreePane of(Tree.Node<String> node, TreeLayout layout) {
+        return new TreePane(node.design(layout));
+    }
+
+    /**
+     * Node holding the zoom and the translation of the drawing, to be given to the functions of {@link AnimationFactory}
+     */
+    public Region getContent() {
+        return content;
+    }
+
+    public int size() {
+        return index == null ? 0 : index.size();
+    }
+
+    /**
+     * Number of nodes and outlines drawn by the last redraw, or of tiles when tiled
+     */
+    public int drawnCount() {
+        return drawn;
+    }
+
+    public LayoutIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Replace the drawn tree. It is indexed once here so that a redraw only looks at the visible part.
+     */
+    public void setTree(Tree.PositionedNode<String> root) {
+        index = new LayoutIndex(root);
+        renderer = new TreeRenderer(index);
+        if (tiles != null) {
+            tiles.setTree(index, levelOfDetail);
+        }
+        // same bounds as a group holding the circles and the summaries
+        double[] bounds = TreeRenderer.bounds(index);
+        content.resizeRelocate(bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1]);
+        requestLayout();
+    }
+
+    /**
+     * Follow the changes of a tree laid out by an {@link IncrementalLayout}: the index is updated in place and only
+     * the tiles over what changed are forgotten. The tree is indexed again if it changed otherwise, see {@link LayoutIndex#update}.
+     * @param changed nodes whose children were placed again since the last call, see {@link IncrementalLayout#changed()}
+     */
+    public void update(Tree.PositionedNode<String> root, Collection<? extends Tree.PositionedNode<?>> changed) {
+        if (index == null) {
+            setTree(root);
+            return;
+        }
+        double[] box = tiles == null ? index.update(root, changed) : tiles.modify(() -> index.update(root, changed));
+        if (box == null) {
+            return;
+        }
+        if (box.length == 0) {
+            setTree(root);
+            return;
+        }
+        if (tiles != null) {
+            // the summaries and the outlines reach the level below
+            double margin = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE + RADIUS;
+            tiles.invalidate(X_OFFSET + box[0] * X_SCALE - margin, Y_OFFSET + box[1] * Y_SCALE - RADIUS,
+                    X_OFFSET + box[2] * X_SCALE + margin, Y_OFFSET + (box[3] + 1) * Y_SCALE + RADIUS);
+        }
+        double[] bounds = TreeRenderer.bounds(index);
+        content.resizeRelocate(bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1]);
+        requestLayout();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        if (canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+            canvas.setWidth(getWidth());
+            canvas.setHeight(getHeight());
+        }
+        redraw();
+    }
+
+    /**
+     * Width in pixels under which the nodes of a level are drawn as one outline with everything below them,
+     * 0 to always draw every node
+     */
+    public double getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    public void setLevelOfDetail(double pixels) {
+        this.levelOfDetail = pixels;
+        if (tiles != null && index != null) {
+            tiles.setTree(index, levelOfDetail);
+        }
+        requestLayout();
+    }
+
+    /**
+     * Draw the labels of the nodes and of their edges when zoomed in enough for them to be readable
+     */
+    public boolean isShowLabels() {
+        return showLabels;
+    }
+
+    public void setShowLabels(boolean showLabels) {
+        this.showLabels = showLabels;
+        requestLayout();
+    }
+
+    /**
+     * Draw from tiles rasterized on a background pool instead of drawing the nodes on the JavaFX thread.
+     * Tiles missing at the current zoom are replaced by coarser ones until they are ready.
+     */
+    public boolean isTiled() {
+        return tiles != null;
+    }
+
+    public void setTiled(boolean tiled) {
+        if (tiled && tiles == null) {
+            tiles = new TileCache(TileCache.DEFAULT_CAPACITY, this::requestLayout);
+            if (index != null) {
+                tiles.setTree(index, levelOfDetail);
+            }
+        } else if (!tiled && tiles != null) {
+            tiles.shutdown();
+            tiles = null;
+        }
+        requestLayout();
+    }
+
+    /**
+     * Forget the tiles over a rectangle in the coordinates of the content, after a change of the layout under it
+     */
+    public void invalidate(Bounds region) {
+        if (tiles != null) {
+            tiles.invalidate(region.getMinX() + content.getLayoutX(), region.getMinY() + content.getLayoutY(),
+                    region.getMaxX() + content.getLayoutX(), region.getMaxY() + content.getLayoutY());
+            requestLayout();
+        }
+    }
+
+    /**
+     * Draw the part of the tree within the viewport, with the current transforms of the content region:
+     * one path for all the edges, one for all the summaries, one per status for the outlines,
+     * then the circles with a single fill color. What is drawn is chosen by a {@link TreeRenderer}.
+     */
+    public void redraw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setTransform(new Affine());
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawn = 0;
+        if (index == null) {
+            return;
+        }
+        Transform toPane = toPane();
+        Bounds visible;
+        try {
+            visible = toPane.inverseTransform(new BoundingBox(0, 0, canvas.getWidth(), canvas.getHeight()));
+        } catch (NonInvertibleTransformException e) {
+            return;
+        }
+        gc.setTransform(new Affine(toPane));
+        if (tiles != null) {
+            drawTiles(gc, visible, toPane.getMxx());
+            return;
+        }
+
+        circles = 0;
+        summaries = 0;
+        outlines.clear();
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1);
+        gc.beginPath();
+        drawn = renderer.render(visible.getMinX(), visible.getMinY(), visible.getMaxX(), visible.getMaxY(),
+                toPane.getMxx(), toPane.getMyy(), levelOfDetail, target);
+        gc.stroke();
+
+        double halfWidth = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE;
+        gc.setFill(Color.GRAY);
+        gc.beginPath();
+        for (int s = 0; s < summaries; s += 2) {
+            double x = summaryBuffer[s];
+            double y = summaryBuffer[s + 1];
+            gc.moveTo(x, y);
+            gc.lineTo(x - halfWidth, y + Y_SCALE);
+            gc.lineTo(x + halfWidth, y + Y_SCALE);
+            gc.closePath();
+        }
+        gc.fill();
+
+        // outlines are stroked one pixel wide so that the thinnest ones stay visible
+        gc.setLineWidth(1 / toPane.getMxx());
+        for (int category = 0; category < OUTLINE_COLORS.length; category++) {
+            gc.setFill(OUTLINE_COLORS[category]);
+            gc.setStroke(OUTLINE_COLORS[category]);
+            gc.beginPath();
+            for (Outline outline : outlines) {
+                if (outline.category() == category) {
+                    double[] points = outline.points();
+                    gc.moveTo(points[1], points[0]);
+                    for (int p = 1; p < outline.count(); p++) {
+                        gc.lineTo(points[3 * p + 1], points[3 * p]);
+                    }
+                    for (int p = outline.count() - 1; p >= 0; p--) {
+                        gc.lineTo(points[3 * p + 2], points[3 * p]);
+                    }
+                    gc.closePath();
+                }
+            }
+            gc.fill();
+            gc.stroke();
+        }
+
+        gc.setFill(Color.RED);
+        for (int c = 0; c < circles; c += 2) {
+            gc.fillOval(circleBuffer[c] - RADIUS, circleBuffer[c + 1] - RADIUS, 2 * RADIUS, 2 * RADIUS);
+        }
+
+        double labelPixels = Math.min(MAX_LABEL_PIXELS, LABEL_SIZE * toPane.getMyy());
+        if (showLabels && labelPixels >= MIN_LABEL_PIXELS) {
+            drawLabels(gc, (int) Math.round(labelPixels), toPane.getMxx(), toPane.getMyy());
+        }
+    }
+
+    /**
+     * Draw the labels of the nodes drawn as circles, at the right of the nodes and of the middle of their edges.
+     * The circles are given level by level from left to right, so a label only has to be compared to the previous one
+     * and to the next node of its level to know if it overlaps.
+     */
+    private void drawLabels(GraphicsContext gc, int size, double scaleX, double scaleY) {
+        if (atlas == null) {
+            atlas = new LabelAtlas(LabelAtlas.DEFAULT_PAGES);
+        }
+        atlas.newFrame();
+        labelBudget = LABELS_PER_FRAME;
+        boolean missing = false;
+        double gap = RADIUS + 1 / scaleX;
+        double nodeRight = Double.NEGATIVE_INFINITY; // right of the last label of the level
+        double edgeRight = Double.NEGATIVE_INFINITY;
+        int level = -1;
+        for (int c = 0; c < circles; c += 2) {
+            int depth = circleNodes[c];
+            int i = circleNodes[c + 1];
+            double x = circleBuffer[c];
+            double y = circleBuffer[c + 1];
+            if (depth != level) {
+                level = depth;
+                nodeRight = Double.NEGATIVE_INFINITY;
+                edgeRight = Double.NEGATIVE_INFINITY;
+            }
+            double next = i + 1 < index.size(depth) ? X_OFFSET + index.x(depth, i + 1) * X_SCALE - RADIUS : Double.POSITIVE_INFINITY;
+            Tree.PositionedNode<?> node = index.node(depth, i);
+            if (node.label != null && x + gap > nodeRight) {
+                LabelAtlas.Slot slot = slot(String.valueOf(node.label), size);
+                missing |= slot == null && labelBudget == 0;
+                if (slot != null && x + gap + slot.width() / scaleX < next) {
+                    nodeRight = drawLabel(gc, slot, x + gap, y, scaleX, scaleY);
+                }
+            }
+            if (depth == 0) {
+                continue;
+            }
+            int parent = index.parent(depth, i);
+            List<?> edgeLabels = index.node(depth - 1, parent).edgeLabels;
+            int k = i - index.childStart(depth - 1, parent);
+            double parentX = X_OFFSET + index.x(depth - 1, parent) * X_SCALE;
+            double middle = (parentX + x) / 2;
+            if (edgeLabels != null && k < edgeLabels.size() && edgeLabels.get(k) != null && middle + gap > edgeRight) {
+                LabelAtlas.Slot slot = slot(String.valueOf(edgeLabels.get(k)), size);
+                missing |= slot == null && labelBudget == 0;
+                double nextMiddle = i + 1 < index.childEnd(depth - 1, parent) ? (parentX + next + RADIUS) / 2 : Double.POSITIVE_INFINITY;
+                if (slot != null && middle + gap + slot.width() / scaleX < nextMiddle) {
+                    edgeRight = drawLabel(gc, slot, middle + gap, y - Y_SCALE / 2, scaleX, scaleY);
+                }
+            }
+        }
+        if (missing && !labelsPending) {
+            // the labels not rasterized yet are drawn by the next redraws
+            labelsPending = true;
+            Platform.runLater(() -> {
+                labelsPending = false;
+                requestLayout();
+            });
+        }
+    }
+
+    /**
+     * Slot of a label, rasterized only while the budget of the frame lasts
+     * @return null if it is not rasterized yet
+     */
+    private LabelAtlas.Slot slot(String text, int size) {
+        LabelAtlas.Slot slot = atlas.peek(text, size);
+        if (slot == null && labelBudget > 0) {
+            labelBudget--;
+            slot = atlas.get(text, size);
+        }
+        return slot;
+    }
+
+    /**
+     * Draw a label at its size in pixels, vertically centered on y
+     * @return right of the label
+     */
+    private static double drawLabel(GraphicsContext gc, LabelAtlas.Slot slot, double left, double y, double scaleX, double scaleY) {
+        double width = slot.width() / scaleX;
+        double height = slot.height() / scaleY;
+        gc.drawImage(slot.page(), slot.x(), slot.y(), slot.width(), slot.height(), left, y - height / 2, width, height);
+        return left + width;
+    }
+
+    /**
+     * From the coordinates of the drawing to the ones of the pane
+     */
+    private Transform toPane() {
+        // content local coordinates start at its layout position, the drawing uses the coordinates of the tree
+        return content.getLocalToParentTransform().createConcatenation(
+                Transform.translate(-content.getLayoutX(), -content.getLayoutY()));
+    }
+
+    /**
+     * Node drawn at a point of the pane, found with a binary search in the level closest to the point
+     * @return the node or null if there is none close enough
+     */
+    public Tree.PositionedNode<?> nodeAt(double x, double y) {
+        if (index == null) {
+            return null;
+        }
+        Transform toPane = toPane();
+        Point2D p;
+        try {
+            p = toPane.inverseTransform(x, y);
+        } catch (NonInvertibleTransformException e) {
+            return null;
+        }
+        // compared in pixels, so that the nodes stay easy to point at when zoomed out
+        return TreeRenderer.nodeAt(index, p.getX(), p.getY(), toPane.getMxx(), toPane.getMyy(),
+                Math.max(HIT_PIXELS, RADIUS * toPane.getMxx()));
+    }
+
+    private void click(MouseEvent event) {
+        if (!event.isStillSincePress()) {
+            return; // end of a drag
+        }
+        Tree.PositionedNode<?> node = nodeAt(event.getX(), event.getY());
+        if (node != null && node.onClick != null) {
+            node.onClick.nodeAction();
+            event.consume();
+        }
+    }
+
+    private void hover(MouseEvent event) {
+        hover(nodeAt(event.getX(), event.getY()), event);
+    }
+
+    /**
+     * Show the tooltip of a node, or hide it if null
+     */
+    private void hover(Tree.PositionedNode<?> node, MouseEvent event) {
+        if (node == hovered) {
+            return;
+        }
+        hovered = node;
+        if (node == null) {
+            if (tooltip != null) {
+                tooltip.hide();
+            }
+            setCursor(null);
+            return;
+        }
+        if (tooltip == null) {
+            tooltip = new Tooltip();
+        }
+        tooltip.setText(node.info == null ? String.valueOf(node.label) : node.label + "\n" + node.info);
+        tooltip.show(this, event.getScreenX() + HIT_PIXELS * 3, event.getScreenY() + HIT_PIXELS * 3);
+        setCursor(Cursor.CROSSHAIR);
+    }
+
+    /**
+     * Blit the tiles covering the viewport, the drawing transform being already set
+     */
+    private void drawTiles(GraphicsContext gc, Bounds visible, double scale) {
+        int zoom = TileCache.zoom(scale);
+        double span = TileCache.TILE_SIZE / TileCache.scale(zoom);
+        double[] bounds = TreeRenderer.bounds(index);
+        int fromX = (int) Math.floor(Math.max(visible.getMinX(), bounds[0]) / span);
+        int toX = (int) Math.floor(Math.min(visible.getMaxX(), bounds[2]) / span);
+        int fromY = (int) Math.floor(Math.max(visible.getMinY(), bounds[1]) / span);
+        int toY = (int) Math.floor(Math.min(visible.getMaxY(), bounds[3]) / span);
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                WritableImage image = tiles.get(new TileCache.Key(zoom, x, y));
+                if (image != null) {
+                    gc.drawImage(image, x * span, y * span, span, span);
+                    drawn++;
+                    continue;
+                }
+                // part of a coarser tile while waiting
+                for (int coarser = 1; coarser <= 4; coarser++) {
+                    int factor = 1 << coarser;
+                    image = tiles.peek(new TileCache.Key(zoom - coarser, Math.floorDiv(x, factor), Math.floorDiv(y, factor)));
+                    if (image != null) {
+                        double size = (double) TileCache.TILE_SIZE / factor;
+                        gc.drawImage(image, Math.floorMod(x, factor) * size, Math.floorMod(y, factor) * size, size, size,
+                                x * span, y * span, span, span);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private record Outline(double[] points, int count, int category) {
+
+    }
+
+    /**
+     * Gathers what the renderer gives: the edges go directly into the current path, the rest is drawn after them
+     */
+    private final TreeRenderer.Target target = new TreeRenderer.Target() {
+        @Override
+        public void edge(double x1, double y1, double x2, double y2) {
+            GraphicsContext gc = canvas.getGraphicsContext2D();
+            gc.moveTo(x1, y1);
+            gc.lineTo(x2, y2);
+        }
+
+        @Override
+        public void node(int depth, int i, double x, double y, boolean collapsed) {
+            if (circles == circleBuffer.length) {
+                circleBuffer = Arrays.copyOf(circleBuffer, circles * 2);
+                circleNodes = Arrays.copyOf(circleNodes, circles * 2);
+            }
+            circleNodes[circles] = depth;
+            circleNodes[circles + 1] = i;
+            circleBuffer[circles++] = x;
+            circleBuffer[circles++] = y;
+            if (collapsed) {
+                if (summaries == summaryBuffer.length) {
+                    summaryBuffer = Arrays.copyOf(summaryBuffer, summaries * 2);
+                }
+                summaryBuffer[summaries++] = x;
+                summaryBuffer[summaries++] = y;
+            }
+        }
+
+        @Override
+        public void outline(double[] points, int count, int category) {
+            outlines.add(new Outline(points, count, category));
+        }
+    };
 }
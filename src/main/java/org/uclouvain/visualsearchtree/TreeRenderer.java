@@ -0,0 +1,257 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Walks the visible part of an indexed tree, level by level, and hands what should be drawn to a target.
+ * Shared by the canvas of {@link TreePane} and by the software rasterizer of the tiles and of the exports.
+ *
+ * Each visible level is clipped with a binary search in the index. Nodes of a level closer than the level of
+ * detail are given as the outline of their subtrees, colored by their most frequent leaf status, and their
+ * descendants are skipped. A level then costs at most a few steps per pixel of the viewport width,
+ * so the cost depends on what is on screen and not on the zoom.
+ * Coordinates given to the target are drawing coordinates, as in {@link TreeVisual}.
+ */
+final class TreeRenderer {
+
+    interface Target {
+
+        void edge(double x1, double y1, double x2, double y2);
+
+        /**
+         * @param depth, i the node in the {@link LayoutIndex}
+         */
+        void node(int depth, int i, double x, double y, boolean collapsed);
+
+        /**
+         * Filled outline, given after all the edges and nodes
+         * @param points y, left and right of each level of the outline, from top to bottom
+         * @param count number of levels
+         * @param category status category of the leaves, see {@link LayoutIndex#SOLVED}
+         */
+        void outline(double[] points, int count, int category);
+    }
+
+    /**
+     * Nodes of a level closer than the level of detail, drawn as one filled outline. Their descendants are a range
+     * of each level below, so the outline is their exact extent, followed down level by level while drawing.
+     */
+    private static final class Run {
+        int a, b; // range of the current level
+        final int category;
+        double[] points = new double[12];
+        int count;
+
+        Run(int a, int b, int category) {
+            this.a = a;
+            this.b = b;
+            this.category = category;
+        }
+
+        /**
+         * Levels closer than a pixel are merged, so that an outline has at most a point per pixel row
+         */
+        void add(double y, double left, double right, double scaleY) {
+            if (count >= 2 && (y - points[3 * count - 3]) * scaleY < 1) {
+                points[3 * count - 3] = y;
+                points[3 * count - 2] = Math.min(left, points[3 * count - 2]);
+                points[3 * count - 1] = Math.max(right, points[3 * count - 1]);
+                return;
+            }
+            if (3 * count == points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[3 * count] = y;
+            points[3 * count + 1] = left;
+            points[3 * count + 2] = right;
+            count++;
+        }
+    }
+
+    private final LayoutIndex index;
+
+    TreeRenderer(LayoutIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Bounds of the whole drawing, in drawing coordinates: min x, min y, max x, max y
+     */
+    static double[] bounds(LayoutIndex index) {
+        double bottom = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE;
+        return new double[]{
+                X_OFFSET + index.minX() * X_SCALE - bottom - RADIUS,
+                Y_OFFSET - RADIUS,
+                X_OFFSET + index.maxX() * X_SCALE + bottom + RADIUS,
+                Y_OFFSET + index.depth() * Y_SCALE + RADIUS};
+    }
+
+    /**
+     * Node drawn at a point, found with a binary search in the level closest to the point
+     * @param x, y point in drawing coordinates
+     * @param scaleX, scaleY size of a drawing unit in pixels
+     * @param tolerance distance in pixels from the center of the node within which it is found
+     * @return the node or null if there is none close enough
+     */
+    static Tree.PositionedNode<?> nodeAt(LayoutIndex index, double x, double y, double scaleX, double scaleY, double tolerance) {
+        int depth = (int) Math.round((y - Y_OFFSET) / Y_SCALE);
+        if (depth < 0 || depth >= index.depth()) {
+            return null;
+        }
+        int i = index.nearest(depth, (x - X_OFFSET) / X_SCALE);
+        if (i < 0) {
+            return null;
+        }
+        double dx = (X_OFFSET + index.x(depth, i) * X_SCALE - x) * scaleX;
+        double dy = (Y_OFFSET + depth * Y_SCALE - y) * scaleY;
+        return dx * dx + dy * dy <= tolerance * tolerance ? index.node(depth, i) : null;
+    }
+
+    /**
+     * Give the part of the tree within a rectangle to the target
+     * @param minX, minY, maxX, maxY visible rectangle in drawing coordinates
+     * @param scaleX, scaleY size of a drawing unit in pixels
+     * @param levelOfDetail width in pixels under which nodes are aggregated, 0 to give every node
+     * @return number of nodes and outlines given
+     */
+    int render(double minX, double minY, double maxX, double maxY, double scaleX, double scaleY,
+               double levelOfDetail, Target target) {
+        // visible interval in layout units, widened by the radius of the circles
+        double left = (minX - X_OFFSET - RADIUS) / X_SCALE;
+        double right = (maxX - X_OFFSET + RADIUS) / X_SCALE;
+        double top = (minY - Y_OFFSET - RADIUS) / Y_SCALE;
+        double bottom = (maxY - Y_OFFSET + RADIUS) / Y_SCALE;
+        double gap = levelOfDetail / (scaleX * X_SCALE);
+        double step = 1 / (Y_SCALE * scaleY);
+        boolean denseLevels = Y_SCALE * scaleY < levelOfDetail;
+        // the level above the viewport may have summaries reaching into it, the one below edges
+        int first = Math.max(0, (int) Math.ceil(top) - 1);
+        int last = Math.min(index.depth() - 1, (int) Math.floor(bottom) + 1);
+
+        int drawn = 0;
+        List<Run> active = new ArrayList<>();
+        List<Run> created = new ArrayList<>();
+        List<Run> next = new ArrayList<>();
+        List<Run> finished = new ArrayList<>();
+        for (int d = first; d <= last; d++) {
+            double y = Y_OFFSET + d * Y_SCALE;
+            int start = d == 0 ? index.from(d, left - gap) : index.edgesFrom(d, left - gap);
+            int end = d == 0 ? index.to(d, right + gap) : index.edgesTo(d, right + gap);
+            int k = 0;
+            int i = start;
+            while (i < end) {
+                while (k < active.size() && active.get(k).b <= i) k++;
+                if (k < active.size() && active.get(k).a <= i) { // within the outline of a level above
+                    i = active.get(k).b;
+                    continue;
+                }
+                double x = index.x(d, i);
+                if (x < left - gap || x > right + gap) { // only its edge can be visible
+                    edge(target, d, i);
+                    i = nextEdge(d, i, left, right, step);
+                    continue;
+                }
+                int limit = k < active.size() ? Math.min(end, active.get(k).a) : end;
+                int j = Math.max(i + 1, Math.min(limit, index.to(d, x + gap)));
+                edge(target, d, i);
+                if (j == i + 1 && !denseLevels) {
+                    if (x >= left && x <= right) {
+                        target.node(d, i, X_OFFSET + x * X_SCALE, y, index.collapsed(d, i));
+                        drawn++;
+                    }
+                } else {
+                    if (j > i + 1) {
+                        edge(target, d, j - 1);
+                    }
+                    Run run = new Run(i, j, dominant(d, i, j));
+                    run.add(y, X_OFFSET + index.x(d, i) * X_SCALE, X_OFFSET + index.x(d, j - 1) * X_SCALE, scaleY);
+                    created.add(run);
+                    drawn++;
+                }
+                i = j;
+            }
+            // follow the outlines one level down, keeping them sorted by range
+            for (int p = 0, q = 0; p < active.size() || q < created.size(); ) {
+                Run run = q == created.size() || (p < active.size() && active.get(p).a < created.get(q).a)
+                        ? active.get(p++) : created.get(q++);
+                int a = index.childStart(d, run.a);
+                int b = index.childStart(d, run.b);
+                if (a == b || d == last) {
+                    finished.add(run);
+                } else {
+                    run.a = a;
+                    run.b = b;
+                    run.add(y + Y_SCALE, X_OFFSET + index.x(d + 1, a) * X_SCALE, X_OFFSET + index.x(d + 1, b - 1) * X_SCALE, scaleY);
+                    next.add(run);
+                }
+            }
+            List<Run> swap = active;
+            active = next;
+            next = swap;
+            next.clear();
+            created.clear();
+        }
+        finished.addAll(active);
+        for (Run run : finished) {
+            target.outline(run.points, run.count, run.category);
+        }
+        return drawn;
+    }
+
+    private void edge(Target target, int depth, int i) {
+        if (depth > 0) {
+            target.edge(X_OFFSET + index.x(depth - 1, index.parent(depth, i)) * X_SCALE, Y_OFFSET + (depth - 1) * Y_SCALE,
+                    X_OFFSET + index.x(depth, i) * X_SCALE, Y_OFFSET + depth * Y_SCALE);
+        }
+    }
+
+    /**
+     * Next node whose edge is worth drawing after the edge of a node outside the viewport.
+     * The edges from a parent to its children outside the viewport cross its border at points getting closer
+     * one to another, siblings whose edge would cross it less than a pixel away are skipped.
+     *
+     * @param step a pixel, as a fraction of the height of a level
+     */
+    private int nextEdge(int depth, int i, double left, double right, double step) {
+        int parent = index.parent(depth, i);
+        int last = index.childEnd(depth - 1, parent);
+        double px = index.x(depth - 1, parent);
+        double x = index.x(depth, i);
+        double target;
+        if (x > right) {
+            // fraction of the edge above the border, decreasing for the next siblings
+            double t = (right - px) / (x - px) - step;
+            if (t <= 0) {
+                return last;
+            }
+            target = px + (right - px) / t;
+        } else if (px <= left) { // the edge does not reach the viewport
+            return Math.max(i + 1, Math.min(last, index.from(depth, left)));
+        } else {
+            double t = (px - left) / (px - x) + step;
+            target = t >= 1 ? left : px - (px - left) / t;
+        }
+        return Math.max(i + 1, Math.min(last, index.from(depth, target)));
+    }
+
+    /**
+     * Most frequent status among the leaves below a range of nodes
+     */
+    private int dominant(int depth, int from, int to) {
+        int best = LayoutIndex.OTHER;
+        int max = index.leaves(depth, from, to, LayoutIndex.OTHER);
+        int failed = index.leaves(depth, from, to, LayoutIndex.FAILED);
+        if (failed > max) {
+            best = LayoutIndex.FAILED;
+            max = failed;
+        }
+        if (index.leaves(depth, from, to, LayoutIndex.SOLVED) > max) {
+            best = LayoutIndex.SOLVED;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,322 @@
+package org.uclouvain.visualsearchtree;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Search tree stored column by column in parallel primitive arrays indexed by node id,
+ * instead of one object with its own lists per node. Labels are kept in a {@link StringPool}.
+ * A node is always added after its parent, so the parent of a node has a smaller id.
+ * The tree can be laid out and drawn directly, or through {@link Tree.Node} views for the existing code.
+ * Positions are computed by {@link #layout()}.
+ */
+public class TreeStore implements NodeStore {
+
+    private int size;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] status;
+    private int[] depth;
+    private int[] label;
+    private int[] edgeLabel;
+    private double[] position; // relative to the parent, computed by layout()
+    private ViewReference[] views = new ViewReference[0]; // created by view(), indexed by id
+    private final ReferenceQueue<NodeView> collected = new ReferenceQueue<>();
+    private final BitSet collapsed = new BitSet(); // flags of the views, which outlive them
+
+    private final StringPool strings = new StringPool();
+
+    public TreeStore() {
+        this(1024);
+    }
+
+    public TreeStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        status = new int[capacity];
+        depth = new int[capacity];
+        label = new int[capacity];
+        edgeLabel = new int[capacity];
+        position = new double[capacity];
+    }
+
+    /**
+     * Copy a tree in the store, giving ids in pre-order
+     * @return the store, the root having id 0
+     */
+    public static TreeStore of(Tree.Node<String> root) {
+        TreeStore store = new TreeStore();
+        Deque<CopyTask> stack = new ArrayDeque<>();
+        stack.push(new CopyTask(root, NONE, null));
+        while (!stack.isEmpty()) {
+            CopyTask task = stack.pop();
+            Tree.Node<String> node = task.node();
+            int id = store.addNode(task.parent(), node.label, task.edge(), node.status);
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                String edge = node.edgeLabels != null && i < node.edgeLabels.size() ? node.edgeLabels.get(i) : null;
+                stack.push(new CopyTask(node.children.get(i), id, edge));
+            }
+        }
+        return store;
+    }
+
+    private record CopyTask(Tree.Node<String> node, int parent, String edge) {
+
+    }
+
+    /**
+     * Add a node as the last child of its parent
+     * @param parentId id of the parent, NONE for the root
+     * @param nodeLabel label of the node, can be null
+     * @param edge label of the edge from the parent, can be null
+     * @param nodeStatus status of the node, can be null
+     * @return id of the new node
+     */
+    public int addNode(int parentId, String nodeLabel, String edge, Connector.NodeStatus nodeStatus) {
+        ensureCapacity(size + 1);
+        int id = size++;
+        parent[id] = parentId;
+        firstChild[id] = NONE;
+        lastChild[id] = NONE;
+        nextSibling[id] = NONE;
+        status[id] = nodeStatus == null ? NONE : nodeStatus.getNumber();
+        label[id] = strings.intern(nodeLabel);
+        edgeLabel[id] = strings.intern(edge);
+        position[id] = 0;
+        if (parentId == NONE) {
+            depth[id] = 0;
+        } else {
+            depth[id] = depth[parentId] + 1;
+            if (lastChild[parentId] == NONE) {
+                firstChild[parentId] = id;
+            } else {
+                nextSibling[lastChild[parentId]] = id;
+            }
+            lastChild[parentId] = id;
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= parent.length) {
+            return;
+        }
+        int n = Math.max(capacity, parent.length * 2);
+        parent = Arrays.copyOf(parent, n);
+        firstChild = Arrays.copyOf(firstChild, n);
+        lastChild = Arrays.copyOf(lastChild, n);
+        nextSibling = Arrays.copyOf(nextSibling, n);
+        status = Arrays.copyOf(status, n);
+        depth = Arrays.copyOf(depth, n);
+        label = Arrays.copyOf(label, n);
+        edgeLabel = Arrays.copyOf(edgeLabel, n);
+        position = Arrays.copyOf(position, n);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int parent(int id) {
+        return parent[id];
+    }
+
+    @Override
+    public int firstChild(int id) {
+        return firstChild[id];
+    }
+
+    @Override
+    public int nextSibling(int id) {
+        return nextSibling[id];
+    }
+
+    @Override
+    public int depth(int id) {
+        return depth[id];
+    }
+
+    @Override
+    public int status(int id) {
+        return status[id];
+    }
+
+    public Connector.NodeStatus nodeStatus(int id) {
+        return status[id] == NONE ? null : Connector.NodeStatus.fromNumber(status[id]);
+    }
+
+    public String label(int id) {
+        return strings.get(label[id]);
+    }
+
+    public String edgeLabel(int id) {
+        return strings.get(edgeLabel[id]);
+    }
+
+    @Override
+    public double position(int id) {
+        return position[id];
+    }
+
+    @Override
+    public void setPosition(int id, double x) {
+        position[id] = x;
+    }
+
+    /**
+     * Lay out the whole tree, see {@link NodeStore#layout(int)}
+     */
+    public void layout() {
+        layout(0);
+    }
+
+    /**
+     * @return the absolute position of every node, indexed by id
+     */
+    public double[] absolutePositions() {
+        double[] x = new double[size];
+        for (int id = 0; id < size; id++) {
+            x[id] = parent[id] == NONE ? position[id] : x[parent[id]] + position[id];
+        }
+        return x;
+    }
+
+    /**
+     * View of the subtree rooted at the given node, usable by the code expecting a {@link Tree.Node}.
+     * The view of a node is created once and given again as long as it is reachable, a view keeping the views of the
+     * children it gave, so that layouts keeping data per node object ({@link ParallelLayout}, {@link IncrementalLayout})
+     * see the same node on every visit. The store only keeps weak references to the views and their collapse flags,
+     * a view no longer used is collected and created again with the same flag when asked for.
+     * The children lists of the views follow the nodes added to the store but cannot be modified:
+     * {@link IncrementalLayout} can lay out a view but not grow it, nodes must be added with
+     * {@link #addNode(int, String, String, Connector.NodeStatus)} and the tree laid out again.
+     * {@link Tree.Node#design()}, {@link TreeLayout#WALKER}, {@link ParallelLayout} and {@link MemoizedLayout}
+     * lay out views as any other tree.
+     */
+    public Tree.Node<String> view(int id) {
+        Objects.checkIndex(id, size);
+        ViewReference ref;
+        while ((ref = (ViewReference) collected.poll()) != null) {
+            if (views[ref.id] == ref) {
+                views[ref.id] = null;
+            }
+        }
+        if (views.length < size) {
+            views = Arrays.copyOf(views, parent.length);
+        }
+        NodeView view = views[id] == null ? null : views[id].get();
+        if (view == null) {
+            view = new NodeView(id, new ChildIds(id));
+            views[id] = new ViewReference(view, id, collected);
+        }
+        return view;
+    }
+
+    private static final class ViewReference extends WeakReference<NodeView> {
+        private final int id;
+
+        ViewReference(NodeView view, int id, ReferenceQueue<NodeView> queue) {
+            super(view, queue);
+            this.id = id;
+        }
+    }
+
+    /**
+     * Node whose children are read from the store when needed
+     */
+    private final class NodeView extends Tree.Node<String> {
+        private final int id;
+
+        NodeView(int id, ChildIds ids) {
+            super(label(id), new ChildrenView<>(ids, false), new ChildrenView<>(ids, true), null, nodeStatus(id));
+            this.id = id;
+            this.collapsed = TreeStore.this.collapsed.get(id);
+        }
+
+        @Override
+        public void collapse() {
+            super.collapse();
+            TreeStore.this.collapsed.set(id);
+        }
+
+        @Override
+        public void expand() {
+            super.expand();
+            TreeStore.this.collapsed.clear(id);
+        }
+    }
+
+    /**
+     * Ids of the children of a node, extended with the children added since the last access
+     */
+    private final class ChildIds {
+        private final int id;
+        private int[] ids = new int[0];
+        private int count;
+
+        ChildIds(int id) {
+            this.id = id;
+        }
+
+        int sync() {
+            int c = count == 0 ? firstChild[id] : nextSibling[ids[count - 1]];
+            for (; c != NONE; c = nextSibling[c]) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+                }
+                ids[count++] = c;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Children of a node, or labels of the edges to its children
+     */
+    @SuppressWarnings("unchecked")
+    private final class ChildrenView<E> extends AbstractList<E> implements RandomAccess {
+        private final ChildIds ids;
+        private final boolean edges;
+        private NodeView[] views = new NodeView[0]; // of the children given, kept as long as the list
+
+        ChildrenView(ChildIds ids, boolean edges) {
+            this.ids = ids;
+            this.edges = edges;
+        }
+
+        @Override
+        public int size() {
+            return ids.sync();
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, ids.sync());
+            int child = ids.ids[index];
+            if (edges) {
+                return (E) edgeLabel(child);
+            }
+            if (views.length <= index) {
+                views = Arrays.copyOf(views, ids.ids.length);
+            }
+            if (views[index] == null) {
+                views[index] = (NodeView) view(child);
+            }
+            return (E) views[index];
+        }
+    }
+}
@@ -5,28 +5,104 @@ import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 public class TreeVisual {
 
+    /** mapping from layout coordinates to drawing coordinates, shared with the canvas renderer */
+    static final double X_OFFSET = 400;
+    static final double X_SCALE = 5;
+    static final double Y_OFFSET = 50;
+    static final double Y_SCALE = 10;
+    static final double RADIUS = 2;
+
     public static Group getGroup(Tree.Node<String> node) {
+        return getGroup(node, TreeLayout.KENNEDY);
+    }
+
+    public static Group getGroup(Tree.Node<String> node, TreeLayout layout) {
         Group root = new Group();
-        Tree.PositionedNode<String> pnode = node.design();
-        drawNodeRecur(root, pnode, 0.0, 0);
+        Tree.PositionedNode<String> pnode = node.design(layout);
+        drawTree(root, pnode);
         return  root;
     }
 
+    /**
+     * Draw a positioned tree in pre-order with an explicit stack, so that deep trees do not overflow the call stack.
+     * All the edges are added before the circles, which keeps every circle on top without calling toFront.
+     * Collapsed nodes are drawn with a triangle below them.
+     */
+    public static Circle drawTree(Group g, Tree.PositionedNode<String> root) {
+        return drawNodeRecur(g, root, 0.0, 0);
+    }
+
+    /**
+     * Draw a positioned subtree whose parent is at the given absolute position and whose root is at the given depth,
+     * as {@link #drawTree}, without recursion despite its name
+     */
     public static Circle drawNodeRecur(Group g, Tree.PositionedNode<String> root, double center, int depth) {
-        // circles
-        double absolute = center + root.position;
-        Circle circle = createCircle(400 + absolute * 5, 50 + depth * 10, 2, Color.RED);
-        g.getChildren().add(circle);
-        for (Tree.PositionedNode<String> child : root.children) {
-            Circle childCircle = drawNodeRecur(g, child, absolute, depth + 1);
-            Line line = connect(circle, childCircle);
-            g.getChildren().add(line);
+        List<Line> lines = new ArrayList<>();
+        List<Polygon> summaries = new ArrayList<>();
+        List<Circle> circles = new ArrayList<>();
+        Deque<DrawTask> stack = new ArrayDeque<>();
+        stack.push(new DrawTask(root, center, depth, null));
+        while (!stack.isEmpty()) {
+            DrawTask task = stack.pop();
+            double absolute = task.center() + task.node().position;
+            Circle circle = createCircle(X_OFFSET + absolute * X_SCALE, Y_OFFSET + task.depth() * Y_SCALE, RADIUS, Color.RED);
+            circles.add(circle);
+            if (task.parent() != null) {
+                lines.add(connect(task.parent(), circle));
+            }
+            if (task.node().collapsed) {
+                summaries.add(createSummary(circle.getCenterX(), circle.getCenterY()));
+            }
+            List<Tree.PositionedNode<String>> children = task.node().children;
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new DrawTask(children.get(i), absolute, task.depth() + 1, circle));
+            }
         }
-        circle.toFront();
-        return circle;
+        g.getChildren().addAll(lines);
+        g.getChildren().addAll(summaries);
+        g.getChildren().addAll(circles);
+        return circles.get(0);
+    }
+
+    /**
+     * Lay out and draw a tree directly from its store, without building node objects
+     */
+    public static Group getGroup(TreeStore store) {
+        Group root = new Group();
+        store.layout();
+        drawStore(root, store);
+        return root;
+    }
+
+    /**
+     * Draw a laid out tree store. Nodes are visited by increasing id, so a parent is drawn before its children.
+     */
+    public static void drawStore(Group g, TreeStore store) {
+        double[] x = store.absolutePositions();
+        Circle[] circles = new Circle[store.size()];
+        List<Line> lines = new ArrayList<>(store.size());
+        for (int id = 0; id < store.size(); id++) {
+            circles[id] = createCircle(X_OFFSET + x[id] * X_SCALE, Y_OFFSET + store.depth(id) * Y_SCALE, RADIUS, Color.RED);
+            int parent = store.parent(id);
+            if (parent != TreeStore.NONE) {
+                lines.add(connect(circles[parent], circles[id]));
+            }
+        }
+        g.getChildren().addAll(lines);
+        g.getChildren().addAll(circles);
+    }
+
+    private record DrawTask(Tree.PositionedNode<String> node, double center, int depth, Circle parent) {
+
     }
 
     private static Circle createCircle(double x, double y, double r, Color color) {
@@ -35,6 +111,17 @@ public class TreeVisual {
         return circle;
     }
 
+    /**
+     * Triangle standing for the hidden subtree of a collapsed node, its base spans the summary extent one level below
+     */
+    private static Polygon createSummary(double x, double y) {
+        double halfWidth = Tree.ArrayExtent.SUMMARY_HALF_WIDTH * X_SCALE;
+        Polygon triangle = new Polygon(x, y, x - halfWidth, y + Y_SCALE, x + halfWidth, y + Y_SCALE);
+        triangle.setFill(Color.GRAY);
+        triangle.setCursor(Cursor.CROSSHAIR);
+        return triangle;
+    }
+
     private static Line connect(Circle c1, Circle c2) {
         Line line = new Line();
 
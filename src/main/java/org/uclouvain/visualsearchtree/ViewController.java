@@ -0,0 +1,218 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * Zoom and pan of a node driven by the input events.
+ *
+ * The events only move a target transform (translation and scale), a single AnimationTimer eases the node
+ * towards it once per frame. A burst of scroll events then costs one update of the node per frame,
+ * instead of one animation per event all writing the same properties.
+ * There is one controller per node, see {@link #of(Node)}.
+ */
+public class ViewController {
+
+    /** factor of the scale for each scroll step */
+    public static final double ZOOM_FACTOR = 1.5;
+    // time constant of the easing, in nanoseconds: 95% of the way is done after 3 of them
+    private static final double EASING = 50_000_000;
+    private static final double SCALE_PRECISION = 1e-4;
+    private static final double TRANSLATE_PRECISION = 0.05;
+
+    private final Node node;
+    private final AnimationTimer timer;
+    private double translateX, translateY, scaleX, scaleY; // current
+    private double targetTranslateX, targetTranslateY, targetScaleX, targetScaleY;
+    private double appliedTranslateX, appliedTranslateY; // last translation given to the node
+    private boolean running;
+    private long last;
+    private double mouseAnchorX; // used for the position when dragging
+    private double mouseAnchorY;
+
+    private ViewController(Node node) {
+        this.node = node;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse(now);
+            }
+        };
+        sync();
+        targetTranslateX = translateX;
+        targetTranslateY = translateY;
+        targetScaleX = scaleX;
+        targetScaleY = scaleY;
+    }
+
+    /**
+     * Controller of a node, created the first time
+     */
+    public static ViewController of(Node node) {
+        return (ViewController) node.getProperties().computeIfAbsent(ViewController.class, key -> new ViewController(node));
+    }
+
+    /**
+     * Zoom on the node when scrolling on the source, around the mouse
+     */
+    public ViewController zoomOnScroll(Node source) {
+        source.setOnScroll((ScrollEvent event) -> {
+            if (event.getDeltaY() != 0) {
+                event.consume();
+                zoom(event.getDeltaY() > 0 ? ZOOM_FACTOR : 1 / ZOOM_FACTOR, event.getSceneX(), event.getSceneY());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Move the node when dragging the source with the primary button
+     */
+    public ViewController moveOnDrag(Node source) {
+        source.setOnMousePressed((MouseEvent event) -> { // register the initial position for the dragging
+            mouseAnchorX = event.getSceneX();
+            mouseAnchorY = event.getSceneY();
+        });
+        source.setOnMouseDragged((MouseEvent event) -> {
+            if (event.isPrimaryButtonDown()) { // only drag using the primary button
+                Point2D from = toParent(mouseAnchorX, mouseAnchorY);
+                Point2D to = toParent(event.getSceneX(), event.getSceneY());
+                mouseAnchorX = event.getSceneX();
+                mouseAnchorY = event.getSceneY();
+                moveBy(to.getX() - from.getX(), to.getY() - from.getY());
+                event.consume();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Multiply the target scale by a factor, keeping the point under a scene position in place
+     */
+    public void zoom(double factor, double sceneX, double sceneY) {
+        sync();
+        Point2D p = toParent(sceneX, sceneY);
+        // the node is scaled around the center of its layout bounds
+        Bounds bounds = node.getLayoutBounds();
+        double pivotX = node.getLayoutX() + (bounds.getMinX() + bounds.getMaxX()) / 2 + targetTranslateX;
+        double pivotY = node.getLayoutY() + (bounds.getMinY() + bounds.getMaxY()) / 2 + targetTranslateY;
+        setTarget(targetTranslateX + (1 - factor) * (p.getX() - pivotX),
+                targetTranslateY + (1 - factor) * (p.getY() - pivotY),
+                targetScaleX * factor, targetScaleY * factor);
+    }
+
+    /**
+     * Move the node right away, as well as the target, so that a zoom in progress goes on from there
+     */
+    public void moveBy(double dx, double dy) {
+        sync();
+        translateX += dx;
+        translateY += dy;
+        targetTranslateX += dx;
+        targetTranslateY += dy;
+        start();
+    }
+
+    /**
+     * Set the transform towards which the node is eased
+     */
+    public void setTarget(double translateX, double translateY, double scaleX, double scaleY) {
+        targetTranslateX = translateX;
+        targetTranslateY = translateY;
+        targetScaleX = scaleX;
+        targetScaleY = scaleY;
+        start();
+    }
+
+    public double getTargetTranslateX() {
+        return targetTranslateX;
+    }
+
+    public double getTargetTranslateY() {
+        return targetTranslateY;
+    }
+
+    public double getTargetScaleX() {
+        return targetScaleX;
+    }
+
+    public double getTargetScaleY() {
+        return targetScaleY;
+    }
+
+    /**
+     * @return true while the node is moving towards the target
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void start() {
+        if (!running) {
+            running = true;
+            last = System.nanoTime(); // same clock as the pulses
+            timer.start();
+        }
+    }
+
+    /**
+     * Take the transform of the node as current one, it is changed by other code when the controller is idle
+     * and may have been changed since the last frame, e.g. by a drag of {@link AnimationFactory#moveOnDrag}
+     */
+    private void sync() {
+        if (!running) {
+            translateX = node.getTranslateX();
+            translateY = node.getTranslateY();
+            scaleX = node.getScaleX();
+            scaleY = node.getScaleY();
+        } else {
+            // moves made by others since the last frame are kept
+            double dx = node.getTranslateX() - appliedTranslateX;
+            double dy = node.getTranslateY() - appliedTranslateY;
+            translateX += dx;
+            translateY += dy;
+            targetTranslateX += dx;
+            targetTranslateY += dy;
+        }
+        appliedTranslateX = node.getTranslateX();
+        appliedTranslateY = node.getTranslateY();
+    }
+
+    /**
+     * Move the node part of the way to the target, depending on the time since the last frame
+     */
+    void pulse(long now) {
+        sync();
+        double alpha = 1 - Math.exp(-Math.max(0, now - last) / EASING);
+        last = now;
+        // the scale is eased geometrically, so that zooming in and out take as long
+        scaleX *= Math.pow(targetScaleX / scaleX, alpha);
+        scaleY *= Math.pow(targetScaleY / scaleY, alpha);
+        translateX += (targetTranslateX - translateX) * alpha;
+        translateY += (targetTranslateY - translateY) * alpha;
+        if (Math.abs(scaleX / targetScaleX - 1) < SCALE_PRECISION && Math.abs(scaleY / targetScaleY - 1) < SCALE_PRECISION
+                && Math.abs(translateX - targetTranslateX) < TRANSLATE_PRECISION
+                && Math.abs(translateY - targetTranslateY) < TRANSLATE_PRECISION) {
+            translateX = targetTranslateX;
+            translateY = targetTranslateY;
+            scaleX = targetScaleX;
+            scaleY = targetScaleY;
+            running = false;
+            timer.stop();
+        }
+        node.setTranslateX(translateX);
+        node.setTranslateY(translateY);
+        appliedTranslateX = translateX;
+        appliedTranslateY = translateY;
+        node.setScaleX(scaleX);
+        node.setScaleY(scaleY);
+    }
+
+    private Point2D toParent(double sceneX, double sceneY) {
+        return node.getParent() == null ? new Point2D(sceneX, sceneY) : node.getParent().sceneToLocal(sceneX, sceneY);
+    }
+}
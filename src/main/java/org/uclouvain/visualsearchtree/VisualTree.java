@@ -9,6 +9,7 @@ import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
+import java.io.IOException;
 import java.util.Stack;
 
 
@@ -36,6 +37,49 @@ public class VisualTree extends Application {
         primaryStage.show();
     }
 
+    private void startRandomCanvas(Stage primaryStage) {
+        primaryStage.setTitle("Connected Shapes");
+
+        Tree.Node<String> node = Tree.randomTree();
+
+        TreePane pane = TreePane.of(node);
+        AnimationFactory.zoomOnSCroll(pane, pane.getContent());
+        AnimationFactory.moveOnDrag(pane, pane.getContent());
+
+        Scene scene = new Scene(pane, 500, 600);
+        primaryStage.setScene(scene);
+
+        primaryStage.show();
+    }
+
+    /**
+     * Show the tree sent by a solver connected on the port, as it grows
+     */
+    private void startLive(Stage primaryStage, int port) {
+        primaryStage.setTitle("Live search tree");
+
+        TreePane pane = new TreePane();
+        AnimationFactory.zoomOnSCroll(pane, pane.getContent());
+        AnimationFactory.moveOnDrag(pane, pane.getContent());
+        LiveTree live = new LiveTree(pane);
+        live.start();
+
+        Thread server = new Thread(() -> {
+            try {
+                VisualTreeServer.serve(port, live);
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        }, "visual-tree-server");
+        server.setDaemon(true);
+        server.start();
+
+        Scene scene = new Scene(pane, 800, 800);
+        primaryStage.setScene(scene);
+
+        primaryStage.show();
+    }
+
     private void startNQueens(Stage primaryStage) {
         primaryStage.setTitle("N-Queens Tree Visualization");
 
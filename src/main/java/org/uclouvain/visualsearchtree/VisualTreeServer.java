@@ -5,8 +5,15 @@ package org.uclouvain.visualsearchtree;
 
 import java.net.*;
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class VisualTreeServer {
 
@@ -17,14 +24,27 @@ public class VisualTreeServer {
 
     // are there enough bytes to read something
     private boolean canReadMore = true;
-    private List<Byte> buffer = new ArrayList<>();
+    // bytes are taken from the front, which is constant time in a linked list
+    private List<Byte> buffer = new LinkedList<>();
     private boolean sizeRead = false;
     private int bytesRead = 0;
     private int msgSize = 0;
-    private boolean DEBUG = true;
+    private final Consumer<Decoder.DecodedMessage> handler;
 
-    // constructor with port
+    // constructor with port, printing the messages
     public VisualTreeServer(int port) {
+        this(port, msgBody -> {
+            System.out.println(msgBody.toString());
+            System.out.println("-----");
+        });
+    }
+
+    /**
+     * Accept a client on the port and give every decoded message to the handler, on the calling thread
+     * @param handler called for each message, e.g. a {@link LiveTree}
+     */
+    public VisualTreeServer(int port, Consumer<Decoder.DecodedMessage> handler) {
+        this.handler = handler;
         // starts server and waits for a connection
         try {
             server = new ServerSocket(port);
@@ -35,13 +55,15 @@ public class VisualTreeServer {
 
             in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 
-            while (!server.isClosed() || canReadMore) {
-                if (socket.getInputStream().available() > 0)
+            byte[] chunk = new byte[8192];
+            while (!server.isClosed()) {
+                // read what has arrived when the buffer does not hold a whole field, instead of waiting for the end of the stream
+                if (!canReadMore) {
+                    int n = in.read(chunk);
+                    if (n < 0)
+                        break;
+                    Decoder.addToBuffer(buffer, Arrays.copyOf(chunk, n));
                     canReadMore = true;
-
-                Decoder.addToBuffer(buffer, socket.getInputStream().readAllBytes());
-                if(DEBUG) {
-                    //System.out.println(buffer);
                 }
 
                 // read the size of the next field if haven't already
@@ -66,12 +88,7 @@ public class VisualTreeServer {
                     }
 
                     Decoder.DecodedMessage msgBody = Decoder.deserialize(buffer, msgSize);
-                    if(DEBUG) {
-                        System.out.println(msgBody.toString());
-                        System.out.println("-----");
-                    }
-                    // TODO: WRITE HANDLE MSG FUNCTION TO EMIT INCOMING DATA
-                    //handleMessage(msg);
+                    handler.accept(msgBody);
 
                     if(msgBody.msgType == Message.MsgType.DONE.getNumber()) {
                         server.close();
@@ -91,6 +108,105 @@ public class VisualTreeServer {
         }
     }
 
+    /** initial size of the buffer of the channel mode, it grows to hold the largest message if needed */
+    public static final int BUFFER_SIZE = 1 << 16;
+    /** largest message accepted in the channel mode, a larger size prefix means that the stream is corrupted */
+    public static final int MAX_MESSAGE_SIZE = 1 << 24;
+
+    /**
+     * Accept a client on the port and give every decoded message to the handler, on the calling thread,
+     * with non-blocking channels instead of streams.
+     * What arrives is read into a single direct buffer, in which each message is decoded as soon as it is complete,
+     * so that memory does not grow with the number of messages.
+     * Returns after the DONE message or when the client disconnects.
+     * @throws ProtocolException if a message has a size of 0, a negative one or one above {@link #MAX_MESSAGE_SIZE},
+     *                           the connection is then closed
+     */
+    public static void serve(int port, Consumer<Decoder.DecodedMessage> handler) throws IOException {
+        serveFrames(port, frame -> handler.accept(frame.toMessage()));
+    }
+
+    /**
+     * Same as {@link #serve(int, Consumer)}, giving the handler a view of each message in the buffer instead of a copy,
+     * so that nothing is allocated for a message unless the handler asks for its strings.
+     * The same frame is given for every message and is only valid during the call.
+     */
+    public static void serveFrames(int port, Consumer<Decoder.Frame> handler) throws IOException {
+        try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Server started");
+            System.out.println("Waiting for a client ...");
+            SocketChannel client = null;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            Decoder.Frame frame = new Decoder.Frame();
+            try {
+                while (true) {
+                    selector.select();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        if (key.isAcceptable() && client == null) {
+                            client = server.accept();
+                            client.configureBlocking(false);
+                            client.register(selector, SelectionKey.OP_READ);
+                            key.cancel(); // a single client
+                            System.out.println("Client accepted");
+                        } else if (key.isReadable()) {
+                            int read = client.read(buffer);
+                            buffer.flip();
+                            boolean done = decode(buffer, frame, handler);
+                            if (done || read < 0) {
+                                System.out.println("Closing connection");
+                                return;
+                            }
+                            buffer = buffer.remaining() == buffer.capacity() ? grow(buffer) : buffer.compact();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } finally {
+                if (client != null) {
+                    client.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Give the complete messages of a buffer to the handler, each being its size on 4 bytes little endian then its bytes.
+     * The buffer is left at the start of the first incomplete message.
+     * @param frame view moved from message to message
+     * @return true if a DONE message was decoded
+     * @throws ProtocolException if a size is not between 1 and {@link #MAX_MESSAGE_SIZE}, nothing can be decoded after it
+     */
+    static boolean decode(ByteBuffer buffer, Decoder.Frame frame, Consumer<Decoder.Frame> handler) throws ProtocolException {
+        while (buffer.remaining() >= 4) {
+            int size = Integer.reverseBytes(buffer.getInt(buffer.position())); // the buffers are big endian
+            if (size <= 0 || size > MAX_MESSAGE_SIZE) {
+                throw new ProtocolException("invalid message size " + size);
+            }
+            if (buffer.remaining() < 4 + size) {
+                break;
+            }
+            handler.accept(frame.wrap(buffer, buffer.position() + 4, size));
+            boolean done = frame.msgType() == Message.MsgType.DONE.getNumber();
+            buffer.position(buffer.position() + 4 + size);
+            if (done) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Twice larger buffer, ready to be written to, for a message larger than the buffer
+     */
+    static ByteBuffer grow(ByteBuffer full) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(full.capacity() * 2);
+        buffer.put(full);
+        return buffer;
+    }
+
     public static void main(String args[]) {
         VisualTreeServer server = new VisualTreeServer(6666);
     }
@@ -0,0 +1,249 @@
+package org.uclouvain.visualsearchtree;
+
+// https://doi.org/10.1007/3-540-36151-0_32 (Improving Walker's Algorithm to Run in Linear Time)
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tree layout in O(n) using threads and modifiers instead of whole contours.
+ * Both walks use an explicit stack so that deep trees do not overflow the call stack.
+ * Sibling nodes are at least at distance 1 from each other, as in {@link Tree.Node#design()}.
+ * A collapsed node is laid out with a single placeholder child standing for its summary shape, as wide as the base
+ * of the shape, so that the nodes next to it are spaced as by the extent of {@link Tree.ArrayExtent#summary()}.
+ */
+public class WalkerLayout implements TreeLayout {
+
+    private final double distance;
+
+    public WalkerLayout() {
+        this(1.0);
+    }
+
+    /**
+     * @param distance minimum distance between two nodes on the same level
+     */
+    public WalkerLayout(double distance) {
+        this.distance = distance;
+    }
+
+    @Override
+    public <T> Tree.PositionedNode<T> layout(Tree.Node<T> root) {
+        WNode<T> wroot = firstWalk(root);
+        return secondWalk(wroot);
+    }
+
+    private static final class WNode<T> {
+        final Tree.Node<T> node;
+        final WNode<T> parent;
+        final WNode<T>[] children;
+        final int number; // index among the siblings
+        final boolean summary; // placeholder below a collapsed node
+        Iterator<Tree.Node<T>> toVisit;
+        int nVisited;
+
+        double prelim;
+        double mod;
+        double shift;
+        double change;
+        WNode<T> thread;
+        WNode<T> ancestor;
+
+        double x;
+        Tree.PositionedNode<T> positioned;
+
+        WNode(Tree.Node<T> node, WNode<T> parent, int number, boolean summary) {
+            this.node = node;
+            this.parent = parent;
+            this.number = number;
+            this.summary = summary;
+            this.children = newArray(node.collapsed ? 1 : node.children.size());
+            this.toVisit = node.visibleChildren().iterator();
+            this.ancestor = this;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> WNode<T>[] newArray(int length) {
+            return (WNode<T>[]) new WNode<?>[length];
+        }
+
+        boolean isLeaf() {
+            return children.length == 0;
+        }
+
+        WNode<T> leftSibling() {
+            return number == 0 ? null : parent.children[number - 1];
+        }
+
+        WNode<T> leftmostSibling() {
+            return parent.children[0];
+        }
+
+        WNode<T> nextLeft() {
+            return isLeaf() ? thread : children[0];
+        }
+
+        WNode<T> nextRight() {
+            return isLeaf() ? thread : children[children.length - 1];
+        }
+    }
+
+    /**
+     * Build the working tree and compute the preliminary positions in post-order
+     */
+    private <T> WNode<T> firstWalk(Tree.Node<T> root) {
+        WNode<T> wroot = new WNode<>(root, null, 0, false);
+        ArrayDeque<WNode<T>> stack = new ArrayDeque<>();
+        stack.push(wroot);
+        while (!stack.isEmpty()) {
+            WNode<T> v = stack.peek();
+            if (v.toVisit.hasNext()) {
+                WNode<T> w = new WNode<>(v.toVisit.next(), v, v.nVisited, false);
+                v.children[v.nVisited++] = w;
+                stack.push(w);
+            } else if (v.nVisited < v.children.length) {
+                WNode<T> w = new WNode<>(new Tree.Node<>(null, List.of(), List.of(), null), v, v.nVisited, true);
+                v.children[v.nVisited++] = w;
+                stack.push(w);
+            } else {
+                stack.pop();
+                v.toVisit = null;
+                placeChildren(v);
+            }
+        }
+        return wroot;
+    }
+
+    /**
+     * Part of the first walk of v that happens once all its subtrees have been walked.
+     * The placement of a node next to its left sibling is done here rather than when visiting the node,
+     * so that it sees the sibling once apportioned, as in the recursive formulation.
+     * Until then, the prelim of a node is the midpoint of its children.
+     */
+    private <T> void placeChildren(WNode<T> v) {
+        if (v.isLeaf()) {
+            v.prelim = 0;
+            return;
+        }
+        WNode<T> defaultAncestor = v.children[0];
+        for (WNode<T> w : v.children) {
+            WNode<T> left = w.leftSibling();
+            if (left != null) {
+                double midpoint = w.prelim;
+                w.prelim = left.prelim + distance;
+                if (!w.isLeaf()) {
+                    w.mod = w.prelim - midpoint;
+                }
+            }
+            defaultAncestor = apportion(w, defaultAncestor);
+        }
+        executeShifts(v);
+        v.prelim = (v.children[0].prelim + v.children[v.children.length - 1].prelim) / 2;
+    }
+
+    private <T> WNode<T> apportion(WNode<T> v, WNode<T> defaultAncestor) {
+        WNode<T> w = v.leftSibling();
+        if (w == null) {
+            return defaultAncestor;
+        }
+        // i: inner, o: outer, p: right subtree (plus), m: left subtrees (minus)
+        WNode<T> vip = v;
+        WNode<T> vop = v;
+        WNode<T> vim = w;
+        WNode<T> vom = v.leftmostSibling();
+        double sip = vip.mod;
+        double sop = vop.mod;
+        double sim = vim.mod;
+        double som = vom.mod;
+        while (vim.nextRight() != null && vip.nextLeft() != null) {
+            vim = vim.nextRight();
+            vip = vip.nextLeft();
+            vom = vom.nextLeft();
+            vop = vop.nextRight();
+            vop.ancestor = v;
+            double shift = (vim.prelim + sim + halfWidth(vim)) - (vip.prelim + sip - halfWidth(vip)) + distance;
+            if (shift > 0) {
+                moveSubtree(ancestor(vim, v, defaultAncestor), v, shift);
+                sip += shift;
+                sop += shift;
+            }
+            sim += vim.mod;
+            sip += vip.mod;
+            som += vom.mod;
+            sop += vop.mod;
+        }
+        if (vim.nextRight() != null && vop.nextRight() == null) {
+            vop.thread = vim.nextRight();
+            vop.mod += sim - sop;
+        }
+        if (vip.nextLeft() != null && vom.nextLeft() == null) {
+            vom.thread = vip.nextLeft();
+            vom.mod += sip - som;
+            defaultAncestor = v;
+        }
+        return defaultAncestor;
+    }
+
+    /**
+     * Half of the width of a node on the contours, the nodes being points but the placeholders of the summaries
+     */
+    private static double halfWidth(WNode<?> v) {
+        return v.summary ? Tree.ArrayExtent.SUMMARY_HALF_WIDTH : 0;
+    }
+
+    private static <T> void moveSubtree(WNode<T> wm, WNode<T> wp, double shift) {
+        int subtrees = wp.number - wm.number;
+        wp.change -= shift / subtrees;
+        wp.shift += shift;
+        wm.change += shift / subtrees;
+        wp.prelim += shift;
+        wp.mod += shift;
+    }
+
+    private static <T> void executeShifts(WNode<T> v) {
+        double shift = 0;
+        double change = 0;
+        for (int i = v.children.length - 1; i >= 0; i--) {
+            WNode<T> w = v.children[i];
+            w.prelim += shift;
+            w.mod += shift;
+            change += w.change;
+            shift += w.shift + change;
+        }
+    }
+
+    private static <T> WNode<T> ancestor(WNode<T> vim, WNode<T> v, WNode<T> defaultAncestor) {
+        return vim.ancestor.parent == v.parent ? vim.ancestor : defaultAncestor;
+    }
+
+    /**
+     * Compute the final positions in pre-order and build the positioned tree.
+     * The mod of a node is stored in the x of its children until they are visited.
+     */
+    private static <T> Tree.PositionedNode<T> secondWalk(WNode<T> root) {
+        ArrayDeque<WNode<T>> stack = new ArrayDeque<>();
+        root.x = 0;
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            WNode<T> v = stack.pop();
+            double m = v.x;
+            v.x = v.prelim + m;
+            double position = v.parent == null ? 0 : v.x - v.parent.x;
+            if (v.summary) {
+                continue;
+            }
+            v.positioned = Tree.PositionedNode.of(v.node, new ArrayList<>(v.children.length));
+            v.positioned.position = position;
+            if (v.parent != null) {
+                v.parent.positioned.children.add(v.positioned);
+            }
+            for (int i = v.children.length - 1; i >= 0; i--) {
+                v.children[i].x = m + v.mod;
+                stack.push(v.children[i]);
+            }
+        }
+        return root.positioned;
+    }
+}
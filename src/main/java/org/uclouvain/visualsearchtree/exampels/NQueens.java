@@ -1,5 +1,6 @@
 package org.uclouvain.visualsearchtree.examples;
 
+import org.uclouvain.visualsearchtree.Connector;
 import org.uclouvain.visualsearchtree.Tree;
 
 import java.util.ArrayList;
@@ -14,7 +15,7 @@ public class NQueens {
     private static Tree.Node<String> buildTree(List<Integer> queens, int n) {
         if (queens.size() == n) {
             // Si toutes les reines sont placées -> retourner un noeud sans enfants
-            return new Tree.Node<>(queensToString(queens), List.of(), List.of(), null);
+            return new Tree.Node<>(queensToString(queens), List.of(), List.of(), null, Connector.NodeStatus.SOLVED);
         }
 
         List<Tree.Node<String>> children = new ArrayList<>();
@@ -26,7 +27,9 @@ public class NQueens {
             }
         }
 
-        return new Tree.Node<>(queensToString(queens), children, List.of(), null);
+        // aucune reine ne peut être placée -> échec
+        Connector.NodeStatus status = children.isEmpty() ? Connector.NodeStatus.FAILED : Connector.NodeStatus.BRANCH;
+        return new Tree.Node<>(queensToString(queens), children, List.of(), null, status);
     }
 
     // Méthode pour convertir une liste de positions en chaîne de caractères
@@ -0,0 +1,148 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Nodes sent at once from several threads through a connector must each arrive once, with their own fields,
+ * and sending a node must not allocate
+ */
+class AsyncConnectorTest {
+
+    private static byte[] readAll(ServerSocket server) {
+        try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void concurrentSenders() throws Exception {
+        int threads = 4;
+        int count = 2_000;
+        try (ServerSocket server = new ServerSocket(0)) {
+            CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> readAll(server));
+            Connector connector = new Connector();
+            connector.connectAsync(server.getLocalPort());
+            connector.start("model", 1);
+            List<Thread> senders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * count;
+                Thread sender = new Thread(() -> {
+                    try {
+                        for (int id = first; id < first + count; id++) {
+                            if (id % 2 == 0) {
+                                connector.sendNode(id, id - 1, 0, 1, Connector.NodeStatus.BRANCH);
+                            } else {
+                                connector.createNode(id, id - 1, 1, 0, Connector.NodeStatus.FAILED)
+                                        .setNodeLabel("x = " + id).send();
+                            }
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+                senders.add(sender);
+                sender.start();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            connector.disconnect();
+
+            Map<Integer, String> labels = new HashMap<>();
+            List<Integer> types = new ArrayList<>();
+            VisualTreeServer.decode(ByteBuffer.wrap(received.get()), new Decoder.Frame(), frame -> {
+                types.add(frame.msgType());
+                if (frame.msgType() == Message.MsgType.NODE.getNumber()) {
+                    int id = frame.nodeId();
+                    assertEquals(id - 1, frame.nodePid());
+                    assertEquals(1, frame.nodeRestartId());
+                    assertEquals(id % 2, frame.nodeAlt());
+                    assertEquals(id % 2 == 0 ? Connector.NodeStatus.BRANCH.getNumber() : Connector.NodeStatus.FAILED.getNumber(),
+                            frame.nodeStatus());
+                    assertNull(labels.put(id, String.valueOf(frame.nodeLabel())), "node " + id + " received twice");
+                    assertEquals(id % 2 == 0 ? "null" : "x = " + id, labels.get(id));
+                }
+            });
+            assertEquals(threads * count, labels.size());
+            assertEquals(Message.MsgType.START.getNumber(), types.get(0));
+            assertEquals(Message.MsgType.DONE.getNumber(), types.get(types.size() - 1));
+        }
+    }
+
+    @Test
+    void messagePerThread() throws Exception {
+        Connector connector = new Connector();
+        Message message = connector.createNode(1, 0, 0, 0, Connector.NodeStatus.BRANCH);
+        assertSame(message, connector.createNode(2, 1, 0, 0, Connector.NodeStatus.FAILED));
+        CompletableFuture<Message> other = CompletableFuture.supplyAsync(
+                () -> connector.createNode(3, 1, 1, 0, Connector.NodeStatus.SOLVED));
+        assertNotSame(message, other.get());
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, through reflection as the module does not read java.management
+     */
+    private static LongSupplier allocatedBytes() {
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Method allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+            return () -> {
+                try {
+                    return (long) allocated.invoke(bean);
+                } catch (ReflectiveOperationException e) {
+                    throw new AssertionError(e);
+                }
+            };
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Test
+    void sendingDoesNotAllocate() throws Exception {
+        LongSupplier allocatedBytes = allocatedBytes();
+        assumeTrue(allocatedBytes != null && allocatedBytes.getAsLong() >= 0, "allocated bytes not measured");
+        int count = 100_000;
+        try (ServerSocket server = new ServerSocket(0)) {
+            CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> readAll(server));
+            Connector connector = new Connector();
+            connector.connectAsync(server.getLocalPort());
+            connector.start("model", 0);
+            long allocated = 0;
+            for (int run = 0; run < 2; run++) { // the first one warms up
+                long before = allocatedBytes.getAsLong();
+                for (int id = run * count; id < (run + 1) * count; id++) {
+                    connector.createNode(id, id - 1, 0, 2, Connector.NodeStatus.BRANCH).setNodeLabel("x = 1").send();
+                    connector.sendNode(id, id - 1, 1, 0, Connector.NodeStatus.FAILED);
+                }
+                allocated = allocatedBytes.getAsLong() - before;
+            }
+            connector.disconnect();
+            assertTrue(received.get().length > 0);
+            // a message per node would take more than a hundred bytes, a few remain from the compiler and the writer
+            assertTrue(allocated < 8L * count, allocated + " bytes allocated for " + 2 * count + " nodes");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The policy must collapse exactly the inner nodes matching one of its rules, and the collapsed trees must be laid out
+ * alike by both engines
+ */
+class CollapsePolicyTest {
+
+    private static Tree.Node<String> node(Connector.NodeStatus status, List<Tree.Node<String>> children) {
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            edges.add("-");
+        }
+        return new Tree.Node<>(status.name(), new ArrayList<>(children), edges, null, status);
+    }
+
+    private static Tree.Node<String> leaf(Connector.NodeStatus status) {
+        return node(status, List.of());
+    }
+
+    @SafeVarargs
+    private static Tree.Node<String> branch(Tree.Node<String>... children) {
+        return node(Connector.NodeStatus.BRANCH, List.of(children));
+    }
+
+    /**
+     * Random tree whose leaves are mostly failed
+     */
+    private static Tree.Node<String> randomSearch(int size, Random random) {
+        List<Tree.Node<String>> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int r = random.nextInt(20);
+            Connector.NodeStatus status = r == 0 ? Connector.NodeStatus.SOLVED : r == 1 ? Connector.NodeStatus.SKIPPED
+                    : r < 6 ? Connector.NodeStatus.BRANCH : Connector.NodeStatus.FAILED;
+            Tree.Node<String> node = leaf(status);
+            if (i > 0) {
+                Tree.Node<String> parent = nodes.get(random.nextInt(i));
+                parent.children.add(node);
+                parent.edgeLabels.add("-");
+            }
+            nodes.add(node);
+        }
+        return nodes.get(0);
+    }
+
+    /**
+     * Nodes the policy must collapse, found recursively: size and whether all the leaves failed, of the visited part
+     */
+    private static int[] expected(Tree.Node<String> node, int depth, boolean collapseFailed, int minSize, int maxDepth,
+                                  Map<Tree.Node<String>, Boolean> res) {
+        if (node.children.isEmpty()) {
+            return new int[]{1, node.status == Connector.NodeStatus.FAILED ? 1 : 0};
+        }
+        if (depth >= maxDepth) {
+            res.put(node, true);
+            return new int[]{1, 0};
+        }
+        int size = 1;
+        int failed = 1;
+        for (Tree.Node<String> child : node.children) {
+            int[] c = expected(child, depth + 1, collapseFailed, minSize, maxDepth, res);
+            size += c[0];
+            failed &= c[1];
+        }
+        if (size < minSize || (collapseFailed && failed == 1)) {
+            res.put(node, true);
+        }
+        return new int[]{size, failed};
+    }
+
+    private static void collect(Tree.Node<String> node, List<Tree.Node<String>> res) {
+        res.add(node);
+        for (Tree.Node<String> child : node.children) {
+            collect(child, res);
+        }
+    }
+
+    @Test
+    void rules() {
+        Tree.Node<String> failed = branch(leaf(Connector.NodeStatus.FAILED), branch(leaf(Connector.NodeStatus.FAILED)));
+        Tree.Node<String> solved = branch(leaf(Connector.NodeStatus.FAILED), leaf(Connector.NodeStatus.SOLVED));
+        Tree.Node<String> root = branch(failed, solved);
+        assertEquals(2, new CollapsePolicy().apply(root)); // failed and its failed child
+        assertTrue(failed.collapsed);
+        assertTrue(failed.children.get(1).collapsed);
+        assertFalse(solved.collapsed);
+        assertFalse(root.collapsed);
+        assertFalse(failed.children.get(0).collapsed); // leaves are never collapsed
+        assertEquals(0, new CollapsePolicy().apply(root)); // already collapsed
+
+        Tree.Node<String> small = branch(leaf(Connector.NodeStatus.SOLVED));
+        root = branch(small, branch(leaf(Connector.NodeStatus.SOLVED), leaf(Connector.NodeStatus.SOLVED)));
+        assertEquals(1, new CollapsePolicy().setMinSize(3).apply(root));
+        assertTrue(small.collapsed);
+        assertEquals(0, new CollapsePolicy().setCollapseFailed(false).apply(branch(leaf(Connector.NodeStatus.FAILED))));
+
+        // below the maximum depth nothing is visited, a failed subtree there does not make its ancestors failed
+        Tree.Node<String> deep = branch(leaf(Connector.NodeStatus.FAILED));
+        Tree.Node<String> middle = branch(deep);
+        root = branch(middle, leaf(Connector.NodeStatus.FAILED));
+        assertEquals(1, new CollapsePolicy().setMaxDepth(2).apply(root));
+        assertTrue(deep.collapsed);
+        assertFalse(middle.collapsed);
+        assertFalse(root.collapsed);
+        root = branch(branch(leaf(Connector.NodeStatus.FAILED)));
+        assertEquals(1, new CollapsePolicy().setMaxDepth(0).apply(root));
+        assertTrue(root.collapsed);
+    }
+
+    @Test
+    void randomTrees() {
+        Random random = new Random(5);
+        for (int run = 0; run < 50; run++) {
+            Tree.Node<String> tree = randomSearch(1 + random.nextInt(1_000), random);
+            boolean collapseFailed = random.nextBoolean();
+            int minSize = random.nextInt(3) == 0 ? 0 : random.nextInt(20);
+            int maxDepth = random.nextInt(3) == 0 ? Integer.MAX_VALUE : random.nextInt(10);
+            Map<Tree.Node<String>, Boolean> expected = new IdentityHashMap<>();
+            expected(tree, 0, collapseFailed, minSize, maxDepth, expected);
+            int collapsed = new CollapsePolicy().setCollapseFailed(collapseFailed).setMinSize(minSize).setMaxDepth(maxDepth).apply(tree);
+            assertEquals(expected.size(), collapsed);
+            List<Tree.Node<String>> nodes = new ArrayList<>();
+            collect(tree, nodes);
+            for (Tree.Node<String> node : nodes) {
+                assertEquals(expected.containsKey(node), node.collapsed);
+            }
+        }
+    }
+
+    @Test
+    void collapsedTreesLaidOutAlike() {
+        // the children of the root collapsed, the engines giving the same layout to the subtrees side by side
+        for (int n = 2; n <= 6; n++) {
+            Tree.Node<String> tree = branch(branch(leaf(Connector.NodeStatus.FAILED)), leaf(Connector.NodeStatus.SOLVED),
+                    branch(leaf(Connector.NodeStatus.FAILED), leaf(Connector.NodeStatus.FAILED)),
+                    branch(leaf(Connector.NodeStatus.SOLVED)), branch(branch(leaf(Connector.NodeStatus.FAILED))));
+            for (int i = 0; i < n; i++) {
+                tree.children.add(branch(leaf(Connector.NodeStatus.FAILED)));
+                tree.edgeLabels.add("-");
+            }
+            new CollapsePolicy().setMaxDepth(1).apply(tree);
+            LayoutAssertions.assertSamePositions(tree.design(), tree.design(TreeLayout.WALKER));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * A frame read in place must decode every message as the byte list path does, in any buffer
+ */
+class DecoderTest {
+
+    private static Message node(int id, int pid, String label, String nogood, String info) {
+        return new Message(null).setType(Message.MsgType.NODE).setNodeId(id).setNodePid(pid).setNodeAlt(1)
+                .setNodeChildren(2).setNoteStatus(Connector.NodeStatus.BRANCH.getNumber())
+                .setNodeLabel(label).setNodeNoGood(nogood).setNodeInfo(info);
+    }
+
+    private static List<Message> messages() {
+        List<Message> res = new ArrayList<>();
+        res.add(new Message(null).setType(Message.MsgType.START).setLabel("model.fzn"));
+        res.add(new Message(null).setType(Message.MsgType.START));
+        res.add(node(0, -1, "-", "-", "-"));
+        res.add(node(1, 0, "x = 1", "-", "-"));
+        res.add(node(2, 0, "x != 1", "x = 1 /\\ y = 2", "{\"depth\": 1}"));
+        res.add(node(3, 2, "-", "y > 3", "-"));
+        res.add(node(4, 2, "-", "-", "domain size 7"));
+        res.add(node(5, 4, "y = " + "9".repeat(1_000), "-", "-").setRestartId(2).setThreadId(3));
+        res.add(new Message(null).setType(Message.MsgType.RESTART).setRestartId(1));
+        res.add(new Message(null).setType(Message.MsgType.DONE));
+        return res;
+    }
+
+    private static Decoder.DecodedMessage fromList(byte[] bytes) {
+        List<Byte> list = new LinkedList<>();
+        Decoder.addToBuffer(list, bytes);
+        Decoder.DecodedMessage message = Decoder.deserialize(list, bytes.length);
+        assertEquals(0, list.size());
+        return message;
+    }
+
+    private static void assertSameMessage(Decoder.DecodedMessage expected, Decoder.DecodedMessage actual) {
+        assertEquals(expected.msgType, actual.msgType, "type");
+        assertEquals(expected.msgTypeName, actual.msgTypeName, "type name");
+        assertEquals(expected.nodeId, actual.nodeId, "id");
+        assertEquals(expected.nodeRestartId, actual.nodeRestartId, "restart id");
+        assertEquals(expected.nodeThreadId, actual.nodeThreadId, "thread id");
+        assertEquals(expected.nodePid, actual.nodePid, "pid");
+        assertEquals(expected.nodePidThreadId, actual.nodePidThreadId, "thread id of the parent");
+        assertEquals(expected.nodeAlt, actual.nodeAlt, "alt");
+        assertEquals(expected.nodeChildren, actual.nodeChildren, "children");
+        assertEquals(expected.nodeStatus, actual.nodeStatus, "status");
+        assertEquals(expected.nodeLabel, actual.nodeLabel, "label");
+        assertEquals(expected.nodeNoGood, actual.nodeNoGood, "nogood");
+        assertEquals(expected.nodeInfo, actual.nodeInfo, "info");
+    }
+
+    @Test
+    void framesDecodeAsTheList() throws Exception {
+        for (Message msg : messages()) {
+            byte[] bytes = msg.toBytes();
+            Decoder.DecodedMessage expected = fromList(bytes);
+            assertSameMessage(expected, new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length).toMessage());
+
+            // in a little endian direct buffer, after other bytes
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(7);
+            buffer.put(bytes);
+            assertSameMessage(expected, new Decoder.Frame().wrap(buffer, 7, bytes.length).toMessage());
+
+            buffer.position(7);
+            assertSameMessage(expected, Decoder.deserialize(buffer, bytes.length));
+            assertEquals(7 + bytes.length, buffer.position());
+        }
+    }
+
+    @Test
+    void fieldsOfANode() throws Exception {
+        byte[] bytes = node(12, 7, "x = 1", "x = 1 /\\ y = 2", "info").setRestartId(4).setThreadId(5).toBytes();
+        Decoder.DecodedMessage message = fromList(bytes);
+        Decoder.Frame frame = new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertEquals(Message.MsgType.NODE.getNumber(), frame.msgType());
+        assertEquals(12, frame.nodeId());
+        assertEquals(4, frame.nodeRestartId());
+        assertEquals(5, frame.nodeThreadId());
+        assertEquals(7, frame.nodePid());
+        assertEquals(5, frame.nodePidThreadId());
+        assertEquals(1, frame.nodeAlt());
+        assertEquals(2, frame.nodeChildren());
+        assertEquals(Connector.NodeStatus.BRANCH.getNumber(), frame.nodeStatus());
+        assertEquals("x = 1", frame.nodeLabel());
+        assertEquals("x = 1 /\\ y = 2", frame.nodeNoGood());
+        assertEquals("{\"name\": \"info\"}", frame.nodeInfo());
+        assertSameMessage(message, frame.toMessage());
+    }
+
+    @Test
+    void startInfo() throws Exception {
+        byte[] bytes = new Message(null).setType(Message.MsgType.START).setLabel("model.fzn").toBytes();
+        Decoder.Frame frame = new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertEquals("{\"name\": \"model.fzn\"}", frame.nodeInfo());
+        assertEquals(frame.nodeInfo(), fromList(bytes).nodeInfo);
+
+        bytes = new Message(null).setType(Message.MsgType.START).toBytes();
+        assertNull(new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length).nodeInfo());
+    }
+
+    @Test
+    void missingOptions() throws Exception {
+        byte[] bytes = node(1, 0, "-", "-", "-").toBytes();
+        assertEquals(34, bytes.length);
+        Decoder.Frame frame = new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertNull(frame.nodeLabel());
+        assertNull(frame.nodeNoGood());
+        assertNull(frame.nodeInfo());
+    }
+
+    @Test
+    void corruptedOptionSizes() throws Exception {
+        byte[] valid = node(1, 0, "x = 1", "y = 2", "-").toBytes();
+        byte[] start = new Message(null).setType(Message.MsgType.START).setLabel("model").toBytes();
+        for (int size : new int[]{-1, -5, -6, -100, Integer.MIN_VALUE, 1_000, Integer.MAX_VALUE}) {
+            // size of the label, the nogood follows
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(35, size);
+            Decoder.DecodedMessage message = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                Decoder.DecodedMessage expected = fromList(bytes);
+                assertSameMessage(expected, new Decoder.Frame().wrap(ByteBuffer.wrap(bytes), 0, bytes.length).toMessage());
+                return expected;
+            }, "label of size " + size);
+            assertEquals(1, message.nodeId);
+            if (size < 0) {
+                assertNull(message.nodeLabel);
+                assertNull(message.nodeNoGood);
+            }
+
+            byte[] info = start.clone();
+            ByteBuffer.wrap(info).putInt(2, size);
+            Decoder.DecodedMessage startMessage = fromList(info);
+            assertSameMessage(startMessage, new Decoder.Frame().wrap(ByteBuffer.wrap(info), 0, info.length).toMessage());
+            if (size < 0) {
+                assertNull(startMessage.nodeInfo);
+            }
+        }
+
+        // through the channel mode, the frame does not stop the next one
+        byte[] bytes = valid.clone();
+        ByteBuffer.wrap(bytes).putInt(35, -5);
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.putInt(Integer.reverseBytes(bytes.length)).put(bytes);
+        new Message(null).setType(Message.MsgType.DONE).encode(buffer);
+        buffer.flip();
+        List<Decoder.DecodedMessage> decoded = new ArrayList<>();
+        boolean done = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> VisualTreeServer.decode(buffer, new Decoder.Frame(), frame -> decoded.add(frame.toMessage())));
+        assertEquals(true, done);
+        assertEquals(2, decoded.size());
+        assertNull(decoded.get(0).nodeLabel);
+    }
+}
@@ -0,0 +1,64 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.scene.Group;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * Trees far deeper than what a recursive walk can handle on the default stack
+ */
+class DeepTreeTest {
+
+    private static final int DEPTH = 200_000;
+
+    @Test
+    void layoutOfAChain() {
+        Tree.Node<String> chain = Tree.chainTree(DEPTH);
+        for (Tree.PositionedNode<String> root : List.of(chain.design(), chain.design(TreeLayout.WALKER))) {
+            List<Placed<String>> nodes = placed(root);
+            assertEquals(DEPTH, nodes.size());
+            for (Placed<String> node : nodes) {
+                assertEquals(0.0, node.x());
+            }
+        }
+    }
+
+    @Test
+    void drawingOfAChain() {
+        Group group = new Group();
+        TreeVisual.drawTree(group, Tree.chainTree(DEPTH).design());
+        assertEquals(2 * DEPTH - 1, group.getChildren().size()); // circles and lines
+    }
+
+    @Test
+    void randomTreeDrawsInTheRecursiveOrder() {
+        Tree.rand = new Random(1);
+        Tree.Node<String> tree = Tree.randomTree();
+        Tree.rand = new Random(1);
+        Tree.Node<String> expected = recursiveRandomTree(0);
+        assertSamePositions(referenceDesign(expected), tree.design());
+    }
+
+    /**
+     * Tree.randomTree as it was defined recursively
+     */
+    private static Tree.Node<String> recursiveRandomTree(int depth) {
+        int nChildren = 2;
+        if ((Tree.rand.nextInt(100) < 50 && depth > 3)) {
+            nChildren = 0;
+        }
+        List<Tree.Node<String>> children = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < nChildren; i++) {
+            children.add(recursiveRandomTree(depth + 1));
+            labels.add("x = " + i);
+        }
+        return new Tree.Node<>("Node" + depth, children, labels, null);
+    }
+}
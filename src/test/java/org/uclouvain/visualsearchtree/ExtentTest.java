@@ -0,0 +1,110 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * {@link Tree.ArrayExtent} against the list based {@link Tree.Extent}, results must be bit-identical
+ */
+class ExtentTest {
+
+    private final Random random = new Random(42);
+
+    private Tree.Extent randomExtent() {
+        Tree.Extent e = new Tree.Extent();
+        int size = 1 + random.nextInt(8);
+        double x = 0;
+        for (int i = 0; i < size; i++) {
+            double left = x - random.nextInt(5) - random.nextDouble();
+            double right = x + random.nextInt(5) + random.nextDouble();
+            e.add(left, right);
+            x = (left + right) / 2;
+        }
+        return e;
+    }
+
+    private static Tree.ArrayExtent toArray(Tree.Extent e) {
+        int n = e.extentList.size();
+        double[] l = new double[n];
+        double[] r = new double[n];
+        for (int i = 0; i < n; i++) {
+            l[n - 1 - i] = e.extentList.get(i).left();
+            r[n - 1 - i] = e.extentList.get(i).right();
+        }
+        return new Tree.ArrayExtent(l, r, n, 0);
+    }
+
+    private static void assertSame(Tree.Extent expected, Tree.ArrayExtent actual) {
+        assertEquals(expected.extentList.size(), actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.extentList.get(i).left(), actual.left(i), "left of level " + i);
+            assertEquals(expected.extentList.get(i).right(), actual.right(i), "right of level " + i);
+        }
+    }
+
+    private static double[] toArray(List<Double> list) {
+        return list.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    @Test
+    void moveMergeAndFit() {
+        for (int run = 0; run < 1000; run++) {
+            Tree.Extent a = randomExtent();
+            Tree.Extent b = randomExtent();
+            double x = random.nextDouble() * 10 - 5;
+            double y = random.nextDouble() * 10 - 5;
+            assertSame(a.move(x).move(y), toArray(a).move(x).move(y));
+            assertSame(a.merge(b), toArray(a).merge(toArray(b)));
+            assertEquals(a.fit(b), toArray(a).fit(toArray(b)));
+            assertEquals(a.move(x).fit(b.move(y)), toArray(a).move(x).fit(toArray(b).move(y)));
+        }
+    }
+
+    @Test
+    void fitLists() {
+        for (int run = 0; run < 1000; run++) {
+            List<Tree.Extent> extents = new ArrayList<>();
+            int n = 1 + random.nextInt(6);
+            for (int i = 0; i < n; i++) {
+                extents.add(randomExtent());
+            }
+            Tree.ArrayExtent[] arrays = extents.stream().map(ExtentTest::toArray).toArray(Tree.ArrayExtent[]::new);
+            assertArrayEquals(toArray(Tree.Extent.fitListLeft(extents)), Tree.ArrayExtent.fitListLeft(arrays));
+            assertArrayEquals(toArray(Tree.Extent.fitListRight(extents)), Tree.ArrayExtent.fitListRight(arrays));
+            assertArrayEquals(toArray(Tree.Extent.fitList(extents)), Tree.ArrayExtent.fitList(arrays));
+            assertSame(Tree.Extent.merge(extents), Tree.ArrayExtent.merge(arrays));
+            double[] positions = Tree.ArrayExtent.fitList(arrays);
+            List<Tree.Extent> moved = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                moved.add(extents.get(i).move(positions[i]));
+            }
+            Tree.Extent joined = Tree.Extent.merge(moved);
+            joined.addFirst(0, 0);
+            assertSame(joined, Tree.ArrayExtent.join(arrays, positions));
+        }
+    }
+
+    @Test
+    void designIsBitIdentical() {
+        for (int run = 0; run < 20; run++) {
+            Tree.Node<String> tree = randomTree(1 + random.nextInt(3000), random);
+            assertSamePositions(referenceDesign(tree), tree.design());
+        }
+        for (int n = 4; n <= 8; n++) {
+            Tree.Node<String> tree = NQueens.nQueensTree(n);
+            assertSamePositions(referenceDesign(tree), tree.design());
+        }
+        Tree.Node<String> chain = Tree.chainTree(2000);
+        assertSamePositions(referenceDesign(chain), chain.design());
+        Tree.Node<String> wide = wideTree(2000);
+        assertSamePositions(referenceDesign(wide), wide.design());
+    }
+}
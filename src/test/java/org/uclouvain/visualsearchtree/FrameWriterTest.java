@@ -0,0 +1,111 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every frame sent must be written once and in order, and a writer that stopped must make the senders fail
+ */
+class FrameWriterTest {
+
+    private static Message node(int threadId, int id, String label) {
+        return new Message(null).setType(Message.MsgType.NODE).setThreadId(threadId).setNodeId(id).setNodeLabel(label);
+    }
+
+    /**
+     * Send until the writer stopped, which must happen soon
+     */
+    private static IOException sendUntilFailure(FrameWriter writer) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        for (int i = 0; System.nanoTime() < deadline; i++) {
+            try {
+                writer.send(node(0, i, "-"));
+            } catch (IOException e) {
+                return e;
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("the writer did not stop");
+    }
+
+    @Test
+    void framesInOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FrameWriter writer = new FrameWriter(out, 64); // smaller than some messages
+        int threads = 3;
+        int count = 5_000;
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int threadId = t;
+            Thread sender = new Thread(() -> {
+                Message msg = new Message(null);
+                try {
+                    for (int i = 0; i < count; i++) {
+                        msg.clear();
+                        msg.setType(Message.MsgType.NODE).setThreadId(threadId).setNodeId(i)
+                                .setNodeLabel(i % 100 == 0 ? "x = " + "1".repeat(200) : "-");
+                        writer.send(msg);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            senders.add(sender);
+            sender.start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        writer.close();
+
+        int[] next = new int[threads];
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        VisualTreeServer.decode(buffer, new Decoder.Frame(), frame -> {
+            assertEquals(next[frame.nodeThreadId()]++, frame.nodeId());
+        });
+        assertEquals(0, buffer.remaining());
+        for (int n : next) {
+            assertEquals(count, n);
+        }
+        assertThrows(IOException.class, () -> writer.send(node(0, 0, "-")));
+    }
+
+    @Test
+    void failedWrite() throws Exception {
+        FrameWriter writer = new FrameWriter(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        }, 64);
+        assertEquals("broken pipe", sendUntilFailure(writer).getMessage());
+        assertThrows(IOException.class, () -> writer.send(node(0, 0, "-")));
+        assertThrows(IOException.class, writer::close);
+    }
+
+    @Test
+    void interruptedWriter() throws Exception {
+        FrameWriter writer = new FrameWriter(new OutputStream() {
+            @Override
+            public void write(int b) {
+                Thread.currentThread().interrupt(); // as if the writer thread was interrupted
+            }
+        }, 64);
+        IOException e = sendUntilFailure(writer);
+        assertTrue(e instanceof InterruptedIOException, e.toString());
+        assertThrows(InterruptedIOException.class, () -> writer.send(node(0, 0, "-")));
+        assertThrows(InterruptedIOException.class, writer::close);
+        assertTrue(e.getMessage().contains("interrupted"));
+    }
+}
@@ -0,0 +1,87 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * After every update, the incremental layout must give exactly the positions of design() on the same tree
+ */
+class IncrementalLayoutTest {
+
+    private static Tree.Node<String> leaf(int i) {
+        return new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null, Connector.NodeStatus.BRANCH);
+    }
+
+    @Test
+    void initialLayout() {
+        for (Tree.Node<String> tree : List.of(randomTree(5_000, new Random(1)), copy(NQueens.nQueensTree(6)),
+                Tree.chainTree(2_000), wideTree(2_000))) {
+            assertSamePositions(tree.design(), new IncrementalLayout<>(tree).root());
+        }
+    }
+
+    @Test
+    void growingRandomTree() {
+        Random random = new Random(7);
+        Tree.Node<String> root = leaf(0);
+        List<Tree.Node<String>> nodes = new ArrayList<>(List.of(root));
+        IncrementalLayout<String> layout = new IncrementalLayout<>(root);
+        for (int batch : new int[]{1, 1, 2, 5, 30, 200, 1_000, 3_000}) {
+            for (int i = 0; i < batch; i++) {
+                Tree.Node<String> parent = nodes.get(random.nextInt(nodes.size()));
+                Tree.Node<String> child = leaf(nodes.size());
+                layout.addChild(parent, child, "x = " + parent.children.size());
+                nodes.add(child);
+            }
+            assertSamePositions(root.design(), layout.update());
+            assertSamePositions(referenceDesign(root), layout.root());
+        }
+    }
+
+    @Test
+    void appendedSubtrees() {
+        Random random = new Random(11);
+        Tree.Node<String> root = randomTree(100, random);
+        IncrementalLayout<String> layout = new IncrementalLayout<>(root);
+        Tree.Node<String> parent = root;
+        for (int i = 0; i < 20; i++) {
+            Tree.Node<String> subtree = randomTree(1 + random.nextInt(300), random);
+            layout.addChild(parent, subtree, "s = " + i);
+            parent = random.nextBoolean() ? subtree : root;
+            assertSamePositions(root.design(), layout.update());
+        }
+    }
+
+    @Test
+    void collapseAndExpand() {
+        Random random = new Random(13);
+        Tree.Node<String> root = randomTree(5_000, random);
+        IncrementalLayout<String> layout = new IncrementalLayout<>(root);
+        Tree.Node<String> node = root.children.get(0);
+        Tree.Node<String> hiddenChild = node.children.isEmpty() ? null : node.children.get(0);
+
+        layout.collapse(node);
+        assertSamePositions(root.design(), layout.update());
+        if (hiddenChild != null) {
+            assertFalse(layout.contains(hiddenChild));
+        }
+
+        // children added below a collapsed node are only laid out once it is expanded
+        layout.addChild(node, randomTree(50, random), "hidden");
+        assertSamePositions(root.design(), layout.update());
+
+        layout.expand(node);
+        assertSamePositions(root.design(), layout.update());
+        if (hiddenChild != null) {
+            assertTrue(layout.contains(hiddenChild));
+        }
+    }
+}
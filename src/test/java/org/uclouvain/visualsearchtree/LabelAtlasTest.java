@@ -0,0 +1,144 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.scene.image.PixelFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Labels must be packed without overlapping, rasterized once, and a page holding a label given during the current
+ * frame must not be reused before the next one
+ */
+class LabelAtlasTest {
+
+    // large labels, so that a page is full after a few dozens
+    private static final int SIZE = 60;
+
+    private static String text(int i) {
+        return "x = " + (100_000 + i);
+    }
+
+    private static int[] pixels(LabelAtlas.Slot slot) {
+        int[] res = new int[slot.width() * slot.height()];
+        slot.page().getPixelReader().getPixels(slot.x(), slot.y(), slot.width(), slot.height(),
+                PixelFormat.getIntArgbInstance(), res, 0, slot.width());
+        return res;
+    }
+
+    private static boolean overlap(LabelAtlas.Slot a, LabelAtlas.Slot b) {
+        return a.page() == b.page() && a.x() < b.x() + b.width() && b.x() < a.x() + a.width()
+                && a.y() < b.y() + b.height() && b.y() < a.y() + a.height();
+    }
+
+    /**
+     * Rasterize new labels until one does not fit, which must happen within a few pages
+     * @return the slots given
+     */
+    private static List<LabelAtlas.Slot> fill(LabelAtlas atlas, int first) {
+        List<LabelAtlas.Slot> res = new ArrayList<>();
+        for (int i = first; ; i++) {
+            LabelAtlas.Slot slot = atlas.get(text(i), SIZE);
+            if (slot == null) {
+                return res;
+            }
+            res.add(slot);
+            assertTrue(res.size() < 10_000, "the atlas never got full");
+        }
+    }
+
+    @Test
+    void packing() {
+        LabelAtlas atlas = new LabelAtlas(2);
+        atlas.newFrame();
+        List<LabelAtlas.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            slots.add(atlas.get(text(i), SIZE));
+        }
+        assertEquals(40, atlas.rasterized());
+        assertEquals(40, atlas.size());
+        assertEquals(2, slots.stream().map(LabelAtlas.Slot::page).distinct().count());
+        for (int i = 0; i < slots.size(); i++) {
+            LabelAtlas.Slot a = slots.get(i);
+            assertTrue(a.x() >= 0 && a.y() >= 0 && a.x() + a.width() <= LabelAtlas.PAGE_SIZE
+                    && a.y() + a.height() <= LabelAtlas.PAGE_SIZE, "label " + i + " out of its page");
+            assertTrue(Arrays.stream(pixels(a)).anyMatch(p -> p != 0), "label " + i + " not drawn");
+            for (int j = 0; j < i; j++) {
+                assertFalse(overlap(a, slots.get(j)), "labels " + j + " and " + i + " overlap");
+            }
+        }
+
+        // existing entries are given again without being rasterized again, in this frame or the next ones
+        atlas.newFrame();
+        for (int i = 0; i < slots.size(); i++) {
+            assertSame(slots.get(i), atlas.peek(text(i), SIZE));
+            assertSame(slots.get(i), atlas.get(text(i), SIZE));
+        }
+        assertEquals(40, atlas.rasterized());
+        assertNull(atlas.peek(text(40), SIZE));
+        assertNull(atlas.peek(text(0), SIZE + 1));
+    }
+
+    @Test
+    void pagesOfTheFrameAreKept() {
+        LabelAtlas atlas = new LabelAtlas(2);
+        atlas.newFrame();
+        List<LabelAtlas.Slot> first = fill(atlas, 0);
+        assertEquals(2, first.stream().map(LabelAtlas.Slot::page).distinct().count());
+        // every page is used in this frame, the labels already given keep their pixels
+        int[] pixels = pixels(first.get(0));
+        assertNull(atlas.get(text(first.size()), SIZE));
+        assertArrayEquals(pixels, pixels(first.get(0)));
+        assertSame(first.get(0), atlas.peek(text(0), SIZE));
+
+        // in the next frame, the oldest page is reused, unless it holds a label given during the frame
+        atlas.newFrame();
+        LabelAtlas.Slot kept = atlas.peek(text(0), SIZE);
+        assertSame(first.get(0), kept);
+        int size = atlas.size();
+        LabelAtlas.Slot slot = atlas.get(text(first.size()), SIZE);
+        assertNotNull(slot);
+        assertSame(first.get(first.size() - 1).page(), slot.page());
+        assertTrue(atlas.size() < size, "the newest page was not cleared");
+        assertNull(atlas.peek(text(first.size() - 1), SIZE));
+        assertSame(kept, atlas.peek(text(0), SIZE));
+        assertArrayEquals(pixels, pixels(kept));
+
+        // then the page is full again, both being used in this frame
+        List<LabelAtlas.Slot> second = fill(atlas, first.size() + 1);
+        assertFalse(second.isEmpty());
+        assertArrayEquals(pixels, pixels(kept));
+        assertSame(kept, atlas.peek(text(0), SIZE));
+
+        // and when the first page is not used, it is the one reused
+        atlas.newFrame();
+        assertNotNull(atlas.get(text(100_000), SIZE));
+        assertNull(atlas.peek(text(0), SIZE));
+        assertNotNull(atlas.peek(text(first.size() + 1), SIZE));
+    }
+
+    @Test
+    void singlePage() {
+        LabelAtlas atlas = new LabelAtlas(1);
+        atlas.newFrame();
+        List<LabelAtlas.Slot> slots = fill(atlas, 0);
+        int rasterized = atlas.rasterized();
+        assertEquals(slots.size(), rasterized);
+        atlas.newFrame();
+        LabelAtlas.Slot slot = atlas.get(text(slots.size()), SIZE);
+        assertEquals(0, slot.x());
+        assertEquals(0, slot.y());
+        assertEquals(1, atlas.size());
+        assertNull(atlas.peek(text(0), SIZE));
+        assertEquals(rasterized + 1, atlas.rasterized());
+    }
+}
@@ -0,0 +1,263 @@
+package org.uclouvain.visualsearchtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Trees and checks shared by the layout tests
+ */
+final class LayoutAssertions {
+
+    static final double EPSILON = 1e-9;
+
+    private LayoutAssertions() {
+    }
+
+    /**
+     * Node of a laid out tree, in pre-order
+     */
+    record Placed<T>(T label, int depth, double x) {
+
+    }
+
+    /**
+     * Absolute positions of the nodes, in pre-order
+     */
+    static <T> List<Placed<T>> placed(Tree.PositionedNode<T> root) {
+        List<Placed<T>> res = new ArrayList<>();
+        Deque<Object[]> stack = new ArrayDeque<>(); // node, depth, x of the parent
+        stack.push(new Object[]{root, 0, 0.0});
+        while (!stack.isEmpty()) {
+            Object[] task = stack.pop();
+            @SuppressWarnings("unchecked")
+            Tree.PositionedNode<T> node = (Tree.PositionedNode<T>) task[0];
+            int depth = (int) task[1];
+            double x = (double) task[2] + node.position;
+            res.add(new Placed<>(node.label, depth, x));
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                stack.push(new Object[]{node.children.get(i), depth + 1, x});
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Assert that two nodes on the same level are at least at distance 1
+     */
+    static <T> void assertNoOverlap(Tree.PositionedNode<T> root) {
+        List<Placed<T>> nodes = placed(root);
+        int depth = nodes.stream().mapToInt(Placed::depth).max().orElse(0);
+        List<List<Double>> levels = new ArrayList<>();
+        for (int d = 0; d <= depth; d++) {
+            levels.add(new ArrayList<>());
+        }
+        for (Placed<T> node : nodes) {
+            levels.get(node.depth()).add(node.x());
+        }
+        for (int d = 0; d <= depth; d++) {
+            double[] xs = levels.get(d).stream().mapToDouble(Double::doubleValue).toArray();
+            Arrays.sort(xs);
+            for (int i = 1; i < xs.length; i++) {
+                assertTrue(xs[i] - xs[i - 1] >= 1 - EPSILON, "overlap at depth " + d + ": " + xs[i - 1] + " and " + xs[i]);
+            }
+        }
+    }
+
+    /**
+     * Assert that both trees have the same nodes, in the same order
+     */
+    static <T> void assertSameShape(Tree.PositionedNode<T> expected, Tree.PositionedNode<T> actual) {
+        List<Placed<T>> e = placed(expected);
+        List<Placed<T>> a = placed(actual);
+        assertEquals(e.size(), a.size(), "number of nodes");
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.get(i).label(), a.get(i).label(), "label of node " + i);
+            assertEquals(e.get(i).depth(), a.get(i).depth(), "depth of node " + i);
+        }
+    }
+
+    /**
+     * Assert that both trees have the same nodes at exactly the same positions
+     */
+    static <T> void assertSamePositions(Tree.PositionedNode<T> expected, Tree.PositionedNode<T> actual) {
+        assertSameShape(expected, actual);
+        List<Placed<T>> e = placed(expected);
+        List<Placed<T>> a = placed(actual);
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.get(i).x(), a.get(i).x(), "position of node " + i);
+        }
+    }
+
+    /**
+     * Assert that the tree laid out in a store, visited in pre-order from the given root,
+     * has the nodes of the positioned tree at exactly the same positions
+     */
+    static <T> void assertSamePositions(Tree.PositionedNode<T> expected, NodeStore store, int root) {
+        List<Placed<T>> e = placed(expected);
+        int i = 0;
+        Deque<double[]> stack = new ArrayDeque<>(); // id, x of the parent
+        stack.push(new double[]{root, 0.0});
+        while (!stack.isEmpty()) {
+            double[] task = stack.pop();
+            int id = (int) task[0];
+            double x = task[1] + store.position(id);
+            assertTrue(i < e.size(), "more nodes in the store than in the tree");
+            assertEquals(e.get(i).depth(), store.depth(id) - store.depth(root), "depth of node " + i);
+            assertEquals(e.get(i).x(), x, "position of node " + i);
+            i++;
+            List<Integer> children = new ArrayList<>();
+            for (int c = store.firstChild(id); c != NodeStore.NONE; c = store.nextSibling(c)) {
+                children.add(c);
+            }
+            for (int j = children.size() - 1; j >= 0; j--) {
+                stack.push(new double[]{children.get(j), x});
+            }
+        }
+        assertEquals(e.size(), i, "number of nodes");
+    }
+
+    /**
+     * Assert that the second tree, laid out from the mirror of the first one, has mirrored positions
+     */
+    static <T> void assertMirrored(Tree.PositionedNode<T> tree, Tree.PositionedNode<T> mirrored) {
+        Tree.PositionedNode<T> back = mirror(mirrored);
+        List<Placed<T>> e = placed(tree);
+        List<Placed<T>> a = placed(back);
+        assertEquals(e.size(), a.size(), "number of nodes");
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.get(i).x(), a.get(i).x(), EPSILON, "mirrored position of node " + i);
+        }
+    }
+
+    /**
+     * Copy of a tree with the children of every node in reverse order
+     */
+    static <T> Tree.Node<T> mirror(Tree.Node<T> root) {
+        return copy(root, true);
+    }
+
+    /**
+     * Copy of a tree, so that layouts storing data in the nodes do not share it between tests
+     */
+    static <T> Tree.Node<T> copy(Tree.Node<T> root) {
+        return copy(root, false);
+    }
+
+    private static <T> Tree.Node<T> copy(Tree.Node<T> root, boolean reverse) {
+        Tree.Node<T> res = new Tree.Node<>(root.label, new ArrayList<>(), new ArrayList<>(), null, root.status);
+        Deque<Tree.Node<T>[]> stack = new ArrayDeque<>(); // original, copy
+        stack.push(pair(root, res));
+        while (!stack.isEmpty()) {
+            Tree.Node<T>[] task = stack.pop();
+            Tree.Node<T> from = task[0];
+            Tree.Node<T> to = task[1];
+            if (from.collapsed) {
+                to.collapse();
+            }
+            int n = from.children.size();
+            for (int i = 0; i < n; i++) {
+                int j = reverse ? n - 1 - i : i;
+                Tree.Node<T> child = from.children.get(j);
+                Tree.Node<T> c = new Tree.Node<>(child.label, new ArrayList<>(), new ArrayList<>(), null, child.status);
+                to.children.add(c);
+                if (from.edgeLabels != null && j < from.edgeLabels.size()) {
+                    to.edgeLabels.add(from.edgeLabels.get(j));
+                }
+                stack.push(pair(child, c));
+            }
+        }
+        return res;
+    }
+
+    private static <T> Tree.PositionedNode<T> mirror(Tree.PositionedNode<T> root) {
+        Tree.PositionedNode<T> res = new Tree.PositionedNode<>(root.label, new ArrayList<>(), root.edgeLabels, null, -root.position);
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{root, res});
+        while (!stack.isEmpty()) {
+            Object[] task = stack.pop();
+            @SuppressWarnings("unchecked")
+            Tree.PositionedNode<T> from = (Tree.PositionedNode<T>) task[0];
+            @SuppressWarnings("unchecked")
+            Tree.PositionedNode<T> to = (Tree.PositionedNode<T>) task[1];
+            for (int i = from.children.size() - 1; i >= 0; i--) {
+                Tree.PositionedNode<T> child = from.children.get(i);
+                Tree.PositionedNode<T> c = new Tree.PositionedNode<>(child.label, new ArrayList<>(), child.edgeLabels, null, -child.position);
+                to.children.add(c);
+                stack.push(new Object[]{child, c});
+            }
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Tree.Node<T>[] pair(Tree.Node<T> a, Tree.Node<T> b) {
+        return (Tree.Node<T>[]) new Tree.Node<?>[]{a, b};
+    }
+
+    /**
+     * Recursive layout of design() with the list based {@link Tree.Extent}, as it was before the array extents,
+     * which the faster layouts must reproduce exactly. Limited to trees of a few thousand levels.
+     */
+    static <T> Tree.PositionedNode<T> referenceDesign(Tree.Node<T> root) {
+        return referenceDesign_(root).left();
+    }
+
+    private static <T> Tree.Pair<Tree.PositionedNode<T>, Tree.Extent> referenceDesign_(Tree.Node<T> node) {
+        List<Tree.PositionedNode<T>> subtrees = new ArrayList<>();
+        List<Tree.Extent> subtreeExtents = new ArrayList<>();
+        for (Tree.Node<T> child : node.visibleChildren()) {
+            Tree.Pair<Tree.PositionedNode<T>, Tree.Extent> res = referenceDesign_(child);
+            subtrees.add(res.left());
+            subtreeExtents.add(res.right());
+        }
+        List<Double> positions = Tree.Extent.fitList(subtreeExtents);
+        List<Tree.PositionedNode<T>> subtreesMoved = new ArrayList<>();
+        List<Tree.Extent> extentsMoved = new ArrayList<>();
+        for (int i = 0; i < subtrees.size(); i++) {
+            Tree.PositionedNode<T> child = subtrees.get(i);
+            child.position += positions.get(i);
+            subtreesMoved.add(child);
+            extentsMoved.add(subtreeExtents.get(i).move(positions.get(i)));
+        }
+        Tree.Extent extent = Tree.Extent.merge(extentsMoved);
+        extent.addFirst(0, 0);
+        return new Tree.Pair<>(Tree.PositionedNode.of(node, subtreesMoved), extent);
+    }
+
+    /**
+     * Random recursive tree: every node is attached to a uniformly chosen previous node
+     */
+    static Tree.Node<String> randomTree(int size, Random random) {
+        List<Tree.Node<String>> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Tree.Node<String> node = new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null, Connector.NodeStatus.BRANCH);
+            if (i > 0) {
+                Tree.Node<String> parent = nodes.get(random.nextInt(i));
+                parent.edgeLabels.add("x = " + parent.children.size());
+                parent.children.add(node);
+            }
+            nodes.add(node);
+        }
+        return nodes.get(0);
+    }
+
+    /**
+     * Root with size - 1 leaves
+     */
+    static Tree.Node<String> wideTree(int size) {
+        List<Tree.Node<String>> children = new ArrayList<>(size);
+        List<String> labels = new ArrayList<>(size);
+        for (int i = 1; i < size; i++) {
+            children.add(new Tree.Node<>("leaf" + i, new ArrayList<>(), new ArrayList<>(), null, Connector.NodeStatus.FAILED));
+            labels.add("x = " + i);
+        }
+        return new Tree.Node<>("root", children, labels, null, Connector.NodeStatus.BRANCH);
+    }
+}
@@ -0,0 +1,242 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * An index updated after every incremental layout must be the index of the whole tree,
+ * and the node found at a point must be the closest one
+ */
+class LayoutIndexTest {
+
+    private static Tree.Node<String> node(int i, Random random) {
+        Connector.NodeStatus[] statuses = Connector.NodeStatus.values();
+        return new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null, statuses[random.nextInt(statuses.length)]);
+    }
+
+    private static void assertSameIndex(LayoutIndex expected, LayoutIndex actual) {
+        assertEquals(expected.size(), actual.size(), "size");
+        assertEquals(expected.depth(), actual.depth(), "depth");
+        assertEquals(expected.minX(), actual.minX(), "min x");
+        assertEquals(expected.maxX(), actual.maxX(), "max x");
+        for (int d = 0; d < expected.depth(); d++) {
+            assertEquals(expected.size(d), actual.size(d), "size of level " + d);
+            for (int i = 0; i < expected.size(d); i++) {
+                String at = " of node " + i + " of level " + d;
+                assertSame(expected.node(d, i), actual.node(d, i), "node" + at);
+                assertEquals(expected.x(d, i), actual.x(d, i), "x" + at);
+                assertEquals(expected.parent(d, i), actual.parent(d, i), "parent" + at);
+                assertEquals(expected.childStart(d, i), actual.childStart(d, i), "first child" + at);
+                assertEquals(expected.childEnd(d, i), actual.childEnd(d, i), "last child" + at);
+                assertEquals(expected.collapsed(d, i), actual.collapsed(d, i), "collapsed" + at);
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(expected.leaves(d, 0, i + 1, c), actual.leaves(d, 0, i + 1, c), "leaves" + at);
+                }
+            }
+        }
+    }
+
+    /**
+     * Assert that the nodes that were added, moved, or whose children changed are in the changed rectangle, before and after
+     */
+    private static void assertChangesWithin(double[] box, LayoutIndex index, Map<Tree.PositionedNode<?>, Double> before,
+                                            List<? extends Tree.PositionedNode<?>> changed) {
+        Set<Tree.PositionedNode<?>> changedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        changedSet.addAll(changed);
+        for (int d = 0; d < index.depth(); d++) {
+            for (int i = 0; i < index.size(d); i++) {
+                Tree.PositionedNode<?> node = index.node(d, i);
+                Double old = before.get(node);
+                if (old == null || old != index.x(d, i) || changedSet.contains(node)) {
+                    for (double x : old == null ? new double[]{index.x(d, i)} : new double[]{old, index.x(d, i)}) {
+                        assertTrue(box[0] <= x && x <= box[2] && box[1] <= d && d <= box[3],
+                                "node at " + x + " of level " + d + " outside of " + Arrays.toString(box));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Grow a tree with an incremental layout, choosing the parents of the new nodes, and check the index after every batch
+     */
+    private static void grow(Random random, int[] batches, boolean depthFirst) {
+        Tree.Node<String> root = node(0, random);
+        List<Tree.Node<String>> nodes = new ArrayList<>(List.of(root));
+        IncrementalLayout<String> layout = new IncrementalLayout<>(root);
+        LayoutIndex index = new LayoutIndex(layout.root());
+        for (int batch : batches) {
+            for (int i = 0; i < batch; i++) {
+                // depth first: mostly below the last nodes, as a solver does
+                int p = depthFirst ? Math.max(0, nodes.size() - 1 - random.nextInt(Math.min(nodes.size(), 8))) : random.nextInt(nodes.size());
+                Tree.Node<String> parent = nodes.get(p);
+                Tree.Node<String> child = node(nodes.size(), random);
+                layout.addChild(parent, child, "x = " + parent.children.size());
+                nodes.add(child);
+            }
+            Map<Tree.PositionedNode<?>, Double> before = new IdentityHashMap<>();
+            for (int d = 0; d < index.depth(); d++) {
+                for (int i = 0; i < index.size(d); i++) {
+                    before.put(index.node(d, i), index.x(d, i));
+                }
+            }
+            Tree.PositionedNode<String> positioned = layout.update();
+            double[] box = index.update(positioned, layout.changed());
+            assertNotNull(box);
+            assertTrue(box.length == 4, "the index could not be updated");
+            assertSameIndex(new LayoutIndex(positioned), index);
+            assertChangesWithin(box, index, before, layout.changed());
+        }
+        assertSamePositions(root.design(), layout.root());
+    }
+
+    @Test
+    void randomGrowth() {
+        Random random = new Random(1);
+        for (int run = 0; run < 5; run++) {
+            grow(random, new int[]{1, 1, 1, 3, 10, 50, 200, 1_000, 1, 2, 3_000}, false);
+        }
+    }
+
+    @Test
+    void depthFirstGrowth() {
+        Random random = new Random(2);
+        for (int run = 0; run < 5; run++) {
+            grow(random, new int[]{1, 2, 3, 5, 8, 13, 100, 1, 1, 500, 2_000}, true);
+        }
+    }
+
+    @Test
+    void singleNodes() {
+        int[] ones = new int[300];
+        Arrays.fill(ones, 1);
+        grow(new Random(4), ones, true);
+        grow(new Random(5), ones, false);
+    }
+
+    @Test
+    void nothingChanged() {
+        IncrementalLayout<String> layout = new IncrementalLayout<>(randomTree(100, new Random(6)));
+        LayoutIndex index = new LayoutIndex(layout.update());
+        assertNull(index.update(layout.update(), layout.changed()));
+    }
+
+    @Test
+    void collapsedNodesAreIndexedAgain() {
+        Tree.Node<String> root = randomTree(1_000, new Random(7));
+        IncrementalLayout<String> layout = new IncrementalLayout<>(root);
+        LayoutIndex index = new LayoutIndex(layout.root());
+        int size = index.size();
+        layout.collapse(root.children.get(0));
+        double[] box = index.update(layout.update(), layout.changed());
+        assertEquals(0, box.length);
+        assertEquals(size, index.size()); // left as it was
+    }
+
+    @Test
+    void otherTree() {
+        LayoutIndex index = new LayoutIndex(randomTree(10, new Random(8)).design());
+        Tree.PositionedNode<String> other = randomTree(10, new Random(8)).design();
+        assertEquals(0, index.update(other, List.of(other)).length);
+    }
+
+    /**
+     * Closest node of a level going over all of them, the right one of two at the same distance
+     */
+    private static int nearest(LayoutIndex index, int depth, double x) {
+        int best = -1;
+        for (int i = 0; i < index.size(depth); i++) {
+            if (best < 0 || Math.abs(index.x(depth, i) - x) <= Math.abs(index.x(depth, best) - x)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void nearestNode() {
+        Random random = new Random(9);
+        for (Tree.Node<String> tree : List.of(randomTree(2_000, random), wideTree(100), Tree.chainTree(50))) {
+            LayoutIndex index = new LayoutIndex(tree.design());
+            for (int d = 0; d < index.depth(); d++) {
+                int n = index.size(d);
+                List<Double> xs = new ArrayList<>(List.of(index.minX() - 100, index.maxX() + 100, index.x(d, 0) - 0.5,
+                        index.x(d, n - 1) + 0.5, random.nextDouble() * (index.maxX() - index.minX()) + index.minX()));
+                for (int i = 0; i < n; i++) {
+                    xs.add(index.x(d, i));
+                    if (i > 0) {
+                        // between two siblings or cousins, at the middle and on both sides of it
+                        double middle = (index.x(d, i - 1) + index.x(d, i)) / 2;
+                        xs.addAll(List.of(middle, Math.nextDown(middle), Math.nextUp(middle)));
+                    }
+                }
+                for (double x : xs) {
+                    assertEquals(nearest(index, d, x), index.nearest(d, x), "nearest of " + x + " on level " + d);
+                }
+            }
+        }
+    }
+
+    @Test
+    void nodeAtAPoint() {
+        // a root and three children, one of them with a child
+        Tree.Node<String> tree = wideTree(4);
+        tree.children.get(2).children.add(new Tree.Node<>("grandchild", new ArrayList<>(), new ArrayList<>(), null,
+                Connector.NodeStatus.SOLVED));
+        tree.children.get(2).edgeLabels.add("-");
+        LayoutIndex index = new LayoutIndex(tree.design());
+        Tree.PositionedNode<?> root = index.node(0, 0);
+        double tolerance = 4;
+        double rootX = X_OFFSET + index.x(0, 0) * X_SCALE;
+        for (int d = 0; d < index.depth(); d++) {
+            for (int i = 0; i < index.size(d); i++) {
+                assertSame(index.node(d, i), TreeRenderer.nodeAt(index, X_OFFSET + index.x(d, i) * X_SCALE,
+                        Y_OFFSET + d * Y_SCALE, 1, 1, tolerance));
+            }
+        }
+
+        // between the levels, the closest level is the one searched, the lower one at the middle
+        assertSame(root, TreeRenderer.nodeAt(index, rootX, Y_OFFSET + 0.4 * Y_SCALE, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, rootX, Y_OFFSET + 0.45 * Y_SCALE, 1, 1, tolerance));
+        assertSame(index.node(1, 1), TreeRenderer.nodeAt(index, rootX, Y_OFFSET + 0.5 * Y_SCALE, 1, 1, 6));
+        assertSame(root, TreeRenderer.nodeAt(index, rootX, Y_OFFSET + 0.45 * Y_SCALE, 1, 1, 6));
+
+        // between siblings, the closest one, the right one at the middle
+        double left = X_OFFSET + index.x(1, 0) * X_SCALE;
+        double right = X_OFFSET + index.x(1, 1) * X_SCALE;
+        double y = Y_OFFSET + Y_SCALE;
+        double middle = (left + right) / 2;
+        assertSame(index.node(1, 0), TreeRenderer.nodeAt(index, middle - 0.1, y, 1, 1, tolerance));
+        assertSame(index.node(1, 1), TreeRenderer.nodeAt(index, middle, y, 1, 1, tolerance));
+        assertSame(index.node(1, 1), TreeRenderer.nodeAt(index, middle + 0.1, y, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, middle, y, 1, 1, 0.4 * (right - left)));
+        // when zoomed out the tolerance is in pixels, so a larger part of the drawing
+        assertSame(index.node(1, 0), TreeRenderer.nodeAt(index, left - 30, y, 0.1, 0.1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, left - 30, y, 1, 1, tolerance));
+
+        // outside of the tree
+        assertNull(TreeRenderer.nodeAt(index, rootX, Y_OFFSET - Y_SCALE, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, rootX, Y_OFFSET + index.depth() * Y_SCALE, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, rootX, Y_OFFSET + 100 * Y_SCALE, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, X_OFFSET + (index.minX() - 10) * X_SCALE, y, 1, 1, tolerance));
+        assertNull(TreeRenderer.nodeAt(index, X_OFFSET + (index.maxX() + 10) * X_SCALE, y, 1, 1, tolerance));
+        assertSame(index.node(2, 0), TreeRenderer.nodeAt(index, X_OFFSET + (index.maxX() + 10) * X_SCALE,
+                Y_OFFSET + 2 * Y_SCALE, 0.01, 0.01, tolerance));
+    }
+}
@@ -0,0 +1,170 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * A tree received as NODE messages in any order must be laid out in the mapped store exactly as design()
+ */
+class MappedTreeStoreTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * NODE messages of a tree, as {id, pid, alt, kids, status}, with the ids of {@link TreeStore#of(Tree.Node)}
+     */
+    private static List<int[]> messages(Tree.Node<String> tree) {
+        TreeStore store = TreeStore.of(tree);
+        List<int[]> res = new ArrayList<>();
+        for (int id = 0; id < store.size(); id++) {
+            int alt = 0;
+            if (store.parent(id) != NodeStore.NONE) {
+                for (int c = store.firstChild(store.parent(id)); c != id; c = store.nextSibling(c)) {
+                    alt++;
+                }
+            }
+            res.add(new int[]{id, store.parent(id), alt, store.childCount(id), store.status(id)});
+        }
+        return res;
+    }
+
+    private static void add(MappedTreeStore store, List<int[]> messages) {
+        for (int[] m : messages) {
+            store.addNode(m[0], m[1], m[2], m[3], m[4]);
+        }
+    }
+
+    @Test
+    void layoutIsDesign() throws IOException {
+        int i = 0;
+        for (Tree.Node<String> tree : List.of(randomTree(10_000, new Random(1)), NQueens.nQueensTree(6),
+                Tree.chainTree(5_000), wideTree(5_000))) {
+            try (MappedTreeStore store = new MappedTreeStore(dir.resolve("tree" + i++))) {
+                add(store, messages(tree));
+                store.layout(0);
+                assertSamePositions(tree.design(), store, 0);
+            }
+        }
+    }
+
+    @Test
+    void nodesInAnyOrder() throws IOException {
+        Random random = new Random(2);
+        for (int run = 0; run < 5; run++) {
+            Tree.Node<String> tree = randomTree(5_000, random);
+            List<int[]> messages = messages(tree);
+            Collections.shuffle(messages, random);
+            messages.add(messages.get(random.nextInt(messages.size()))); // sent twice
+            try (MappedTreeStore store = new MappedTreeStore(dir.resolve("shuffled" + run))) {
+                add(store, messages);
+                assertEquals(0, store.orphans());
+                store.layout(0);
+                assertSamePositions(tree.design(), store, 0);
+            }
+        }
+    }
+
+    @Test
+    void orphansWaitForTheirParent() throws IOException {
+        try (MappedTreeStore store = new MappedTreeStore(dir.resolve("orphans"))) {
+            store.addNode(3, 1, 0, 0, Connector.NodeStatus.FAILED.getNumber());
+            store.addNode(2, 1, 1, 0, Connector.NodeStatus.SOLVED.getNumber());
+            store.addNode(1, 0, 0, 2, Connector.NodeStatus.BRANCH.getNumber());
+            assertFalse(store.contains(1));
+            assertEquals(3, store.orphans());
+            store.addNode(0, NodeStore.NONE, 0, 1, Connector.NodeStatus.BRANCH.getNumber());
+            assertEquals(0, store.orphans());
+            assertEquals(1, store.firstChild(0));
+            assertEquals(3, store.firstChild(1));
+            assertEquals(2, store.nextSibling(3));
+            assertEquals(2, store.depth(2));
+        }
+    }
+
+    @Test
+    void orphansAreKeptInTheFile() throws IOException {
+        // every node before its parent, the store being reopened halfway
+        Tree.Node<String> tree = randomTree(20_000, new Random(3));
+        List<int[]> messages = messages(tree);
+        Collections.reverse(messages);
+        messages.add(1, messages.get(0)); // an orphan sent twice
+        Path file = dir.resolve("reversed");
+        int half = messages.size() / 2;
+        try (MappedTreeStore store = new MappedTreeStore(file)) {
+            add(store, messages.subList(0, half));
+            assertEquals(half - 1, store.orphans());
+            assertEquals(0, store.size());
+        }
+        try (MappedTreeStore store = new MappedTreeStore(file)) {
+            assertEquals(half - 1, store.orphans());
+            add(store, messages.subList(half, messages.size()));
+            assertEquals(0, store.orphans());
+            assertEquals(20_000, store.size());
+            store.layout(0);
+            assertSamePositions(tree.design(), store, 0);
+        }
+    }
+
+    @Test
+    void longChainInReverse() throws IOException {
+        int n = 200_000;
+        try (MappedTreeStore store = new MappedTreeStore(dir.resolve("chain"))) {
+            for (int id = n - 1; id > 0; id--) {
+                store.addNode(id, id - 1, 0, id == n - 1 ? 0 : 1, Connector.NodeStatus.BRANCH.getNumber());
+            }
+            assertEquals(n - 1, store.orphans());
+            store.addNode(0, NodeStore.NONE, 0, 1, Connector.NodeStatus.BRANCH.getNumber());
+            assertEquals(0, store.orphans());
+            assertEquals(n, store.size());
+            assertEquals(n - 1, store.depth(n - 1));
+            assertEquals(n - 2, store.parent(n - 1));
+            assertEquals(NodeStore.NONE, store.firstChild(n - 1));
+        }
+    }
+
+    @Test
+    void unknownStatus() throws IOException {
+        try (MappedTreeStore store = new MappedTreeStore(dir.resolve("status"))) {
+            store.addNode(0, NodeStore.NONE, 0, 0, NodeStore.NONE);
+            assertEquals(NodeStore.NONE, store.status(0));
+        }
+    }
+
+    @Test
+    void fileGrowsWithTheIds() throws IOException {
+        Path file = dir.resolve("sparse");
+        try (MappedTreeStore store = new MappedTreeStore(file)) {
+            store.addNode(0, NodeStore.NONE, 0, 1, Connector.NodeStatus.BRANCH.getNumber());
+            assertTrue(Files.size(file) < 1 << 20, "file of " + Files.size(file) + " bytes for one node");
+            // ids far from each other, in several chunks
+            int far = 3_000_000;
+            store.addNode(far, 0, 0, 0, Connector.NodeStatus.FAILED.getNumber());
+            store.addNode(10_000, 0, 1, 0, Connector.NodeStatus.SOLVED.getNumber());
+            assertEquals(far + 1, store.size());
+            assertEquals(far, store.firstChild(0));
+            assertEquals(10_000, store.nextSibling(far));
+            assertEquals(Connector.NodeStatus.SOLVED.getNumber(), store.status(10_000));
+        }
+        try (MappedTreeStore store = new MappedTreeStore(file)) {
+            assertEquals(3_000_001, store.size());
+            assertTrue(store.contains(10_000));
+            assertFalse(store.contains(10_001));
+            assertEquals(10_000, store.nextSibling(3_000_000));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * Sharing the layout of identical shapes, with any capacity of the shape table, must give exactly the positions of design()
+ */
+class MemoizedLayoutTest {
+
+    private static final int[] CAPACITIES = {MemoizedLayout.DEFAULT_CAPACITY, 64, 2, 1, 0};
+
+    private static Tree.Node<String> node(String label, List<Tree.Node<String>> children) {
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            edges.add("x = " + i);
+        }
+        return new Tree.Node<>(label, new ArrayList<>(children), edges, null, Connector.NodeStatus.BRANCH);
+    }
+
+    /**
+     * Complete tree where every inner node has the given number of children
+     */
+    private static Tree.Node<String> complete(int arity, int depth) {
+        List<Tree.Node<String>> children = new ArrayList<>();
+        if (depth > 0) {
+            for (int i = 0; i < arity; i++) {
+                children.add(complete(arity, depth - 1));
+            }
+        }
+        return node("complete", children);
+    }
+
+    private static void assertAsDesign(Tree.Node<String> tree) {
+        Tree.PositionedNode<String> expected = copy(tree).design();
+        for (int capacity : CAPACITIES) {
+            assertSamePositions(expected, copy(tree).design(new MemoizedLayout(capacity)));
+        }
+    }
+
+    @Test
+    void symmetricTrees() {
+        assertAsDesign(complete(2, 10));
+        assertAsDesign(complete(3, 6));
+        assertAsDesign(NQueens.nQueensTree(6));
+        assertAsDesign(Tree.chainTree(300));
+        assertAsDesign(wideTree(300));
+    }
+
+    @Test
+    void randomTrees() {
+        Random random = new Random(3);
+        for (int run = 0; run < 20; run++) {
+            Tree.Node<String> tree = randomTree(1 + random.nextInt(2_000), random);
+            assertAsDesign(tree);
+            for (Tree.Node<String> child : tree.children) {
+                if (random.nextBoolean() && !child.children.isEmpty()) {
+                    child.collapse();
+                }
+            }
+            assertAsDesign(tree);
+        }
+    }
+
+    @Test
+    void shapesSeenAgainAfterEviction() {
+        // the same shapes on both sides of many distinct ones, which evict them from a small table,
+        // then as children of a shape whose children were evicted
+        Random random = new Random(4);
+        List<Tree.Node<String>> middle = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            middle.add(randomTree(50, random));
+        }
+        Tree.Node<String> tree = node("root", List.of(
+                complete(2, 4),
+                node("collapsed", List.of(complete(3, 2))),
+                node("middle", middle),
+                complete(2, 4),
+                node("pair", List.of(complete(2, 4), complete(3, 2))),
+                node("pair", List.of(complete(2, 4), complete(3, 2)))));
+        tree.children.get(1).collapse();
+        assertAsDesign(tree);
+    }
+}
@@ -0,0 +1,151 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Messages encoded in a buffer must have the bytes of the protocol, whatever the buffer and the previous messages
+ */
+class MessageTest {
+
+    private static final String[] STRINGS = {"-", "x = 1", "", "y != 2 /\\ z < 3", "é ∀ 😀", "\uD800 lone", "a".repeat(500)};
+
+    private static String string(Random random) {
+        return STRINGS[random.nextInt(STRINGS.length)];
+    }
+
+    private static Message randomMessage(Message msg, Random random) {
+        msg.clear();
+        Message.MsgType type = Message.MsgType.values()[random.nextInt(Message.MsgType.values().length)];
+        msg.setType(type).setRestartId(random.nextInt(3)).setThreadId(random.nextInt(3) - 1);
+        if (type == Message.MsgType.START) {
+            msg.setLabel(string(random));
+        } else if (type == Message.MsgType.NODE) {
+            msg.setNodeId(random.nextInt()).setNodePid(random.nextInt()).setNodeAlt(random.nextInt(10))
+                    .setNodeChildren(random.nextInt(10)).setNoteStatus(random.nextInt(5))
+                    .setNodeLabel(string(random)).setNodeNoGood(string(random)).setNodeInfo(string(random));
+        }
+        return msg;
+    }
+
+    @Test
+    void bytesOfTheProtocol() throws IOException {
+        Message msg = new Message(null).setType(Message.MsgType.NODE).setNodeId(7).setNodePid(3).setRestartId(1)
+                .setThreadId(2).setNodeAlt(1).setNodeChildren(4).setNoteStatus(Connector.NodeStatus.BRANCH.getNumber())
+                .setNodeLabel("x = 1").setNodeNoGood("x = 1 /\\ y = 2").setNodeInfo("é");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(Message.MsgType.NODE.getNumber());
+        for (int i : new int[]{7, 1, 2, 3, 1, 2, 1, 4}) {
+            out.writeInt(i);
+        }
+        out.writeByte(Connector.NodeStatus.BRANCH.getNumber());
+        String[] options = {"x = 1", "x = 1 /\\ y = 2", "{\"name\": \"é\"}"}; // label, nogood and info
+        for (int type = 0; type < options.length; type++) {
+            byte[] data = options[type].getBytes(StandardCharsets.UTF_8);
+            out.writeByte(type);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        assertArrayEquals(bytes.toByteArray(), msg.toBytes());
+
+        assertArrayEquals(new byte[]{(byte) Message.MsgType.DONE.getNumber()}, new Message(null).setType(Message.MsgType.DONE).toBytes());
+        assertArrayEquals(new byte[]{(byte) Message.MsgType.RESTART.getNumber()}, new Message(null).setType(Message.MsgType.RESTART).toBytes());
+        byte[] start = new Message(null).setType(Message.MsgType.START).setLabel("model").toBytes();
+        byte[] info = "{\"name\": \"model\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Message.MsgType.START.getNumber(), start[0]);
+        assertEquals(Message.OptionalArgs.INFO.getNumber(), start[1]);
+        assertEquals(info.length, ByteBuffer.wrap(start, 2, 4).getInt());
+        assertArrayEquals(info, Arrays.copyOfRange(start, 6, start.length));
+    }
+
+    @Test
+    void sizePrefixAndBufferOrder() {
+        Random random = new Random(1);
+        Message msg = new Message(null);
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(order);
+            for (int i = 0; i < 1_000; i++) {
+                buffer.clear();
+                buffer.position(random.nextInt(10));
+                int start = buffer.position();
+                randomMessage(msg, random);
+                int size = msg.encode(buffer);
+                assertSame(order, buffer.order());
+                assertEquals(start + size, buffer.position());
+                assertEquals(size - 4, Integer.reverseBytes(buffer.order(ByteOrder.BIG_ENDIAN).getInt(start)));
+                buffer.order(order);
+            }
+        }
+    }
+
+    @Test
+    void reusedMessageAsANewOne() throws IOException {
+        Random random = new Random(2);
+        Message reused = new Message(null);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (int i = 0; i < 2_000; i++) {
+            long seed = random.nextLong();
+            buffer.clear();
+            int size = randomMessage(reused, new Random(seed)).encode(buffer);
+            byte[] fresh = randomMessage(new Message(null), new Random(seed)).toBytes();
+            assertArrayEquals(fresh, Arrays.copyOfRange(buffer.array(), 4, size));
+        }
+    }
+
+    @Test
+    void overflowLeavesTheBuffer() throws IOException {
+        Message msg = new Message(null).setType(Message.MsgType.NODE).setNodeId(1).setNodeLabel("x = " + "1".repeat(100));
+        byte[] bytes = msg.toBytes();
+        for (int capacity = 0; capacity < bytes.length + 4; capacity++) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity + 3).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(3);
+            assertThrows(BufferOverflowException.class, () -> msg.encode(buffer));
+            assertEquals(3, buffer.position());
+            assertSame(ByteOrder.LITTLE_ENDIAN, buffer.order());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 4);
+        assertEquals(bytes.length + 4, msg.encode(buffer));
+        assertArrayEquals(bytes, Arrays.copyOfRange(buffer.array(), 4, buffer.position()));
+    }
+
+    @Test
+    void decodedAsSent() throws IOException {
+        Random random = new Random(3);
+        Message msg = new Message(null);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        Decoder.Frame frame = new Decoder.Frame();
+        for (int i = 0; i < 1_000; i++) {
+            int id = random.nextInt(), pid = random.nextInt(), alt = random.nextInt(5), kids = random.nextInt(5);
+            String label = "x = " + random.nextInt(100);
+            msg.clear();
+            msg.setType(Message.MsgType.NODE).setNodeId(id).setNodePid(pid).setNodeAlt(alt).setNodeChildren(kids)
+                    .setNoteStatus(i % 4).setRestartId(i % 3).setThreadId(i % 5 - 1).setNodeLabel(label);
+            buffer.clear();
+            int size = msg.encode(buffer);
+            frame.wrap(buffer, 4, size - 4);
+            assertEquals(id, frame.nodeId());
+            assertEquals(pid, frame.nodePid());
+            assertEquals(alt, frame.nodeAlt());
+            assertEquals(kids, frame.nodeChildren());
+            assertEquals(i % 4, frame.nodeStatus());
+            assertEquals(i % 3, frame.nodeRestartId());
+            assertEquals(i % 5 - 1, frame.nodeThreadId());
+            assertEquals(label, frame.nodeLabel());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * The parallel layout must give exactly the positions of design()
+ */
+class ParallelLayoutTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
+    private static void assertSameAsDesign(Tree.Node<String> tree) {
+        Tree.PositionedNode<String> expected = tree.design();
+        for (int threshold : new int[]{1, 16, 256, ParallelLayout.DEFAULT_THRESHOLD}) {
+            assertSamePositions(expected, tree.design(new ParallelLayout(POOL, threshold)));
+        }
+    }
+
+    @Test
+    void randomTrees() {
+        Random random = new Random(42);
+        for (int run = 0; run < 10; run++) {
+            assertSameAsDesign(randomTree(1 + random.nextInt(20_000), random));
+        }
+    }
+
+    @Test
+    void manyLargeSiblings() {
+        // large and small subtrees mixed under the same nodes
+        Random random = new Random(3);
+        List<Tree.Node<String>> children = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            children.add(i % 3 == 0 ? wideTree(3) : randomTree(500 + random.nextInt(2000), random));
+            labels.add("x = " + i);
+        }
+        assertSameAsDesign(new Tree.Node<>("root", children, labels, null));
+    }
+
+    @Test
+    void nQueensChainAndWide() {
+        assertSameAsDesign(NQueens.nQueensTree(8));
+        assertSameAsDesign(Tree.chainTree(50_000));
+        assertSameAsDesign(wideTree(50_000));
+    }
+
+    @Test
+    void collapsedNodes() {
+        Tree.Node<String> tree = randomTree(20_000, new Random(5));
+        tree.children.get(0).collapse();
+        assertSameAsDesign(tree);
+    }
+}
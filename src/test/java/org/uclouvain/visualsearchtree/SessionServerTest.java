@@ -0,0 +1,151 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sessions must get the messages of their connections, START included, and a broken connection must not stop the others
+ */
+class SessionServerTest {
+
+    private static final int NODE = Message.MsgType.NODE.getNumber();
+
+    // types of the messages received by each session, a node being its id
+    private final Map<SessionServer.Session, List<String>> received = new ConcurrentHashMap<>();
+
+    private SessionServer server(int reactors) throws IOException {
+        return new SessionServer(0, reactors, session -> {
+            List<String> messages = Collections.synchronizedList(new ArrayList<>());
+            received.put(session, messages);
+            return frame -> {
+                if (frame.msgType() == NODE && frame.nodeId() < 0) {
+                    throw new IllegalStateException("node " + frame.nodeId());
+                }
+                messages.add(frame.msgType() == NODE ? String.valueOf(frame.nodeId()) : Message.MsgType.values()[frame.msgType()].name());
+            };
+        }).start();
+    }
+
+    private static byte[] frames(Message... messages) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (Message msg : messages) {
+            msg.encode(buffer);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static Message node(int id, int restartId, int threadId) {
+        return new Message(null).setType(Message.MsgType.NODE).setNodeId(id).setNodePid(id - 1)
+                .setRestartId(restartId).setThreadId(threadId);
+    }
+
+    private static Message message(Message.MsgType type) {
+        return new Message(null).setType(type);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private List<String> received(int restartId, int threadId) throws InterruptedException {
+        SessionServer.Session session = new SessionServer.Session(restartId, threadId);
+        await(() -> received.containsKey(session));
+        return received.get(session);
+    }
+
+    @Test
+    void startGoesToTheSessionsOfItsConnection() throws Exception {
+        try (SessionServer server = server(1); Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(frames(message(Message.MsgType.START).setLabel("model"), node(0, 0, 1), node(1, 0, 1)));
+            out.flush();
+            List<String> first = received(0, 1);
+            await(() -> first.size() == 3);
+            assertEquals(List.of("START", "0", "1"), first);
+
+            // the session of a restart gets the START too, and the RESTART, which the previous one does not get
+            out.write(frames(message(Message.MsgType.RESTART), node(0, 1, 1), message(Message.MsgType.DONE)));
+            out.flush();
+            await(() -> server.connections() == 0);
+            assertEquals(List.of("START", "0", "1", "DONE"), first);
+            assertEquals(List.of("START", "RESTART", "0", "DONE"), received(1, 1));
+        }
+    }
+
+    @Test
+    void brokenConnectionsAreClosedAlone() throws Exception {
+        try (SessionServer server = server(1);
+             Socket good = new Socket("localhost", server.getPort());
+             Socket badSize = new Socket("localhost", server.getPort());
+             Socket failingHandler = new Socket("localhost", server.getPort())) {
+            good.getOutputStream().write(frames(node(0, 0, 0)));
+            await(() -> server.connections() == 3);
+
+            badSize.getOutputStream().write(new byte[]{-1, -1, -1, -1, (byte) NODE});
+            failingHandler.getOutputStream().write(frames(node(-5, 0, 2)));
+            await(() -> server.connections() == 1);
+            assertEquals(-1, badSize.getInputStream().read());
+            assertEquals(-1, failingHandler.getInputStream().read());
+
+            good.getOutputStream().write(frames(node(1, 0, 0), message(Message.MsgType.DONE)));
+            await(() -> server.connections() == 0);
+            assertEquals(List.of("0", "1", "DONE"), received(0, 0));
+        }
+    }
+
+    @Test
+    void messagesBeforeAnyNode() throws Exception {
+        try (SessionServer server = server(2); Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(frames(message(Message.MsgType.START), message(Message.MsgType.RESTART)));
+            out.flush();
+            Thread.sleep(100);
+            assertTrue(received.isEmpty());
+            out.write(frames(node(0, 3, 4), message(Message.MsgType.DONE)));
+            await(() -> server.connections() == 0);
+            assertEquals(List.of("START", "RESTART", "0", "DONE"), received(3, 4));
+        }
+    }
+
+    @Test
+    void restartsKeptInLiveTrees() throws Exception {
+        Map<SessionServer.Session, LiveTree> trees = new ConcurrentHashMap<>();
+        try (SessionServer server = new SessionServer(0, 1, session -> {
+            LiveTree live = new LiveTree(null).setFrameBudget(Long.MAX_VALUE);
+            trees.put(session, live);
+            return live.frames();
+        }).start(); Socket socket = new Socket("localhost", server.getPort())) {
+            socket.getOutputStream().write(frames(message(Message.MsgType.START).setLabel("model"),
+                    node(0, 0, 1), node(1, 0, 1),
+                    message(Message.MsgType.RESTART), node(0, 1, 1), node(1, 1, 1), node(2, 1, 1),
+                    message(Message.MsgType.DONE)));
+            await(() -> trees.size() == 2 && server.connections() == 0);
+        }
+        LiveTree first = trees.get(new SessionServer.Session(0, 1));
+        LiveTree second = trees.get(new SessionServer.Session(1, 1));
+        first.applyQueued();
+        second.applyQueued();
+        assertEquals(2, first.size());
+        assertEquals(3, second.size());
+        assertEquals(2, first.getStats().size(first.statsId(1, 0)));
+        assertEquals(3, second.getStats().size(second.statsId(1, 0)));
+    }
+}
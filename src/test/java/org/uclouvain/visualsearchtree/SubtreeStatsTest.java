@@ -0,0 +1,180 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The counters of every subtree must be those counted again from the nodes, whatever their ids and arrival order
+ */
+class SubtreeStatsTest {
+
+    private static final Connector.NodeStatus[] STATUSES = Connector.NodeStatus.values();
+
+    /**
+     * Random tree of nodes 0 to size - 1, each one after its parent, with random statuses
+     */
+    private static final class RandomTree {
+        final int[] parent;
+        final Connector.NodeStatus[] status;
+        final List<List<Integer>> children = new ArrayList<>();
+
+        RandomTree(int size, Random random) {
+            parent = new int[size];
+            status = new Connector.NodeStatus[size];
+            for (int i = 0; i < size; i++) {
+                parent[i] = i == 0 ? SubtreeStats.NONE : random.nextInt(i);
+                status[i] = STATUSES[random.nextInt(STATUSES.length)];
+                children.add(new ArrayList<>());
+                if (i > 0) {
+                    children.get(parent[i]).add(i);
+                }
+            }
+        }
+
+        int depth(int i) {
+            int d = 0;
+            for (int a = parent[i]; a != SubtreeStats.NONE; a = parent[a]) {
+                d++;
+            }
+            return d;
+        }
+
+        /**
+         * size, solutions, failures and max depth of the subtree of a node, counted again
+         */
+        int[] count(int i) {
+            int[] res = {0, 0, 0, 0};
+            List<Integer> stack = new ArrayList<>(List.of(i));
+            while (!stack.isEmpty()) {
+                int n = stack.remove(stack.size() - 1);
+                res[0]++;
+                res[1] += status[n] == Connector.NodeStatus.SOLVED ? 1 : 0;
+                res[2] += status[n] == Connector.NodeStatus.FAILED ? 1 : 0;
+                res[3] = Math.max(res[3], depth(n));
+                stack.addAll(children.get(n));
+            }
+            return res;
+        }
+    }
+
+    private static void assertCounts(RandomTree tree, SubtreeStats stats, int[] ids) {
+        assertEquals(ids.length, stats.count());
+        for (int i = 0; i < ids.length; i++) {
+            int[] expected = tree.count(i);
+            String of = " of node " + i;
+            assertEquals(expected[0], stats.size(ids[i]), "size" + of);
+            assertEquals(expected[1], stats.solutions(ids[i]), "solutions" + of);
+            assertEquals(expected[2], stats.failures(ids[i]), "failures" + of);
+            assertEquals(tree.depth(i), stats.depth(ids[i]), "depth" + of);
+            assertEquals(expected[3], stats.maxDepth(ids[i]), "max depth" + of);
+        }
+    }
+
+    @Test
+    void countedAgain() {
+        Random random = new Random(1);
+        for (int run = 0; run < 20; run++) {
+            RandomTree tree = new RandomTree(1 + random.nextInt(1_000), random);
+            // ids of the protocol, distinct but in any order
+            Set<Integer> used = new HashSet<>();
+            int[] ids = new int[tree.parent.length];
+            for (int i = 0; i < ids.length; i++) {
+                do {
+                    ids[i] = random.nextInt(Integer.MAX_VALUE);
+                } while (!used.add(ids[i]));
+            }
+            SubtreeStats stats = new SubtreeStats();
+            for (int i = 0; i < ids.length; i++) {
+                stats.add(ids[i], i == 0 ? SubtreeStats.NONE : ids[tree.parent[i]], tree.status[i]);
+            }
+            assertCounts(tree, stats, ids);
+        }
+    }
+
+    @Test
+    void rejectedNodes() {
+        SubtreeStats stats = new SubtreeStats();
+        stats.add(10, SubtreeStats.NONE, Connector.NodeStatus.BRANCH);
+        stats.add(11, 10, Connector.NodeStatus.SOLVED);
+        assertThrows(IllegalArgumentException.class, () -> stats.add(11, 10, Connector.NodeStatus.FAILED));
+        assertThrows(IllegalArgumentException.class, () -> stats.add(10, 11, Connector.NodeStatus.FAILED));
+        assertThrows(IllegalArgumentException.class, () -> stats.add(12, 13, Connector.NodeStatus.FAILED));
+        assertThrows(IllegalArgumentException.class, () -> stats.size(12));
+        // nothing changed
+        assertEquals(2, stats.count());
+        assertFalse(stats.contains(12));
+        assertEquals(2, stats.size(10));
+        assertEquals(1, stats.solutions(10));
+        assertEquals(0, stats.failures(10));
+        assertEquals(1, stats.maxDepth(10));
+
+        stats.clear();
+        assertEquals(0, stats.count());
+        assertFalse(stats.contains(10));
+        assertThrows(IllegalArgumentException.class, () -> stats.add(11, 10, Connector.NodeStatus.FAILED));
+        stats.add(11, SubtreeStats.NONE, Connector.NodeStatus.FAILED);
+        assertEquals(1, stats.failures(11));
+        assertEquals(0, stats.depth(11));
+    }
+
+    private static Decoder.DecodedMessage node(int threadId, int id, int pid, Connector.NodeStatus status) {
+        Decoder.DecodedMessage message = new Decoder.DecodedMessage();
+        message.msgType = Message.MsgType.NODE.getNumber();
+        message.nodeThreadId = threadId;
+        message.nodePidThreadId = threadId;
+        message.nodeId = id;
+        message.nodePid = pid;
+        message.nodeStatus = status.getNumber();
+        return message;
+    }
+
+    @Test
+    void statsOfALiveTree() {
+        Random random = new Random(2);
+        RandomTree tree = new RandomTree(2_000, random);
+        int threadId = 3;
+        // the root first, then the other nodes in any order, some sent twice, children before parents included
+        List<Decoder.DecodedMessage> messages = new ArrayList<>();
+        for (int i = 1; i < tree.parent.length; i++) {
+            messages.add(node(threadId, i, tree.parent[i], tree.status[i]));
+            if (random.nextInt(10) == 0) {
+                messages.add(node(threadId, i, tree.parent[i], tree.status[i]));
+            }
+        }
+        Collections.shuffle(messages, random);
+        messages.add(0, node(threadId, 0, -1, tree.status[0]));
+        messages.add(node(threadId, 5_000, 4_000, Connector.NodeStatus.FAILED)); // whose parent never comes
+
+        LiveTree live = new LiveTree(null).setFrameBudget(Long.MAX_VALUE);
+        Decoder.DecodedMessage start = new Decoder.DecodedMessage();
+        start.msgType = Message.MsgType.START.getNumber();
+        live.accept(start);
+        messages.forEach(live);
+        live.applyQueued();
+        assertEquals(tree.parent.length, live.size());
+
+        int[] ids = new int[tree.parent.length];
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = live.statsId(threadId, i);
+            assertNotEquals(SubtreeStats.NONE, ids[i], "node " + i);
+            assertTrue(used.add(ids[i]), "id of node " + i + " given twice");
+        }
+        assertCounts(tree, live.getStats(), ids);
+        assertEquals(SubtreeStats.NONE, live.statsId(threadId, 5_000));
+        assertEquals(SubtreeStats.NONE, live.statsId(threadId + 1, 0));
+        assertEquals(0, live.statsId(threadId, 0));
+    }
+}
@@ -0,0 +1,183 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.randomTree;
+
+/**
+ * A tile must only be kept if no invalidation happened since it was asked for, the last tiles asked for must be
+ * rasterized first, and no tile may be rasterized while the index is being modified
+ */
+class TileCacheTest {
+
+    // hand backs of the finished tiles, run by the test, which plays the JavaFX thread
+    private final BlockingQueue<Runnable> fxThread = new LinkedBlockingQueue<>();
+    private final AtomicInteger onTiles = new AtomicInteger();
+    private TileCache cache;
+
+    @BeforeEach
+    void tree() {
+        cache = new TileCache(TileCache.DEFAULT_CAPACITY, 1, fxThread::add, onTiles::incrementAndGet);
+        cache.setTree(new LayoutIndex(randomTree(200, new Random(1)).design()), 0);
+    }
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    private void deliverNext() throws InterruptedException {
+        Runnable deliver = fxThread.poll(10, TimeUnit.SECONDS);
+        if (deliver == null) {
+            fail("no tile was handed back");
+        }
+        deliver.run();
+    }
+
+    /**
+     * Hand back tiles until the given one is kept
+     */
+    private WritableImage await(TileCache.Key key) throws InterruptedException {
+        while (cache.peek(key) == null) {
+            deliverNext();
+        }
+        return cache.peek(key);
+    }
+
+    /**
+     * Wait until the rasterizer is blocked on the index, i.e. past the check of its request
+     */
+    private static void awaitBlockedRender() throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < end) {
+            for (var thread : Thread.getAllStackTraces().entrySet()) {
+                if (thread.getKey().getState() == Thread.State.WAITING && Arrays.stream(thread.getValue()).anyMatch(frame ->
+                        frame.getClassName().equals(TileCache.class.getName()) && frame.getMethodName().equals("rasterize"))) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+        fail("the rasterizer did not wait for the index");
+    }
+
+    @Test
+    void tilesAreKept() throws InterruptedException {
+        TileCache.Key key = new TileCache.Key(0, 0, 0);
+        assertNull(cache.get(key));
+        assertNull(cache.get(key)); // asked for once
+        WritableImage image = await(key);
+        assertEquals(TileCache.TILE_SIZE, (int) image.getWidth());
+        assertEquals(1, onTiles.get());
+        assertSame(image, cache.get(key));
+        assertTrue(fxThread.isEmpty());
+
+        // only the tiles over the rectangle are forgotten, at every zoom level
+        TileCache.Key right = new TileCache.Key(0, 2, 0);
+        TileCache.Key zoomed = new TileCache.Key(1, 0, 0);
+        cache.get(right);
+        cache.get(zoomed);
+        await(right);
+        await(zoomed);
+        cache.invalidate(0, 0, 10, 10);
+        assertNull(cache.peek(key));
+        assertNull(cache.peek(zoomed));
+        assertNotNull(cache.peek(right));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void invalidatedDuringTheRender() throws InterruptedException {
+        TileCache.Key key = new TileCache.Key(0, 0, 0);
+        TileCache.Key other = new TileCache.Key(0, 5, 0);
+        cache.modify(() -> {
+            cache.get(key);
+            try {
+                awaitBlockedRender();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertTrue(fxThread.isEmpty(), "a tile was rasterized while the index was modified");
+            cache.invalidate(0, 0, 10, 10);
+            return null;
+        });
+        // the stale tile is finished, but dropped
+        deliverNext();
+        assertNull(cache.peek(key));
+        assertEquals(0, cache.size());
+        assertEquals(0, onTiles.get());
+
+        // and asked for again, the new one being kept
+        assertNull(cache.get(key));
+        cache.get(other);
+        WritableImage image = await(key);
+        await(other);
+        assertSame(image, cache.get(key));
+
+        // same with every tile forgotten, the one being rendered included
+        cache.invalidate();
+        cache.modify(() -> {
+            cache.get(key);
+            try {
+                awaitBlockedRender();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            cache.invalidate();
+            return null;
+        });
+        deliverNext();
+        assertNull(cache.peek(key));
+        assertNull(cache.peek(other));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+        assertNotSame(image, await(key));
+    }
+
+    @Test
+    void lastAskedForFirst() throws InterruptedException {
+        cache.shutdown();
+        cache = new TileCache(2, 1, fxThread::add, onTiles::incrementAndGet);
+        cache.setTree(new LayoutIndex(randomTree(200, new Random(2)).design()), 0);
+        TileCache.Key[] keys = new TileCache.Key[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new TileCache.Key(0, i, 0);
+        }
+        // the rasterizer blocked on the first tile while the others are asked for
+        cache.modify(() -> {
+            cache.get(keys[0]);
+            try {
+                awaitBlockedRender();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            for (int i = 1; i < keys.length; i++) {
+                cache.get(keys[i]);
+            }
+            return null;
+        });
+        // rasterized as 0, 3, 2, 1, of which the capacity keeps the last two
+        await(keys[1]);
+        assertNotNull(cache.peek(keys[2]));
+        assertNull(cache.peek(keys[3]));
+        assertNull(cache.peek(keys[0]));
+        assertEquals(2, cache.size());
+    }
+}
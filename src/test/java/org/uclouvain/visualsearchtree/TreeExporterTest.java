@@ -0,0 +1,148 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Exported images must have a node per node of the tree, an edge per child and the colors of {@link TreeVisual}
+ */
+class TreeExporterTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int RED = 0xFFFF0000;
+
+    private static Document parse(byte[] svg) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(svg));
+    }
+
+    private static Document svg(Tree.PositionedNode<String> root) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TreeExporter.svg(root, out);
+        return parse(out.toByteArray());
+    }
+
+    /**
+     * Number of segments of each edge path, in order
+     */
+    private static List<Integer> edgePaths(Document svg) {
+        List<Integer> res = new ArrayList<>();
+        NodeList paths = svg.getElementsByTagName("path");
+        for (int i = 0; i < paths.getLength(); i++) {
+            Element path = (Element) paths.item(i);
+            if (path.getAttribute("stroke").equals("black")) {
+                res.add((int) path.getAttribute("d").chars().filter(c -> c == 'M').count());
+            }
+        }
+        return res;
+    }
+
+    private static int summaries(Document svg) {
+        int res = 0;
+        NodeList groups = svg.getElementsByTagName("g");
+        for (int i = 0; i < groups.getLength(); i++) {
+            Element group = (Element) groups.item(i);
+            if (group.getAttribute("fill").equals("gray")) {
+                res += group.getElementsByTagName("path").getLength();
+            }
+        }
+        return res;
+    }
+
+    @Test
+    void svgOfATree() throws Exception {
+        Random random = new Random(1);
+        Tree.Node<String> tree = randomTree(2_000, random);
+        int collapsed = 0;
+        for (Tree.Node<String> child : tree.children) {
+            if (random.nextBoolean() && !child.children.isEmpty()) {
+                child.collapse();
+                collapsed++;
+            }
+        }
+        Tree.PositionedNode<String> root = tree.design();
+        List<Placed<String>> nodes = placed(root);
+        Document svg = svg(root);
+
+        NodeList uses = svg.getElementsByTagName("use");
+        assertEquals(nodes.size(), uses.getLength());
+        for (int i = 0; i < nodes.size(); i++) {
+            Element use = (Element) uses.item(i);
+            assertEquals(X_OFFSET + nodes.get(i).x() * X_SCALE, Double.parseDouble(use.getAttribute("x")), 0.005, "x of node " + i);
+            assertEquals(Y_OFFSET + nodes.get(i).depth() * Y_SCALE, Double.parseDouble(use.getAttribute("y")), 0.005, "y of node " + i);
+        }
+        assertEquals(List.of(nodes.size() - 1), edgePaths(svg));
+        assertEquals(collapsed, summaries(svg));
+    }
+
+    @Test
+    void svgOfAStore() throws Exception {
+        Tree.Node<String> tree = randomTree(1_000, new Random(2));
+        TreeStore store = TreeStore.of(tree);
+        store.layout();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TreeExporter.svg(store, out);
+        Document svg = parse(out.toByteArray());
+        assertEquals(1_000, svg.getElementsByTagName("use").getLength());
+        assertEquals(List.of(999), edgePaths(svg));
+        assertEquals(0, summaries(svg));
+    }
+
+    @Test
+    void longPathsAreSplit() throws Exception {
+        Document svg = svg(wideTree(25_001).design());
+        assertEquals(List.of(10_000, 10_000, 5_000), edgePaths(svg));
+        assertEquals(25_001, svg.getElementsByTagName("use").getLength());
+
+        svg = svg(wideTree(10_001).design());
+        assertEquals(List.of(10_000), edgePaths(svg));
+        svg = svg(Tree.chainTree(1).design());
+        assertEquals(List.of(), edgePaths(svg));
+        assertEquals(1, svg.getElementsByTagName("use").getLength());
+    }
+
+    @Test
+    void pngPixels() throws Exception {
+        Tree.PositionedNode<String> root = wideTree(3).design();
+        double[] box = TreeRenderer.bounds(new LayoutIndex(root));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TreeExporter.png(root, out);
+        BufferedImage png = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        BufferedImage image = TreeExporter.image(root, TreeExporter.DEFAULT_SIZE, 1);
+        for (BufferedImage img : List.of(png, image)) {
+            // small enough not to be scaled
+            assertEquals((int) Math.ceil(box[2] - box[0]), img.getWidth());
+            assertEquals((int) Math.ceil(box[3] - box[1]), img.getHeight());
+            assertEquals(WHITE, img.getRGB(0, 0));
+            assertEquals(WHITE, img.getRGB(img.getWidth() - 1, img.getHeight() - 1));
+            for (Placed<String> node : placed(root)) {
+                int x = (int) (X_OFFSET + node.x() * X_SCALE - box[0]);
+                int y = (int) (Y_OFFSET + node.depth() * Y_SCALE - box[1]);
+                assertEquals(RED, img.getRGB(x, y), "center of " + node.label());
+            }
+        }
+
+        // scaled down to the size
+        image = TreeExporter.image(randomTree(1_000, new Random(3)).design(), 100, 0);
+        assertEquals(100, Math.max(image.getWidth(), image.getHeight()));
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        assertTrue(Arrays.stream(pixels).anyMatch(p -> p == WHITE));
+        assertTrue(Arrays.stream(pixels).anyMatch(p -> p == RED));
+    }
+}
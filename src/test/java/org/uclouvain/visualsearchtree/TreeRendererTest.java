@@ -0,0 +1,337 @@
+package org.uclouvain.visualsearchtree;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+import static org.uclouvain.visualsearchtree.TreeVisual.*;
+
+/**
+ * Without aggregation, the renderer must give the nodes and edges of the group of {@link TreeVisual}, and only
+ * those near the viewport. With it, the nodes closer than the level of detail must be given as the outlines
+ * of their subtrees.
+ */
+class TreeRendererTest {
+
+    private static final double EPSILON = 1e-9;
+    private static final Comparator<double[]> ORDER = (a, b) -> {
+        for (int i = 0; i < a.length; i++) {
+            int c = Double.compare(a[i], b[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    };
+
+    /**
+     * What a renderer gives, nodes as {x, y, collapsed} and {depth, i}, edges as {x1, y1, x2, y2}
+     * and outlines as their points followed by their category
+     */
+    private static final class Collector implements TreeRenderer.Target {
+        final List<double[]> nodes = new ArrayList<>();
+        final List<int[]> indices = new ArrayList<>();
+        final List<double[]> edges = new ArrayList<>();
+        final List<double[]> outlines = new ArrayList<>();
+
+        @Override
+        public void edge(double x1, double y1, double x2, double y2) {
+            edges.add(new double[]{x1, y1, x2, y2});
+        }
+
+        @Override
+        public void node(int depth, int i, double x, double y, boolean collapsed) {
+            nodes.add(new double[]{x, y, collapsed ? 1 : 0});
+            indices.add(new int[]{depth, i});
+        }
+
+        @Override
+        public void outline(double[] points, int count, int category) {
+            double[] outline = Arrays.copyOf(points, 3 * count + 1);
+            outline[3 * count] = category;
+            outlines.add(outline);
+        }
+    }
+
+    private static void assertSameShapes(List<double[]> expected, List<double[]> actual, String what) {
+        assertEquals(expected.size(), actual.size(), "number of " + what);
+        expected.sort(ORDER);
+        actual.sort(ORDER);
+        for (int i = 0; i < expected.size(); i++) {
+            for (int k = 0; k < expected.get(i).length; k++) {
+                assertEquals(expected.get(i)[k], actual.get(i)[k], EPSILON, what + " " + i);
+            }
+        }
+    }
+
+    private static List<Tree.Node<String>> trees() {
+        Random random = new Random(1);
+        Tree.Node<String> collapsed = randomTree(3_000, random);
+        for (Tree.Node<String> child : collapsed.children) {
+            if (random.nextBoolean() && !child.children.isEmpty()) {
+                child.collapse();
+            }
+        }
+        return List.of(randomTree(5_000, random), NQueens.nQueensTree(6), Tree.chainTree(500), wideTree(500), collapsed);
+    }
+
+    @Test
+    void wholeTreeAsTheGroup() {
+        for (Tree.Node<String> tree : trees()) {
+            Tree.PositionedNode<String> root = tree.design();
+            Group group = new Group();
+            drawTree(group, root);
+            List<double[]> nodes = new ArrayList<>();
+            List<double[]> edges = new ArrayList<>();
+            int summaries = 0;
+            for (Node shape : group.getChildren()) {
+                if (shape instanceof Circle c) {
+                    nodes.add(new double[]{c.getCenterX(), c.getCenterY(), 0});
+                } else if (shape instanceof Line l) {
+                    edges.add(new double[]{l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY()});
+                } else if (shape instanceof Polygon) {
+                    summaries++;
+                }
+            }
+
+            LayoutIndex index = new LayoutIndex(root);
+            double[] bounds = TreeRenderer.bounds(index);
+            Collector collector = new Collector();
+            int drawn = new TreeRenderer(index).render(bounds[0], bounds[1], bounds[2], bounds[3], 1, 1, 0, collector);
+            assertEquals(nodes.size(), drawn);
+            assertEquals(0, collector.outlines.size());
+            assertEquals(summaries, (int) collector.nodes.stream().filter(n -> n[2] == 1).count(), "collapsed nodes");
+            collector.nodes.forEach(n -> n[2] = 0);
+            assertSameShapes(nodes, collector.nodes, "nodes");
+            assertSameShapes(edges, collector.edges, "edges");
+        }
+    }
+
+    @Test
+    void nodesNearTheViewport() {
+        Random random = new Random(2);
+        for (Tree.Node<String> tree : trees()) {
+            LayoutIndex index = new LayoutIndex(tree.design());
+            double[] bounds = TreeRenderer.bounds(index);
+            for (int run = 0; run < 20; run++) {
+                double x1 = bounds[0] + random.nextDouble() * (bounds[2] - bounds[0]);
+                double x2 = bounds[0] + random.nextDouble() * (bounds[2] - bounds[0]);
+                double y1 = bounds[1] + random.nextDouble() * (bounds[3] - bounds[1]);
+                double y2 = bounds[1] + random.nextDouble() * (bounds[3] - bounds[1]);
+                double minX = Math.min(x1, x2), maxX = Math.max(x1, x2), minY = Math.min(y1, y2), maxY = Math.max(y1, y2);
+                Collector collector = new Collector();
+                new TreeRenderer(index).render(minX, minY, maxX, maxY, 1, 1, 0, collector);
+
+                List<double[]> inside = new ArrayList<>();
+                for (int d = 0; d < index.depth(); d++) {
+                    for (int i = 0; i < index.size(d); i++) {
+                        double x = X_OFFSET + index.x(d, i) * X_SCALE;
+                        double y = Y_OFFSET + d * Y_SCALE;
+                        if (minX <= x && x <= maxX && minY <= y && y <= maxY) {
+                            inside.add(new double[]{x, y});
+                        }
+                    }
+                }
+                List<double[]> given = new ArrayList<>();
+                for (double[] n : collector.nodes) {
+                    // a circle crossing the border may be given, as well as the levels next to the viewport
+                    assertTrue(minX - RADIUS - EPSILON <= n[0] && n[0] <= maxX + RADIUS + EPSILON
+                                    && minY - Y_SCALE - RADIUS <= n[1] && n[1] <= maxY + Y_SCALE + RADIUS,
+                            "node at " + n[0] + ", " + n[1] + " far from the viewport");
+                    if (minX <= n[0] && n[0] <= maxX && minY <= n[1] && n[1] <= maxY) {
+                        given.add(new double[]{n[0], n[1]});
+                    }
+                }
+                assertSameShapes(inside, given, "nodes in the viewport");
+            }
+        }
+    }
+
+    /**
+     * Random tree whose nodes have random statuses
+     */
+    private static Tree.Node<String> denseTree(int size, Random random) {
+        Connector.NodeStatus[] statuses = Connector.NodeStatus.values();
+        List<Tree.Node<String>> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Tree.Node<String> node = new Tree.Node<>("Node" + i, new ArrayList<>(), new ArrayList<>(), null,
+                    statuses[random.nextInt(statuses.length)]);
+            if (i > 0) {
+                Tree.Node<String> parent = nodes.get(random.nextInt(i));
+                parent.edgeLabels.add("x = " + parent.children.size());
+                parent.children.add(node);
+            }
+            nodes.add(node);
+        }
+        return nodes.get(0);
+    }
+
+    /**
+     * Outline of the subtrees of nodes of a level, as given by the renderer, the levels closer than a pixel merged
+     */
+    private static double[] outline(List<Tree.PositionedNode<String>> tops, int depth, Map<Tree.PositionedNode<String>, Double> xs,
+                                    Set<Tree.PositionedNode<String>> covered, double scaleY) {
+        List<Double> points = new ArrayList<>();
+        int[] leaves = new int[3];
+        List<Tree.PositionedNode<String>> level = tops;
+        for (int d = depth; !level.isEmpty(); d++) {
+            double y = Y_OFFSET + d * Y_SCALE;
+            double left = X_OFFSET + xs.get(level.get(0)) * X_SCALE;
+            double right = X_OFFSET + xs.get(level.get(level.size() - 1)) * X_SCALE;
+            int n = points.size();
+            if (n >= 6 && (y - points.get(n - 3)) * scaleY < 1) {
+                points.set(n - 3, y);
+                points.set(n - 2, Math.min(left, points.get(n - 2)));
+                points.set(n - 1, Math.max(right, points.get(n - 1)));
+            } else {
+                points.addAll(List.of(y, left, right));
+            }
+            List<Tree.PositionedNode<String>> below = new ArrayList<>();
+            for (Tree.PositionedNode<String> node : level) {
+                covered.add(node);
+                below.addAll(node.children);
+                if (node.children.isEmpty()) {
+                    leaves[node.status == Connector.NodeStatus.SOLVED ? LayoutIndex.SOLVED
+                            : node.status == Connector.NodeStatus.FAILED ? LayoutIndex.FAILED : LayoutIndex.OTHER]++;
+                }
+            }
+            level = below;
+        }
+        int category = LayoutIndex.OTHER;
+        if (leaves[LayoutIndex.FAILED] > leaves[category]) {
+            category = LayoutIndex.FAILED;
+        }
+        if (leaves[LayoutIndex.SOLVED] > leaves[category]) {
+            category = LayoutIndex.SOLVED;
+        }
+        points.add((double) category);
+        return points.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Render the whole tree and compare with the nodes and outlines found level by level from the root, going over
+     * every node of each level: a node not in an outline yet starts one with the next nodes closer than the level
+     * of detail, or is given alone, unless the levels themselves are closer than the level of detail
+     */
+    private static void assertAggregated(Tree.PositionedNode<String> root, double scaleX, double scaleY, double levelOfDetail) {
+        Map<Tree.PositionedNode<String>, Double> xs = new IdentityHashMap<>();
+        List<List<Tree.PositionedNode<String>>> levels = new ArrayList<>();
+        List<Tree.PositionedNode<String>> level = List.of(root);
+        xs.put(root, root.position);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            List<Tree.PositionedNode<String>> below = new ArrayList<>();
+            for (Tree.PositionedNode<String> node : level) {
+                for (Tree.PositionedNode<String> child : node.children) {
+                    xs.put(child, xs.get(node) + child.position);
+                    below.add(child);
+                }
+            }
+            level = below;
+        }
+
+        double gap = levelOfDetail / (scaleX * X_SCALE);
+        boolean denseLevels = Y_SCALE * scaleY < levelOfDetail;
+        Set<Tree.PositionedNode<String>> covered = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Tree.PositionedNode<String>> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<double[]> outlines = new ArrayList<>();
+        for (int d = 0; d < levels.size(); d++) {
+            List<Tree.PositionedNode<String>> nodesOfLevel = levels.get(d);
+            int i = 0;
+            while (i < nodesOfLevel.size()) {
+                if (covered.contains(nodesOfLevel.get(i))) {
+                    i++;
+                    continue;
+                }
+                int j = i + 1;
+                while (j < nodesOfLevel.size() && !covered.contains(nodesOfLevel.get(j))
+                        && xs.get(nodesOfLevel.get(j)) <= xs.get(nodesOfLevel.get(i)) + gap) {
+                    j++;
+                }
+                if (j == i + 1 && !denseLevels) {
+                    nodes.add(nodesOfLevel.get(i));
+                } else {
+                    outlines.add(outline(nodesOfLevel.subList(i, j), d, xs, covered, scaleY));
+                }
+                i = j;
+            }
+        }
+        assertEquals(xs.size(), covered.size() + nodes.size(), "nodes in no outline or in several ones");
+
+        LayoutIndex index = new LayoutIndex(root);
+        double[] bounds = TreeRenderer.bounds(index);
+        Collector collector = new Collector();
+        int drawn = new TreeRenderer(index).render(bounds[0], bounds[1], bounds[2], bounds[3], scaleX, scaleY, levelOfDetail, collector);
+        String at = " at scale " + scaleX + ", " + scaleY + " and level of detail " + levelOfDetail;
+        assertEquals(outlines.size(), collector.outlines.size(), "number of outlines" + at);
+        assertEquals(nodes.size() + outlines.size(), drawn, "nodes and outlines drawn" + at);
+        Set<Tree.PositionedNode<?>> given = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int[] node : collector.indices) {
+            given.add(index.node(node[0], node[1]));
+        }
+        assertEquals(nodes, given, "nodes given alone" + at);
+        assertSameShapes(outlines, collector.outlines, "outlines" + at);
+    }
+
+    @Test
+    void outlinesOfCloseNodes() {
+        Random random = new Random(3);
+        List<Tree.PositionedNode<String>> trees = List.of(denseTree(5_000, random).design(), denseTree(500, random).design(),
+                NQueens.nQueensTree(6).design(), Tree.chainTree(300).design(), wideTree(1_000).design());
+        for (Tree.PositionedNode<String> root : trees) {
+            for (double scaleX : new double[]{1, 0.3, 0.05}) {
+                assertAggregated(root, scaleX, 1, 1);
+                assertAggregated(root, scaleX, 1, 4);
+                // levels closer than the level of detail, then closer than a pixel
+                assertAggregated(root, scaleX, 0.15, 2);
+                assertAggregated(root, scaleX, 0.04, 2);
+            }
+        }
+    }
+
+    @Test
+    void dominantCategory() {
+        // solved, failed and other leaves, then the category of their outline, ties going to failed then other
+        int[][] cases = {{1, 2, 0, LayoutIndex.FAILED}, {2, 1, 0, LayoutIndex.SOLVED}, {1, 1, 0, LayoutIndex.FAILED},
+                {1, 0, 1, LayoutIndex.OTHER}, {0, 1, 1, LayoutIndex.OTHER}, {2, 1, 1, LayoutIndex.SOLVED}};
+        Connector.NodeStatus[] statuses = {Connector.NodeStatus.SOLVED, Connector.NodeStatus.FAILED, Connector.NodeStatus.SKIPPED};
+        for (int[] leaves : cases) {
+            List<Tree.Node<String>> children = new ArrayList<>();
+            for (int category = 0; category < 3; category++) {
+                for (int i = 0; i < leaves[category]; i++) {
+                    children.add(new Tree.Node<>("leaf", new ArrayList<>(), new ArrayList<>(), null, statuses[category]));
+                }
+            }
+            Tree.Node<String> tree = new Tree.Node<>("root", children, new ArrayList<>(Collections.nCopies(children.size(), "-")),
+                    null, Connector.NodeStatus.BRANCH);
+            LayoutIndex index = new LayoutIndex(tree.design());
+            double[] bounds = TreeRenderer.bounds(index);
+            Collector collector = new Collector();
+            // levels far apart, the root given alone and its children in a single outline
+            assertEquals(2, new TreeRenderer(index).render(bounds[0], bounds[1], bounds[2], bounds[3], 1, 20, 100, collector));
+            assertEquals(1, collector.nodes.size());
+            assertEquals(1, collector.outlines.size());
+            double[] outline = collector.outlines.get(0);
+            assertEquals(4, outline.length);
+            assertEquals(Y_OFFSET + Y_SCALE, outline[0]);
+            assertEquals(leaves[3], (int) outline[3], Arrays.toString(leaves));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+/**
+ * The store must lay out a tree exactly as design(), and its views must behave as the copied tree
+ */
+class TreeStoreTest {
+
+    private static List<Tree.Node<String>> trees() {
+        return List.of(randomTree(10_000, new Random(1)), NQueens.nQueensTree(6), Tree.chainTree(5_000), wideTree(5_000));
+    }
+
+    @Test
+    void layoutIsDesign() {
+        for (Tree.Node<String> tree : trees()) {
+            TreeStore store = TreeStore.of(tree);
+            store.layout();
+            assertSamePositions(tree.design(), store, 0);
+        }
+    }
+
+    @Test
+    void layoutOfSubtree() {
+        Tree.Node<String> tree = randomTree(2_000, new Random(2));
+        TreeStore store = TreeStore.of(tree);
+        int child = store.firstChild(0);
+        store.layout(child);
+        assertSamePositions(tree.children.get(0).design(), store, child);
+    }
+
+    @Test
+    void viewsAreLaidOutAsTheTree() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (Tree.Node<String> tree : trees()) {
+                Tree.Node<String> view = TreeStore.of(tree).view(0);
+                Tree.PositionedNode<String> expected = tree.design();
+                assertSamePositions(expected, view.design());
+                assertSamePositions(tree.design(TreeLayout.WALKER), view.design(TreeLayout.WALKER));
+                assertSamePositions(expected, view.design(new ParallelLayout(pool, 16)));
+                assertSamePositions(expected, view.design(new MemoizedLayout()));
+                assertSamePositions(expected, new IncrementalLayout<>(view).root());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void viewsAreKept() {
+        TreeStore store = TreeStore.of(randomTree(1_000, new Random(3)));
+        Tree.Node<String> root = store.view(0);
+        assertSame(root, store.view(0));
+        Tree.Node<String> child = root.children.get(0);
+        assertSame(child, store.view(store.firstChild(0)));
+        assertSame(child, root.children.get(0));
+        assertSame(child, root.children.iterator().next());
+
+        // the collapse flag is kept with the view
+        child.collapse();
+        assertTrue(store.view(store.firstChild(0)).isCollapsed());
+        assertSamePositions(root.design(), root.design(new MemoizedLayout()));
+    }
+
+    @Test
+    void viewsNoLongerUsedAreCollected() throws InterruptedException {
+        TreeStore store = TreeStore.of(randomTree(1_000, new Random(4)));
+        int first = store.firstChild(0);
+        int second = store.nextSibling(first);
+        Tree.Node<String> root = store.view(0);
+        Tree.PositionedNode<String> expected = root.design();
+        root.children.get(0).collapse();
+        store.view(second).collapse();
+        store.view(second).expand();
+        Tree.PositionedNode<String> collapsed = root.design();
+        WeakReference<Tree.Node<String>> dropped = new WeakReference<>(root);
+        root = null;
+        for (int i = 0; i < 100 && dropped.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(dropped.get(), "the store keeps the views");
+
+        // created again with their flags
+        root = store.view(0);
+        assertTrue(root.children.get(0).isCollapsed());
+        assertFalse(store.view(second).isCollapsed());
+        assertSamePositions(collapsed, root.design());
+        store.view(first).expand();
+        assertSamePositions(expected, root.design());
+    }
+
+    @Test
+    void viewsFollowAddedNodes() {
+        TreeStore store = new TreeStore(1);
+        int root = store.addNode(NodeStore.NONE, "root", null, Connector.NodeStatus.BRANCH);
+        Tree.Node<String> view = store.view(root);
+        assertEquals(0, view.children.size());
+        for (int i = 0; i < 100; i++) {
+            int id = store.addNode(root, "leaf" + (i + 1), "x = " + (i + 1), Connector.NodeStatus.FAILED);
+            assertEquals(i + 1, view.children.size());
+            assertSame(store.view(id), view.children.get(i));
+            assertEquals("x = " + (i + 1), view.edgeLabels.get(i));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> view.children.add(view));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.children.get(100));
+        assertSamePositions(wideTree(101).design(), view.design());
+    }
+}
@@ -0,0 +1,66 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Messages must be decoded from the buffer of the channel mode however they arrive, and corrupted sizes rejected
+ */
+class VisualTreeServerTest {
+
+    private static ByteBuffer stream(int nodes) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        Message msg = new Message(null);
+        for (int i = 0; i < nodes; i++) {
+            msg.clear();
+            msg.setType(Message.MsgType.NODE).setNodeId(i).setNodePid(i - 1).setNodeLabel("x = " + i).encode(buffer);
+        }
+        msg.clear();
+        msg.setType(Message.MsgType.DONE).encode(buffer);
+        return buffer.flip();
+    }
+
+    @Test
+    void messagesArrivingByteByByte() throws ProtocolException {
+        ByteBuffer stream = stream(20);
+        ByteBuffer buffer = ByteBuffer.allocate(VisualTreeServer.BUFFER_SIZE);
+        Decoder.Frame frame = new Decoder.Frame();
+        List<Integer> ids = new ArrayList<>();
+        boolean done = false;
+        while (stream.hasRemaining()) {
+            assertFalse(done);
+            buffer.put(stream.get());
+            buffer.flip();
+            done = VisualTreeServer.decode(buffer, frame, f -> {
+                if (f.msgType() == Message.MsgType.NODE.getNumber()) {
+                    ids.add(f.nodeId());
+                }
+            });
+            buffer.compact();
+        }
+        assertTrue(done);
+        assertEquals(20, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, ids.get(i));
+        }
+    }
+
+    @Test
+    void invalidSizes() {
+        for (int size : new int[]{0, -1, Integer.MIN_VALUE, VisualTreeServer.MAX_MESSAGE_SIZE + 1, Integer.MAX_VALUE}) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            buffer.putInt(Integer.reverseBytes(size)).put((byte) Message.MsgType.DONE.getNumber()).flip();
+            assertThrows(ProtocolException.class, () -> VisualTreeServer.decode(buffer, new Decoder.Frame(), f -> { }),
+                    "size " + size);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.uclouvain.visualsearchtree;
+
+import org.junit.jupiter.api.Test;
+import org.uclouvain.visualsearchtree.examples.NQueens;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.uclouvain.visualsearchtree.LayoutAssertions.*;
+
+class WalkerLayoutTest {
+
+    /**
+     * Walker and Kennedy place the nodes differently, both without overlap and symmetrically
+     */
+    private static void assertValid(Tree.Node<String> tree) {
+        Tree.PositionedNode<String> kennedy = tree.design();
+        Tree.PositionedNode<String> walker = tree.design(TreeLayout.WALKER);
+        assertSameShape(kennedy, walker);
+        assertNoOverlap(kennedy);
+        assertNoOverlap(walker);
+        Tree.Node<String> mirror = mirror(tree);
+        assertMirrored(kennedy, mirror.design());
+        assertMirrored(walker, mirror.design(TreeLayout.WALKER));
+    }
+
+    @Test
+    void randomTrees() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            assertValid(randomTree(1 + random.nextInt(2000), random));
+        }
+        assertValid(Tree.randomTree());
+    }
+
+    @Test
+    void nQueens() {
+        for (int n = 4; n <= 7; n++) {
+            assertValid(NQueens.nQueensTree(n));
+        }
+    }
+
+    @Test
+    void chain() {
+        Tree.Node<String> chain = Tree.chainTree(1000);
+        assertValid(chain);
+        assertSamePositions(chain.design(), chain.design(TreeLayout.WALKER));
+    }
+
+    @Test
+    void wide() {
+        Tree.Node<String> wide = wideTree(1000);
+        assertValid(wide);
+        assertSamePositions(wide.design(), wide.design(TreeLayout.WALKER));
+    }
+
+    @Test
+    void collapsedNodes() {
+        Tree.Node<String> tree = randomTree(500, new Random(7));
+        tree.children.get(0).collapse();
+        assertValid(tree);
+    }
+
+    /**
+     * Assert that the base of the summary of every collapsed node is at least at distance 1 from the other nodes
+     * and summaries of the level below
+     */
+    private static <T> void assertSummariesApart(Tree.PositionedNode<T> root) {
+        List<List<double[]>> levels = new ArrayList<>(); // left and right of the nodes and bases of each level
+        Deque<Object[]> stack = new ArrayDeque<>(); // node, depth, x of the parent
+        stack.push(new Object[]{root, 0, 0.0});
+        while (!stack.isEmpty()) {
+            Object[] task = stack.pop();
+            @SuppressWarnings("unchecked")
+            Tree.PositionedNode<T> node = (Tree.PositionedNode<T>) task[0];
+            int depth = (int) task[1];
+            double x = (double) task[2] + node.position;
+            while (levels.size() <= depth + 1) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(depth).add(new double[]{x, x});
+            if (node.collapsed) {
+                double half = Tree.ArrayExtent.SUMMARY_HALF_WIDTH;
+                levels.get(depth + 1).add(new double[]{x - half, x + half});
+            }
+            for (Tree.PositionedNode<T> child : node.children) {
+                stack.push(new Object[]{child, depth + 1, x});
+            }
+        }
+        for (int d = 0; d < levels.size(); d++) {
+            List<double[]> level = levels.get(d);
+            level.sort((a, b) -> Double.compare(a[0], b[0]));
+            for (int i = 1; i < level.size(); i++) {
+                assertTrue(level.get(i)[0] - level.get(i - 1)[1] >= 1 - EPSILON,
+                        "summary too close at depth " + d + ": " + level.get(i - 1)[1] + " and " + level.get(i)[0]);
+            }
+        }
+    }
+
+    private static Tree.Node<String> node(String label, List<Tree.Node<String>> children) {
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            edges.add("-");
+        }
+        return new Tree.Node<>(label, new ArrayList<>(children), edges, null, Connector.NodeStatus.BRANCH);
+    }
+
+    private static Tree.Node<String> collapsed(int children) {
+        List<Tree.Node<String>> leaves = new ArrayList<>();
+        for (int i = 0; i < children; i++) {
+            leaves.add(node("leaf", List.of()));
+        }
+        Tree.Node<String> res = node("collapsed", leaves);
+        res.collapse();
+        return res;
+    }
+
+    @Test
+    void summariesAsDesign() {
+        // trees the two engines lay out alike, with collapsed nodes next to leaves and to other collapsed nodes
+        List<Tree.Node<String>> trees = List.of(
+                node("root", List.of(collapsed(1), collapsed(3), collapsed(2))),
+                node("root", List.of(collapsed(2), node("leaf", List.of()), collapsed(1), node("leaf", List.of()))),
+                node("root", List.of(node("leaf", List.of()), collapsed(1), node("leaf", List.of()))),
+                node("root", List.of(node("a", List.of(collapsed(1), collapsed(1))), node("b", List.of(collapsed(1), collapsed(1))))),
+                node("root", List.of(node("a", List.of(collapsed(1))), node("b", List.of(collapsed(1))))),
+                node("root", List.of(collapsed(5))));
+        for (Tree.Node<String> tree : trees) {
+            assertValid(tree);
+            assertSamePositions(tree.design(), tree.design(TreeLayout.WALKER));
+            assertSummariesApart(tree.design(TreeLayout.WALKER));
+        }
+    }
+
+    @Test
+    void summariesApart() {
+        Random random = new Random(8);
+        for (int run = 0; run < 20; run++) {
+            Tree.Node<String> tree = randomTree(1 + random.nextInt(2000), random);
+            new CollapsePolicy().setMinSize(1 + random.nextInt(10)).apply(tree);
+            assertValid(tree);
+            assertSummariesApart(tree.design());
+            assertSummariesApart(tree.design(TreeLayout.WALKER));
+        }
+    }
+}